@@ -81,8 +81,7 @@ public class Main {
          */
         init.initializeApplication();
 
-        cachePage.loadCacheCollection();
-        cachePage.generateRawData();
+        cachePage.loadCacheCollection();    //caches are extracted when they are searched first
 
         loadQuickFindGUI();
 
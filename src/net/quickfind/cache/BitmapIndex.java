@@ -0,0 +1,567 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * BitmapIndex.java
+ * Compressed bitmaps of the records of a cache, one per properties mask bit and one per frequent file extension
+ * Records of the other extensions share one bitmap. Bits are the record ids of the columnar cache.
+ * Layout: header, attribute bitmaps, other extensions bitmap, extension and bitmap of each frequent extension
+ * A bitmap is a list of runs of equal non zero 64 bit words: gap from the previous run(varint), run length(varint), word
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class BitmapIndex {
+
+    /*
+     * Identifies the bitmap index file, "QFM1"
+     */
+    private static final int MAGIC = 0x51464D31;
+    /*
+     * Format version, files of any other version are built again
+     */
+    private static final int VERSION = 2;
+    /*
+     * Properties mask bits of Utility.getFilePropertiesMask: read, write, execute, hidden, directory
+     */
+    public static final int ATTRIBUTE_BITS = 5;
+    /*
+     * Extensions which get a bitmap of their own
+     */
+    private static final int FREQUENT_EXTENSIONS = 64;
+    /*
+     * Extensions collected separately while building, records of further extensions go to the other bitmap at once
+     */
+    private static final int MAX_COLLECTED_EXTENSIONS = 4096;
+    /*
+     * Number of records
+     */
+    private final int recordCount;
+    /*
+     * Encoded bitmaps of the properties mask bits
+     */
+    private final byte[][] attributeBitmaps;
+    /*
+     * Encoded bitmap of the records whose extension has no bitmap of its own
+     */
+    private final byte[] otherExtensionsBitmap;
+    /*
+     * Map to hold frequent extension and its encoded bitmap
+     */
+    private final HashMap<String, byte[]> extensionBitmaps;
+    /*
+     * Bitmap index file and its length and modified date when it was read
+     */
+    private final File bitmapFile;
+    private final long bitmapFileLength;
+    private final long bitmapFileLastModified;
+    /*
+     * Raw file the bitmaps are built from and its length and modified date when they were built
+     */
+    private final File rawFile;
+    private final long rawFileLength;
+    private final long rawFileLastModified;
+    /*
+     * Map to hold encoded name of the cache and its bitmap index read last, reused while the files are unchanged
+     */
+    private static final HashMap<String, BitmapIndex> openedIndexes = new HashMap<String, BitmapIndex>();
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(BitmapIndex.class.getName());
+
+    /*
+     * Constructs the BitmapIndex with its encoded bitmaps and the state of the files they are read from
+     */
+    private BitmapIndex(int aRecordCount, byte[][] anAttributeBitmaps, byte[] anOtherExtensionsBitmap, HashMap<String, byte[]> anExtensionBitmaps,
+            File aBitmapFile, long aBitmapFileLength, long aBitmapFileLastModified, File aRawFile, long aRawFileLength, long aRawFileLastModified) {
+        bitmapFile = aBitmapFile;
+        bitmapFileLength = aBitmapFileLength;
+        bitmapFileLastModified = aBitmapFileLastModified;
+        rawFile = aRawFile;
+        rawFileLength = aRawFileLength;
+        rawFileLastModified = aRawFileLastModified;
+        recordCount = aRecordCount;
+        attributeBitmaps = anAttributeBitmaps;
+        otherExtensionsBitmap = anOtherExtensionsBitmap;
+        extensionBitmaps = anExtensionBitmaps;
+    }
+
+    /*
+     * Finds the bitmap index of the cache if it is built from the current raw file
+     * The index read last is reused until the bitmap index file or the raw file changes
+     * @param   encoded name of the cache
+     * @return  BitmapIndex or null if the file is missing, of an older format or stale
+     */
+    public static BitmapIndex open(String cacheName) {
+        synchronized (openedIndexes) {
+            BitmapIndex bitmapIndex = openedIndexes.get(cacheName);
+            if (bitmapIndex != null && bitmapIndex.isCurrent()) {
+                return bitmapIndex;
+            }
+            openedIndexes.remove(cacheName);
+            bitmapIndex = read(cacheName);
+            if (bitmapIndex != null) {
+                openedIndexes.put(cacheName, bitmapIndex);
+            }
+            return bitmapIndex;
+        }
+    }
+
+    /*
+     * Checks whether the bitmaps are read from the current bitmap index file and built from the current raw file
+     * @return  true if the bitmaps describe the records of the raw file
+     */
+    private boolean isCurrent() {
+        return bitmapFile.length() == bitmapFileLength && bitmapFile.lastModified() == bitmapFileLastModified
+                && rawFile.length() == rawFileLength && rawFile.lastModified() == rawFileLastModified;
+    }
+
+    /*
+     * Reads the bitmap index file if it is built from the current raw file
+     * @param   encoded name of the cache
+     * @return  BitmapIndex or null if the file is missing, of an older format or stale
+     */
+    private static BitmapIndex read(String cacheName) {
+        File bitmapFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.BITMAP_FILE_EXTENSION);
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        if (!bitmapFile.exists()) {
+            return null;
+        }
+        long bitmapFileLength = bitmapFile.length();
+        long bitmapFileLastModified = bitmapFile.lastModified();
+        long rawFileLength = rawFile.length();
+        long rawFileLastModified = rawFile.lastModified();
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(bitmapFile)));
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                return null;
+            }
+            if (inputStream.readLong() != rawFileLength || inputStream.readLong() != rawFileLastModified) {
+                return null;
+            }
+            int recordCount = inputStream.readInt();
+            int extensionCount = inputStream.readInt();
+            byte[][] attributeBitmaps = new byte[ATTRIBUTE_BITS][];
+            for (int bit = 0; bit < ATTRIBUTE_BITS; bit++) {
+                attributeBitmaps[bit] = readBitmap(inputStream);
+            }
+            byte[] otherExtensionsBitmap = readBitmap(inputStream);
+            HashMap<String, byte[]> extensionBitmaps = new HashMap<String, byte[]>();
+            for (int i = 0; i < extensionCount; i++) {
+                String extension = inputStream.readUTF();
+                extensionBitmaps.put(extension, readBitmap(inputStream));
+            }
+            return new BitmapIndex(recordCount, attributeBitmaps, otherExtensionsBitmap, extensionBitmaps,
+                    bitmapFile, bitmapFileLength, bitmapFileLastModified, rawFile, rawFileLength, rawFileLastModified);
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Checks whether the bitmap index file is built from the current raw file
+     * @param   encoded name of the cache
+     * @return  true if the bitmap index file can be opened
+     */
+    public static boolean isAvailable(String cacheName) {
+        return (open(cacheName) != null);
+    }
+
+    /*
+     * @return  number of records, bitmaps of a different count than the columnar cache are not used
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /*
+     * @param   attributeBit bit of the properties mask
+     * @return  words of the records having the bit
+     */
+    public long[] getAttributeRecords(int attributeBit) {
+        return decode(attributeBitmaps[Integer.numberOfTrailingZeros(attributeBit)], recordCount);
+    }
+
+    /*
+     * @param   extension lower case file extension without the separator
+     * @return  words of the records having the extension, other records may be included for infrequent extensions
+     */
+    public long[] getExtensionRecords(String extension) {
+        byte[] extensionBitmap = extensionBitmaps.get(extension);
+        return decode(extensionBitmap != null ? extensionBitmap : otherExtensionsBitmap, recordCount);
+    }
+
+    /*
+     * Builds the bitmap index file from the columnar cache file of the cache, used for caches scanned without the index
+     * @param   encoded name of the cache
+     * @return  true if the bitmap index file is built
+     */
+    public static boolean build(String cacheName) {
+        ColumnarCache columnarCache = ColumnarCache.open(cacheName);
+        if (columnarCache == null) {
+            new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.BITMAP_FILE_EXTENSION).delete();
+            return false;
+        }
+        Builder builder = new Builder();
+        try {
+            while (columnarCache.next()) {
+                builder.add(columnarCache.getName(), columnarCache.getAttributes());
+            }
+        } finally {
+            columnarCache.close();
+        }
+        return builder.write(cacheName);
+    }
+
+    /*
+     * Reads one encoded bitmap
+     * @param   inputStream positioned at the bitmap
+     * @return  encoded bitmap
+     */
+    private static byte[] readBitmap(DataInputStream inputStream) throws IOException {
+        byte[] bitmap = new byte[inputStream.readInt()];
+        inputStream.readFully(bitmap);
+        return bitmap;
+    }
+
+    /*
+     * Writes one encoded bitmap
+     * @param   outputStream->destination   bitmap->encoded bitmap
+     */
+    private static void writeBitmap(DataOutputStream outputStream, byte[] bitmap) throws IOException {
+        outputStream.writeInt(bitmap.length);
+        outputStream.write(bitmap);
+    }
+
+    /*
+     * Decodes a bitmap into its words
+     * @param   bitmap->encoded bitmap      bitCount->number of records
+     * @return  words, bit i of word w is record w * 64 + i
+     */
+    static long[] decode(byte[] bitmap, int bitCount) {
+        long[] words = new long[(bitCount + 63) >>> 6];
+        ByteBuffer buffer = ByteBuffer.wrap(bitmap);
+        int wordIndex = 0;
+        while (buffer.hasRemaining()) {
+            wordIndex += (int) ColumnarCache.readVarint(buffer);
+            int runLength = (int) ColumnarCache.readVarint(buffer);
+            long word = buffer.getLong();
+            Arrays.fill(words, wordIndex, Math.min(wordIndex + runLength, words.length), word);
+            wordIndex += runLength;
+        }
+        return words;
+    }
+
+    /*
+     * Encodes the words of a bitmap
+     * @param   words of the bitmap
+     * @return  encoded bitmap
+     */
+    static byte[] encode(long[] words) {
+        BitmapBuilder bitmapBuilder = new BitmapBuilder();
+        for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+            bitmapBuilder.addWord(wordIndex, words[wordIndex]);
+        }
+        return bitmapBuilder.finish();
+    }
+
+    /*
+     * Collects the bitmaps of the records in the order they are written
+     */
+    static class Builder {
+
+        /*
+         * Bitmap builders of the properties mask bits
+         */
+        private final BitmapBuilder[] attributeBuilders = new BitmapBuilder[ATTRIBUTE_BITS];
+        /*
+         * Map to hold extension and its bitmap builder
+         */
+        private final HashMap<String, BitmapBuilder> extensionBuilders = new HashMap<String, BitmapBuilder>();
+        /*
+         * Bitmap builder of the records whose extension is not collected separately
+         */
+        private final BitmapBuilder otherExtensionsBuilder = new BitmapBuilder();
+        /*
+         * Id of the next record
+         */
+        private int recordCount;
+
+        Builder() {
+            for (int bit = 0; bit < ATTRIBUTE_BITS; bit++) {
+                attributeBuilders[bit] = new BitmapBuilder();
+            }
+        }
+
+        /*
+         * Adds the next record
+         * @param   recordName->name of the record      propertiesMask->file property bitmask
+         */
+        void add(CharSequence recordName, int propertiesMask) {
+            for (int bit = 0; bit < ATTRIBUTE_BITS; bit++) {
+                if ((propertiesMask & (1 << bit)) != 0) {
+                    attributeBuilders[bit].add(recordCount);
+                }
+            }
+            String extension = Utility.getFileExtension(recordName.toString());
+            if (extension == null) {
+                extension = "";
+            }
+            BitmapBuilder extensionBuilder = extensionBuilders.get(extension);
+            if (extensionBuilder == null && extensionBuilders.size() < MAX_COLLECTED_EXTENSIONS) {
+                extensionBuilder = new BitmapBuilder();
+                extensionBuilders.put(extension, extensionBuilder);
+            }
+            (extensionBuilder != null ? extensionBuilder : otherExtensionsBuilder).add(recordCount);
+            recordCount++;
+        }
+
+        /*
+         * Adds the next record as written in the raw file, the name and properties mask are split as the columnar cache does
+         * @param   rawPath cache formatted path
+         */
+        void add(String rawPath) {
+            int nameIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR);
+            int maskIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR);
+            int dateIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR, maskIndex - 1);
+            int sizeIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR, dateIndex - 1);
+            int propertiesMask = 0;
+            try {
+                propertiesMask = Integer.parseInt(rawPath.substring(maskIndex + 1));
+            } catch (NumberFormatException numberFormatException) {
+                LOGGER.log(Level.SEVERE, "Invalid record", numberFormatException);
+            }
+            add((sizeIndex > nameIndex ? rawPath.substring(nameIndex + 1, sizeIndex) : ""), propertiesMask);
+        }
+
+        /*
+         * Writes the bitmap index file, extensions other than the most frequent ones share the other bitmap
+         * The raw file of the records is complete and stamped, its length and modified date identify it
+         * @param   encoded name of the cache
+         * @return  true if the bitmap index file is written
+         */
+        boolean write(String cacheName) {
+            File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+            File bitmapFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.BITMAP_FILE_EXTENSION);
+            File temporaryFile = new File(bitmapFile.getPath() + PropertyPage.PREVIOUS_FILE_EXTENSION);
+            long[] extensionsByCount = new long[extensionBuilders.size()];
+            String[] extensions = extensionBuilders.keySet().toArray(new String[extensionBuilders.size()]);
+            for (int i = 0; i < extensions.length; i++) {
+                extensionsByCount[i] = ((long) extensionBuilders.get(extensions[i]).getCount() << 32) | i;
+            }
+            Arrays.sort(extensionsByCount);
+            int frequentCount = Math.min(FREQUENT_EXTENSIONS, extensions.length);
+            long[] otherExtensionsWords = decode(otherExtensionsBuilder.finish(), recordCount);
+            for (int i = 0; i < extensions.length - frequentCount; i++) {
+                long[] extensionWords = decode(extensionBuilders.get(extensions[(int) extensionsByCount[i]]).finish(), recordCount);
+                for (int wordIndex = 0; wordIndex < extensionWords.length; wordIndex++) {
+                    otherExtensionsWords[wordIndex] |= extensionWords[wordIndex];
+                }
+            }
+            DataOutputStream outputStream = null;
+            try {
+                outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 64 * 1024));
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                outputStream.writeLong(rawFile.length());
+                outputStream.writeLong(rawFile.lastModified());
+                outputStream.writeInt(recordCount);
+                outputStream.writeInt(frequentCount);
+                for (int bit = 0; bit < ATTRIBUTE_BITS; bit++) {
+                    writeBitmap(outputStream, attributeBuilders[bit].finish());
+                }
+                writeBitmap(outputStream, encode(otherExtensionsWords));
+                for (int i = extensions.length - frequentCount; i < extensions.length; i++) {
+                    String extension = extensions[(int) extensionsByCount[i]];
+                    outputStream.writeUTF(extension);
+                    writeBitmap(outputStream, extensionBuilders.get(extension).finish());
+                }
+                outputStream.close();
+                outputStream = null;
+                Files.move(temporaryFile.toPath(), bitmapFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            } finally {
+                try {
+                    if (outputStream != null) {
+                        outputStream.close();
+                    }
+                } catch (IOException iOException) {
+                    LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+                }
+                temporaryFile.delete();
+            }
+            return false;
+        }
+    }
+
+    /*
+     * Encodes a bitmap whose bits are set in ascending order, equal consecutive words are stored once
+     */
+    private static class BitmapBuilder {
+
+        private byte[] bytes = new byte[16];
+        private int length;
+        private int count;
+        /*
+         * Word being filled and its index, -1 before the first bit
+         */
+        private int wordIndex = -1;
+        private long word;
+        /*
+         * Run of equal words not written yet and the end of the last written run
+         */
+        private int runStart;
+        private int runLength;
+        private long runWord;
+        private int writtenEnd;
+        /*
+         * Encoded bitmap once finished
+         */
+        private byte[] finishedBitmap;
+
+        /*
+         * @param   bit larger than the ones set before
+         */
+        private void add(int bit) {
+            if ((bit >>> 6) != wordIndex) {
+                if (wordIndex >= 0) {
+                    addWord(wordIndex, word);
+                }
+                wordIndex = bit >>> 6;
+                word = 0L;
+            }
+            word |= 1L << (bit & 63);
+            count++;
+        }
+
+        /*
+         * @return  number of bits set
+         */
+        private int getCount() {
+            return count;
+        }
+
+        /*
+         * @param   aWordIndex->index larger than the ones added before     aWord->bits of the word
+         */
+        private void addWord(int aWordIndex, long aWord) {
+            if (aWord == 0L) {
+                return;
+            }
+            if (runLength > 0 && aWordIndex == runStart + runLength && aWord == runWord) {
+                runLength++;
+                return;
+            }
+            writeRun();
+            runStart = aWordIndex;
+            runLength = 1;
+            runWord = aWord;
+        }
+
+        /*
+         * Writes the pending run
+         */
+        private void writeRun() {
+            if (runLength == 0) {
+                return;
+            }
+            if (length + 5 + 5 + 8 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length + 18);
+            }
+            writeVarint(runStart - writtenEnd);
+            writeVarint(runLength);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[length++] = (byte) (runWord >>> shift);
+            }
+            writtenEnd = runStart + runLength;
+            runLength = 0;
+        }
+
+        /*
+         * @param   value non negative value
+         */
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        /*
+         * @return  encoded bitmap, no bits can be added afterwards
+         */
+        private byte[] finish() {
+            if (finishedBitmap == null) {
+                if (wordIndex >= 0) {
+                    addWord(wordIndex, word);
+                    wordIndex = -1;
+                }
+                writeRun();
+                finishedBitmap = Arrays.copyOf(bytes, length);
+            }
+            return finishedBitmap;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * BlockCompressor.java
+ * Writes a block compressed file while its entries are being produced
+ * Blocks are deflated in parallel on the block pool and written in the order they were cut
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+class BlockCompressor {
+
+    /*
+     * Blocks being deflated before the producer waits for the oldest one
+     */
+    private static final int MAX_PENDING_BLOCKS = 2 * Runtime.getRuntime().availableProcessors();
+    /*
+     * Compressed file written aside, moved over the destination by finish
+     */
+    private final File temporaryFile;
+    /*
+     * Destination compressed file
+     */
+    private final File destination;
+    /*
+     * Deflate level of the blocks
+     */
+    private final int compressionLevel;
+    /*
+     * Stream of the temporary file
+     */
+    private final DataOutputStream outputStream;
+    /*
+     * Names of the entries
+     */
+    private final String[] entryNames;
+    /*
+     * Per entry: bytes not yet cut into a block
+     */
+    private final byte[][] entryBuffers;
+    private final int[] entryLengths;
+    /*
+     * Per entry: number of blocks and lines cut so far
+     */
+    private final int[] blockCounts;
+    private final long[] recordCounts;
+    /*
+     * Per entry: offset, compressed length, uncompressed length and first line of the blocks
+     */
+    private final ByteArrayOutputStream[] blockIndexes;
+    /*
+     * Blocks being deflated in the order they were cut
+     */
+    private final LinkedList<Future<byte[]>> pendingBlocks;
+    /*
+     * Per pending block: entry, uncompressed length and first line
+     */
+    private final LinkedList<long[]> pendingBlockData;
+    /*
+     * Length of the temporary file written so far
+     */
+    private long position;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(BlockCompressor.class.getName());
+
+    /*
+     * Constructs the BlockCompressor and writes the header of the compressed file
+     * @param   aDestination->compressed file   cacheIndex->symbol prefix of the cache
+     *          aEntryNames->names of the entries   aCompressionLevel->deflate level of the blocks
+     */
+    BlockCompressor(File aDestination, int cacheIndex, String[] aEntryNames, int aCompressionLevel) throws IOException {
+        destination = aDestination;
+        temporaryFile = new File(destination.getPath() + PropertyPage.PREVIOUS_FILE_EXTENSION);
+        entryNames = aEntryNames;
+        compressionLevel = aCompressionLevel;
+        entryBuffers = new byte[entryNames.length][];
+        entryLengths = new int[entryNames.length];
+        blockCounts = new int[entryNames.length];
+        recordCounts = new long[entryNames.length];
+        blockIndexes = new ByteArrayOutputStream[entryNames.length];
+        for (int entry = 0; entry < entryNames.length; entry++) {
+            entryBuffers[entry] = new byte[CompressedCache.BLOCK_SIZE];
+            blockIndexes[entry] = new ByteArrayOutputStream();
+        }
+        pendingBlocks = new LinkedList<Future<byte[]>>();
+        pendingBlockData = new LinkedList<long[]>();
+        outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), CompressedCache.BLOCK_SIZE));
+        position = CompressedCache.writeHeader(outputStream, cacheIndex);
+    }
+
+    /*
+     * Creates a stream which writes to the file of an entry and to the compressor
+     * @param   entry->index of the entry   fileStream->stream of the uncompressed file
+     * @return  stream writing to both
+     */
+    OutputStream getEntryStream(final int entry, final OutputStream fileStream) {
+        return new OutputStream() {
+
+            @Override
+            public void write(int oneByte) throws IOException {
+                fileStream.write(oneByte);
+                BlockCompressor.this.write(entry, new byte[]{(byte) oneByte}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                fileStream.write(bytes, offset, length);
+                BlockCompressor.this.write(entry, bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                fileStream.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                fileStream.close();
+            }
+        };
+    }
+
+    /*
+     * Adds bytes to an entry, every complete block is handed to the block pool
+     * @param   entry->index of the entry   bytes->data     offset->start of the data   length->length of the data
+     */
+    void write(int entry, byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            byte[] entryBuffer = entryBuffers[entry];
+            int copyLength = Math.min(length, entryBuffer.length - entryLengths[entry]);
+            System.arraycopy(bytes, offset, entryBuffer, entryLengths[entry], copyLength);
+            entryLengths[entry] += copyLength;
+            offset += copyLength;
+            length -= copyLength;
+            if (entryLengths[entry] == entryBuffer.length) {
+                int blockLength = getLinesLength(entryBuffer, entryLengths[entry]);
+                if (blockLength == 0) {
+                    entryBuffers[entry] = Arrays.copyOf(entryBuffer, entryBuffer.length * 2);   //line longer than a block
+                } else {
+                    submitBlock(entry, blockLength);
+                }
+            }
+        }
+    }
+
+    /*
+     * Hands the first bytes of an entry to the block pool as a block
+     * Waits for the oldest blocks when too many are pending
+     * @param   entry->index of the entry   blockLength->length of the block
+     */
+    private void submitBlock(int entry, int blockLength) throws IOException {
+        final byte[] block = Arrays.copyOf(entryBuffers[entry], blockLength);
+        System.arraycopy(entryBuffers[entry], blockLength, entryBuffers[entry], 0, entryLengths[entry] - blockLength);
+        entryLengths[entry] -= blockLength;
+        pendingBlocks.add(CompressedCache.getBlockPool().submit(new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() {
+                return deflate(block);
+            }
+        }));
+        pendingBlockData.add(new long[]{entry, blockLength, recordCounts[entry]});
+        recordCounts[entry] += countLines(block, blockLength);
+        while (pendingBlocks.size() > MAX_PENDING_BLOCKS) {
+            writeOldestBlock();
+        }
+    }
+
+    /*
+     * Deflates one block
+     * @param   block->uncompressed block
+     * @return  compressed block
+     */
+    private byte[] deflate(byte[] block) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            ByteArrayOutputStream compressedBlock = new ByteArrayOutputStream(block.length / 4);
+            byte[] buffer = new byte[CompressedCache.BLOCK_SIZE];
+            deflater.setInput(block);
+            deflater.finish();
+            while (!deflater.finished()) {
+                compressedBlock.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return compressedBlock.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /*
+     * Waits for the oldest pending block, writes it and adds it to the block index of its entry
+     */
+    private void writeOldestBlock() throws IOException {
+        byte[] compressedBlock;
+        try {
+            compressedBlock = pendingBlocks.removeFirst().get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException(interruptedException);
+        } catch (ExecutionException executionException) {
+            throw new IOException(executionException.getCause());
+        }
+        long[] blockData = pendingBlockData.removeFirst();
+        int entry = (int) blockData[0];
+        outputStream.write(compressedBlock);
+        DataOutputStream blockIndexStream = new DataOutputStream(blockIndexes[entry]);
+        blockIndexStream.writeLong(position);
+        blockIndexStream.writeInt(compressedBlock.length);
+        blockIndexStream.writeInt((int) blockData[1]);
+        blockIndexStream.writeLong(blockData[2]);
+        blockCounts[entry]++;
+        position += compressedBlock.length;
+    }
+
+    /*
+     * Compresses the rest of the entries, writes the footer and moves the file over the destination
+     */
+    void finish() throws IOException {
+        try {
+            for (int entry = 0; entry < entryNames.length; entry++) {
+                if (entryLengths[entry] > 0) {
+                    submitBlock(entry, entryLengths[entry]);
+                }
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writeOldestBlock();
+            }
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            DataOutputStream footerStream = new DataOutputStream(footer);
+            footerStream.writeInt(entryNames.length);
+            for (int entry = 0; entry < entryNames.length; entry++) {
+                footerStream.writeUTF(entryNames[entry]);
+                footerStream.writeInt(blockCounts[entry]);
+                blockIndexes[entry].writeTo(footerStream);
+            }
+            footer.writeTo(outputStream);
+            CompressedCache.writeTrailer(outputStream, position);
+            outputStream.close();
+        } catch (IOException iOException) {
+            abort();
+            throw iOException;
+        }
+        Files.move(temporaryFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * Stops compressing and deletes the temporary file, the destination is left as it is
+     */
+    void abort() {
+        for (Future<byte[]> pendingBlock : pendingBlocks) {
+            pendingBlock.cancel(false);
+        }
+        pendingBlocks.clear();
+        pendingBlockData.clear();
+        try {
+            outputStream.close();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+        temporaryFile.delete();
+    }
+
+    /*
+     * @param   block->buffered bytes   length->number of buffered bytes
+     * @return  length of the whole lines at the start of the block, 0 if there is no line end
+     */
+    private static int getLinesLength(byte[] block, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (block[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * @param   block->buffered bytes   length->number of bytes to look at
+     * @return  number of lines started in the bytes
+     */
+    private static long countLines(byte[] block, int length) {
+        long lineCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (block[i] == '\n') {
+                lineCount++;
+            }
+        }
+        if (length > 0 && block[length - 1] != '\n') {
+            lineCount++;    //last line without line end
+        }
+        return lineCount;
+    }
+}
@@ -42,7 +42,7 @@ import javax.xml.bind.annotation.XmlType;
  */
 @XmlRootElement(name = "cache")
 @XmlType(propOrder = {"includedPath", "excludedPath", "cacheName", "userGivenName", "totalItemsScanned", "seedStartedFrom",
-    "startTimeStamp", "endTimeStamp", "timeTakenToCache", "cacheFileSize", "localCacheIndex"})
+    "startTimeStamp", "endTimeStamp", "timeTakenToCache", "cacheFileSize", "localCacheIndex", "residentIndex"})
 public class Cache {
 
     /*
@@ -89,6 +89,10 @@ public class Cache {
      * Cache index of the cache
      */
     private String localCacheIndex = "";
+    /*
+     * "true" to keep the cache in memory once it is loaded
+     */
+    private String residentIndex = "false";
 
     /*
      * @return  the cache name
@@ -243,4 +247,18 @@ public class Cache {
     public void setLocalCacheIndex(String localCacheIndex) {
         this.localCacheIndex = localCacheIndex;
     }
+
+    /*
+     * @return  the residentIndex
+     */
+    public String getResidentIndex() {
+        return residentIndex;
+    }
+
+    /*
+     * @param   residentIndex "true" to keep the cache in memory
+     */
+    public void setResidentIndex(String residentIndex) {
+        this.residentIndex = residentIndex;
+    }
 }
@@ -41,6 +41,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -63,6 +70,26 @@ public class CachePage {
      * Collection of cache
      */
     private CacheCollection cacheCollection;
+    /*
+     * Number of caches extracted at the same time
+     */
+    private static final int RAW_DATA_THREADS = 2;
+    /*
+     * Pool extracting the compressed caches in the background, created on first use
+     */
+    private ExecutorService rawDataPool;
+    /*
+     * Map to hold cache name and its pending or finished extraction
+     */
+    private final HashMap<String, Future<?>> rawDataTasks = new HashMap<String, Future<?>>();
+    /*
+     * Names of the caches being scanned
+     */
+    private final HashSet<String> scanningCaches = new HashSet<String>();
+    /*
+     * Map to hold cache name and its index kept in memory
+     */
+    private final HashMap<String, ResidentIndex> residentIndexes = new HashMap<String, ResidentIndex>();
     /*
      * Exception logger
      */
@@ -89,6 +116,11 @@ public class CachePage {
             cacheCollection.setCacheIndex("-1");
         }
         reLoadCacheList();
+        for (int i = 0; i < cacheCollection.getCachesList().size(); i++) {
+            if (isResident(cacheCollection.getCachesList().get(i))) {
+                prepareRawData(cacheCollection.getCachesList().get(i).getCacheName());    //loaded into memory in the background
+            }
+        }
     }
 
     /*
@@ -104,14 +136,213 @@ public class CachePage {
     }
 
     /*
-     * Exctracts raw files from compressed file
+     * Starts extracting the raw files of the cache in the background unless they are current
+     * @param   encoded name of the cache
+     * @return  pending or finished extraction of the cache
+     */
+    public Future<?> prepareRawData(final String cacheName) {
+        synchronized (rawDataTasks) {
+            Future<?> rawDataTask = rawDataTasks.get(cacheName);
+            if (rawDataTask != null && !rawDataTask.isDone()) {
+                return rawDataTask;
+            }
+            if (rawDataPool == null) {
+                rawDataPool = Executors.newFixedThreadPool(RAW_DATA_THREADS, new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "CacheExtractor");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            rawDataTask = rawDataPool.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    loadRawData(cacheName);
+                }
+            });
+            rawDataTasks.put(cacheName, rawDataTask);
+            return rawDataTask;
+        }
+    }
+
+    /*
+     * Extracts the raw files of the cache unless they are current and waits for it
+     * @param   encoded name of the cache
+     */
+    public void awaitRawData(String cacheName) {
+        try {
+            prepareRawData(cacheName).get();
+        } catch (InterruptedException interruptedException) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedException);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException executionException) {
+            LOGGER.log(Level.SEVERE, "Cache extraction failed", executionException);
+        }
+    }
+
+    /*
+     * Extracts the raw files of the cache if its compressed file changed since the last extraction and builds its columnar file
+     * The trigram index is built and the cache is loaded into memory if they are enabled
+     * Raw files of a cache being scanned or of an interrupted scan are left as they are
+     * @param   encoded name of the cache
+     */
+    private void loadRawData(String cacheName) {
+        synchronized (rawDataTasks) {
+            if (scanningCaches.contains(cacheName)) {
+                return;
+            }
+        }
+        if (ScanCheckpoint.isAvailable(cacheName)) {
+            return;
+        }
+        if (!isRawDataCurrent(cacheName)) {
+            createRawData(cacheName);
+        }
+        Cache cache = null;
+        synchronized (this) {
+            for (int i = 0; i < cacheCollection.getCachesList().size(); i++) {
+                if (((Cache) cacheCollection.getCachesList().get(i)).getCacheName().equals(cacheName)) {
+                    cache = (Cache) cacheCollection.getCachesList().get(i);
+                }
+            }
+        }
+        if (cache == null) {
+            return;
+        }
+        if (!ColumnarCache.isAvailable(cacheName)) {
+            ColumnarCache.build(cacheName, cache.getLocalCacheIndex());
+        }
+        if (!BitmapIndex.isAvailable(cacheName)) {
+            BitmapIndex.build(cacheName);
+        }
+        if (PropertyPage.isTrigramIndex() && !TrigramIndex.isAvailable(cacheName)) {
+            TrigramIndex.build(cacheName);
+        }
+        if (isResident(cache) && getResidentIndex(cacheName) == null) {
+            ResidentIndex residentIndex = ResidentIndex.load(cacheName);
+            if (residentIndex != null) {
+                synchronized (residentIndexes) {
+                    residentIndexes.put(cacheName, residentIndex);
+                }
+            }
+        }
+    }
+
+    /*
+     * @param   cache of the cache collection
+     * @return  true if the cache is kept in memory
+     */
+    private static boolean isResident(Cache cache) {
+        return Boolean.parseBoolean(cache.getResidentIndex());
+    }
+
+    /*
+     * Finds the index of the cache kept in memory
+     * @param   encoded name of the cache
+     * @return  index loaded from the current raw file or null if the cache is searched from its files
+     */
+    public ResidentIndex getResidentIndex(String cacheName) {
+        synchronized (residentIndexes) {
+            ResidentIndex residentIndex = residentIndexes.get(cacheName);
+            if (residentIndex != null && !residentIndex.isCurrent()) {
+                residentIndexes.remove(cacheName);  //cache rescanned, loaded again by its next extraction
+                residentIndex = null;
+            }
+            return residentIndex;
+        }
+    }
+
+    /*
+     * @param   encoded name of the cache
+     * @return  bytes held by the index of the cache kept in memory, 0 if it is not loaded
+     */
+    public long getResidentMemoryUsage(String cacheName) {
+        ResidentIndex residentIndex = getResidentIndex(cacheName);
+        return (residentIndex == null ? 0L : residentIndex.getMemoryUsage());
+    }
+
+    /*
+     * Checks whether the raw files were extracted from or saved with the current compressed file
+     * @param   encoded name of the cache
+     * @return  true if the raw files need not be extracted
+     */
+    public boolean isRawDataCurrent(String cacheName) {
+        File compressedFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.COMPRESSED_FILE_EXTENSION);
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        if (!compressedFile.exists()) {
+            return true;    //nothing to extract
+        }
+        return (rawFile.exists() && new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION).exists()
+                && rawFile.lastModified() == compressedFile.lastModified());
+    }
+
+    /*
+     * Stamps the raw file with the time of the compressed file, raw files stamped otherwise are extracted again
+     * @param   encoded name of the cache
      */
-    public void generateRawData() {
+    static void markRawDataCurrent(String cacheName) {
+        File compressedFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.COMPRESSED_FILE_EXTENSION);
+        if (compressedFile.exists()) {
+            new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION).setLastModified(compressedFile.lastModified());
+        }
+    }
+
+    /*
+     * Marks the cache as being scanned so that its raw files are not extracted meanwhile
+     * Waits for an extraction of the cache which is already running
+     * @param   encoded name of the cache
+     */
+    void beginScan(String cacheName) {
+        Future<?> rawDataTask;
+        synchronized (rawDataTasks) {
+            scanningCaches.add(cacheName);
+            rawDataTask = rawDataTasks.get(cacheName);
+        }
+        if (rawDataTask != null) {
+            try {
+                rawDataTask.get();
+            } catch (InterruptedException interruptedException) {
+                LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedException);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException executionException) {
+                LOGGER.log(Level.SEVERE, "Cache extraction failed", executionException);
+            }
+        }
+    }
+
+    /*
+     * Marks the scan of the cache as finished
+     * @param   encoded name of the cache
+     */
+    void endScan(String cacheName) {
+        synchronized (rawDataTasks) {
+            scanningCaches.remove(cacheName);
+        }
+        synchronized (residentIndexes) {
+            if (residentIndexes.containsKey(cacheName)) {
+                residentIndexes.remove(cacheName);
+                prepareRawData(cacheName);  //kept in memory again from the rescanned files
+            }
+        }
+    }
+
+    /*
+     * Checks whether an interrupted scan of any cache can be resumed
+     * @return  true if a cache has a checkpoint
+     */
+    public boolean isScanResumable() {
         if (cacheCollection.getCachesList() != null) {
             for (int i = 0; i < cacheCollection.getCachesList().size(); i++) {
-                createRawData(((Cache) cacheCollection.getCachesList().get(i)).getCacheName());
+                if (ScanCheckpoint.isAvailable(((Cache) cacheCollection.getCachesList().get(i)).getCacheName())) {
+                    return true;
+                }
             }
         }
+        return false;
     }
 
     /*
@@ -125,7 +356,7 @@ public class CachePage {
      * Adds new Cache to the list or replaces cache if it exists already
      * @param   cache object which is to be inserted
      */
-    protected void addCache(Cache cache) {
+    protected synchronized void addCache(Cache cache) {
         if (cache == null) {
             return;
         }
@@ -153,6 +384,9 @@ public class CachePage {
      * @param   User given name of the cache which is to be deleted
      */
     public void removeCache(String userGivenName) {
+        synchronized (residentIndexes) {
+            residentIndexes.remove(getCacheName(userGivenName));
+        }
         deleteOldCacheFiles(getCacheName(userGivenName));
         ArrayList<Cache> cacheList = cacheCollection.getCachesList();
         if (cacheList != null) {
@@ -261,16 +495,31 @@ public class CachePage {
     }
 
     /*
-     * Exctracts raw files from compressed file
+     * Exctracts raw files from compressed file, blocks of a block compressed file are decompressed in parallel
      * @param   compressed cahe file name
      */
-    private void createRawData(final String zipFileName) {
-        byte[] buffer = new byte[1024];
+    protected void createRawData(final String zipFileName) {
+        CompressedCache compressedCache = CompressedCache.open(zipFileName);
+        if (compressedCache != null) {
+            try {
+                for (String entryName : compressedCache.getEntryNames()) {
+                    compressedCache.extract(entryName, new File(PropertyPage.getCacheDirectory() + entryName));
+                }
+                markRawDataCurrent(zipFileName);    //stamped last, an incomplete extraction is repeated
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            } finally {
+                compressedCache.close();
+            }
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
         int len;
+        ZipInputStream zipInputStream = null;
         try {
             File zipRawFile = new File(PropertyPage.getCacheDirectory() + zipFileName + PropertyPage.COMPRESSED_FILE_EXTENSION);
-            if (zipRawFile.exists()) {
-                ZipInputStream zipInputStream = new ZipInputStream(new FileInputStream(zipRawFile));
+            if (zipRawFile.exists()) {   //compressed file of an older version
+                zipInputStream = new ZipInputStream(new FileInputStream(zipRawFile));
                 //get the zipped file entry
                 ZipEntry zipEntry = zipInputStream.getNextEntry();
                 while (zipEntry != null) {
@@ -279,17 +528,28 @@ public class CachePage {
                     //creates all non exists directories
                     new File(newFile.getParent()).mkdirs();
                     FileOutputStream fileOutputStream = new FileOutputStream(newFile);
-                    while ((len = zipInputStream.read(buffer)) > 0) {
-                        fileOutputStream.write(buffer, 0, len);
+                    try {
+                        while ((len = zipInputStream.read(buffer)) > 0) {
+                            fileOutputStream.write(buffer, 0, len);
+                        }
+                    } finally {
+                        fileOutputStream.close();
                     }
-                    fileOutputStream.close();
                     zipEntry = zipInputStream.getNextEntry();
                 }
                 zipInputStream.closeEntry();
-                zipInputStream.close();
+                markRawDataCurrent(zipFileName);    //stamped last, an incomplete extraction is repeated
             }
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (zipInputStream != null) {
+                    zipInputStream.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
         }
     }
 
@@ -322,7 +582,7 @@ public class CachePage {
      * @param   encoded name of the cache
      * @return  cache index if cacheName exists otherwise new cacheIndex
      */
-    protected int getNextCacheIndex(String cacheName) {
+    protected synchronized int getNextCacheIndex(String cacheName) {
         int cacheIndex;
         if ((cacheIndex = getCacheIndex(cacheName)) != -1) {
             return cacheIndex;
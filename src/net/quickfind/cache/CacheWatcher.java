@@ -0,0 +1,334 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * CacheWatcher.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class CacheWatcher extends Thread {
+
+    /*
+     * Cachepage to handle cache data
+     */
+    private final CachePage cachePage;
+    /*
+     * Watched caches
+     */
+    private final ArrayList<WatchedCache> watchedCaches;
+    /*
+     * Map to hold the watched directory of each watch key
+     */
+    private final HashMap<WatchKey, Path> watchedDirectories;
+    /*
+     * Map to hold the cache of each watch key
+     */
+    private final HashMap<WatchKey, WatchedCache> watchKeyCaches;
+    /*
+     * Watch service of the default file system
+     */
+    private WatchService watchService;
+    /*
+     * Watcher stop flag
+     */
+    private volatile boolean isStopped = false;
+    /*
+     * Quiet time in milliseconds after which the collected events are applied
+     */
+    private static final long EVENT_COALESCE_INTERVAL = 500L;
+    /*
+     * Maximum number of changed paths collected before they are applied
+     */
+    private static final int MAX_PENDING_CHANGES = 10000;
+    /*
+     * Longest time in milliseconds a collected event waits, so a steady trickle of events is still applied
+     */
+    private static final long MAX_CHANGE_LATENCY = 5000L;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(CacheWatcher.class.getName());
+
+    /*
+     * Constructs the CacheWatcher with cachepage
+     * @param   cache configuration
+     */
+    public CacheWatcher(CachePage aCachePage) {
+        super("CacheWatcher");
+        setDaemon(true);
+        cachePage = aCachePage;
+        watchedCaches = new ArrayList<WatchedCache>();
+        watchedDirectories = new HashMap<WatchKey, Path>();
+        watchKeyCaches = new HashMap<WatchKey, WatchedCache>();
+    }
+
+    /*
+     * Watches the cached directories and writes their changes to the delta files
+     * Events are collected until the file system is quiet for a while, so a burst of events on a path is applied once
+     * Events which keep arriving are applied at the latest MAX_CHANGE_LATENCY after the first of them
+     */
+    @Override
+    public void run() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            return;
+        }
+        synchronized (cachePage) {
+            for (int i = 0; i < cachePage.getCacheList().size(); i++) {
+                watchedCaches.add(new WatchedCache(((Cache) cachePage.getCacheList().get(i)).getCacheName()));
+            }
+        }
+        LinkedHashMap<Path, WatchedCache> changedPaths = new LinkedHashMap<Path, WatchedCache>();
+        long firstEventTime = -1;   //time of the first event collected since the last apply
+        try {
+            for (int i = 0; i < watchedCaches.size() && !isStopped; i++) {
+                startWatching(watchedCaches.get(i));
+            }
+            while (!isStopped) {
+                WatchKey watchKey = watchService.poll(EVENT_COALESCE_INTERVAL, TimeUnit.MILLISECONDS);
+                if (watchKey != null) {
+                    if (firstEventTime < 0) {
+                        firstEventTime = System.currentTimeMillis();
+                    }
+                    collectEvents(watchKey, changedPaths);
+                    if (changedPaths.size() < MAX_PENDING_CHANGES && System.currentTimeMillis() - firstEventTime < MAX_CHANGE_LATENCY) {
+                        continue;   //more events may follow
+                    }
+                }
+                firstEventTime = -1;
+                applyChanges(changedPaths);
+                rescanScheduledCaches();
+            }
+        } catch (InterruptedException interruptedException) {
+            LOGGER.log(Level.INFO, "Cache watcher interrupted", interruptedException);
+        } catch (ClosedWatchServiceException closedWatchServiceException) {
+            //stopped by stopWatching
+        } finally {
+            for (int i = 0; i < watchedCaches.size(); i++) {
+                watchedCaches.get(i).close();
+            }
+            try {
+                watchService.close();
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+    }
+
+    /*
+     * Collects the changed paths of the watch key
+     * @param   watchKey->signalled key    changedPaths->paths changed since the last apply
+     */
+    private void collectEvents(WatchKey watchKey, LinkedHashMap<Path, WatchedCache> changedPaths) {
+        Path watchedDirectory = watchedDirectories.get(watchKey);
+        WatchedCache watchedCache = watchKeyCaches.get(watchKey);
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            if (watchedCache == null) {
+                continue;
+            }
+            if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+                watchedCache.schedulePeriodicRescan();  //events are lost, only a rescan can find them
+                continue;
+            }
+            changedPaths.put(watchedDirectory.resolve((Path) watchEvent.context()), watchedCache);
+        }
+        if (!watchKey.reset()) {
+            watchedDirectories.remove(watchKey);    //directory deleted or no longer accessible
+            watchKeyCaches.remove(watchKey);
+        }
+    }
+
+    /*
+     * Writes the current state of the changed paths to the delta files of their caches
+     * @param   changedPaths->paths changed since the last apply
+     */
+    private void applyChanges(LinkedHashMap<Path, WatchedCache> changedPaths) {
+        if (changedPaths.isEmpty()) {
+            return;
+        }
+        ArrayList<WatchedCache> changedCaches = new ArrayList<WatchedCache>();
+        for (Map.Entry<Path, WatchedCache> changedPath : changedPaths.entrySet()) {
+            WatchedCache watchedCache = changedPath.getValue();
+            watchedCache.applyChange(watchService, changedPath.getKey(), getWatchBudget());
+            if (!changedCaches.contains(watchedCache)) {
+                changedCaches.add(watchedCache);
+            }
+        }
+        changedPaths.clear();
+        for (int i = 0; i < changedCaches.size(); i++) {
+            changedCaches.get(i).flush();
+            mapWatchKeys(changedCaches.get(i));
+        }
+    }
+
+    /*
+     * Runs an incremental scan for the caches which can not be kept fresh by the watches
+     */
+    private void rescanScheduledCaches() {
+        for (int i = 0; i < watchedCaches.size() && !isStopped; i++) {
+            WatchedCache watchedCache = watchedCaches.get(i);
+            if (watchedCache.getNextRescanTime() > System.currentTimeMillis()) {
+                continue;
+            }
+            stopWatching(watchedCache);
+            Scanner scanner = new Scanner(cachePage);
+            scanner.setIncrementalScan(true);
+            scanner.addCache(watchedCache.getCacheName());
+            scanner.run();  //scans in the watcher thread
+            watchedCache.rescanned();
+            startWatching(watchedCache);
+        }
+    }
+
+    /*
+     * Loads the cache and registers its directories
+     * @param   cache to be watched
+     */
+    private void startWatching(WatchedCache watchedCache) {
+        Cache cache = null;
+        synchronized (cachePage) {
+            for (int i = 0; i < cachePage.getCacheList().size(); i++) {
+                if (((Cache) cachePage.getCacheList().get(i)).getCacheName().equals(watchedCache.getCacheName())) {
+                    cache = (Cache) cachePage.getCacheList().get(i);
+                    break;
+                }
+            }
+        }
+        if (cache != null) {
+            cachePage.awaitRawData(cache.getCacheName());
+        }
+        if (cache == null || !watchedCache.load(cache)) {
+            return; //cache is not scanned yet
+        }
+        watchedCache.register(watchService, getWatchBudget());
+        mapWatchKeys(watchedCache);
+    }
+
+    /*
+     * Releases the watches of the cache
+     * @param   cache to be released
+     */
+    private void stopWatching(WatchedCache watchedCache) {
+        watchedCache.close();
+        Iterator<Map.Entry<WatchKey, WatchedCache>> watchKeyCachesIterator = watchKeyCaches.entrySet().iterator();
+        while (watchKeyCachesIterator.hasNext()) {
+            Map.Entry<WatchKey, WatchedCache> watchKeyCache = watchKeyCachesIterator.next();
+            if (watchKeyCache.getValue() == watchedCache) {
+                watchedDirectories.remove(watchKeyCache.getKey());
+                watchKeyCachesIterator.remove();
+            }
+        }
+    }
+
+    /*
+     * Finds the number of watches which may still be registered
+     * @return  watch budget left for all the caches
+     */
+    private int getWatchBudget() {
+        int watchCount = 0;
+        for (int i = 0; i < watchedCaches.size(); i++) {
+            watchCount += watchedCaches.get(i).getWatchCount();
+        }
+        return (PropertyPage.getMaxWatchedDirectories() - watchCount);
+    }
+
+    /*
+     * Maps the newly registered watch keys of the cache and forgets the cancelled ones
+     * @param   watched cache
+     */
+    private void mapWatchKeys(WatchedCache watchedCache) {
+        Iterator<WatchKey> watchKeysIterator = watchKeyCaches.keySet().iterator();
+        while (watchKeysIterator.hasNext()) {
+            WatchKey watchKey = watchKeysIterator.next();
+            if (!watchKey.isValid()) {
+                watchedDirectories.remove(watchKey);
+                watchKeysIterator.remove();
+            }
+        }
+        for (Map.Entry<String, WatchKey> watchKey : watchedCache.getWatchKeys().entrySet()) {
+            if (!watchKeyCaches.containsKey(watchKey.getValue())) {
+                watchKeyCaches.put(watchKey.getValue(), watchedCache);
+                watchedDirectories.put(watchKey.getValue(), (Path) watchKey.getValue().watchable());
+            }
+        }
+    }
+
+    /*
+     * Stops the watcher, a running rescan is completed before the watcher stops
+     */
+    public void stopWatching() {
+        isStopped = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+    }
+
+    /*
+     * Waits for the watcher to stop
+     * @return  true when watcher is stopped
+     */
+    public boolean awaitTermination() {
+        try {
+            join();
+        } catch (InterruptedException interruptedException) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedException);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,814 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * ColumnarCache.java
+ * Binary copy of the raw file which is searched through memory mapped columns
+ * Layout: header, parent directory ids(varint), name offsets(int), names(UTF-8), sizes(long), last modified dates(long), attributes(byte),
+ *         subtree of each directory id(first record int, end record int, parent ids offset of the first record long)
+ * Records and directory ids are written in depth first order, so the records under a directory are one contiguous range
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class ColumnarCache {
+
+    /*
+     * Identifies the columnar cache file, "QFC1"
+     */
+    private static final int MAGIC = 0x51464331;
+    /*
+     * Format version, files of any other version are rebuilt from the raw file
+     */
+    private static final int VERSION = 2;
+    /*
+     * magic, version, cacheIndex, recordCount, rawFileLength, rawFileLastModified, parentIdsLength, namesLength, directoryCount
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 4 + 4 + 8 + 8 + 8 + 8 + 4;
+    /*
+     * Indexes of the columns in the order of the file
+     */
+    private static final int PARENT_IDS_COLUMN = 0;
+    private static final int NAME_OFFSETS_COLUMN = 1;
+    private static final int NAMES_COLUMN = 2;
+    private static final int SIZES_COLUMN = 3;
+    private static final int DATES_COLUMN = 4;
+    private static final int ATTRIBUTES_COLUMN = 5;
+    private static final int SUBTREES_COLUMN = 6;
+    /*
+     * Length of the subtree entry of a directory
+     */
+    private static final int SUBTREE_ENTRY_LENGTH = 4 + 4 + 8;
+    /*
+     * Size of the write buffer of each column while building
+     */
+    private static final int COLUMN_BUFFER_SIZE = 64 * 1024;
+    /*
+     * UTF-8 charset of the names column
+     */
+    private static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+    /*
+     * Symbol prefix of the directories of this cache
+     */
+    private final String cacheIndex;
+    /*
+     * Number of records in the file
+     */
+    private final int recordCount;
+    /*
+     * Column of varint encoded parent directory ids, read sequentially
+     */
+    private ByteBuffer parentIds;
+    /*
+     * Column of start offsets of the names, recordCount + 1 entries
+     */
+    private IntBuffer nameOffsets;
+    /*
+     * View on the names column limited to the current name
+     */
+    private ByteBuffer names;
+    /*
+     * Column of file sizes in bytes
+     */
+    private LongBuffer sizes;
+    /*
+     * Column of last modified dates
+     */
+    private LongBuffer lastModifiedDates;
+    /*
+     * Column of properties masks
+     */
+    private ByteBuffer attributes;
+    /*
+     * Column of the record ranges under each directory id, empty if the symbol file was not available
+     */
+    private ByteBuffer subtrees;
+    /*
+     * Mapped regions of the file, unmapped by close
+     */
+    private final ArrayList<MappedByteBuffer> mappedColumns;
+    /*
+     * Decoder of the names, reused for every record
+     */
+    private final CharsetDecoder nameDecoder;
+    /*
+     * Decoded name of the current record, reused for every record
+     */
+    private CharBuffer name;
+    /*
+     * Index of the record whose name is decoded, names are decoded only when asked for
+     */
+    private int nameIndex = -1;
+    /*
+     * Index of the current record
+     */
+    private int recordIndex = -1;
+    /*
+     * Parent directory id of the current record
+     */
+    private long parentId;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(ColumnarCache.class.getName());
+
+    /*
+     * Constructs the ColumnarCache by mapping the columns of the file
+     * @param   fileChannel->opened columnar cache file     header->header of the file
+     */
+    private ColumnarCache(FileChannel fileChannel, ByteBuffer header) throws IOException {
+        cacheIndex = String.valueOf(header.getInt(8));
+        recordCount = header.getInt(12);
+        long parentIdsLength = header.getLong(32);
+        long namesLength = header.getLong(40);
+        long position = HEADER_LENGTH;
+        mappedColumns = new ArrayList<MappedByteBuffer>(SUBTREES_COLUMN + 1);
+        parentIds = mapColumn(fileChannel, position, parentIdsLength);
+        position += parentIdsLength;
+        nameOffsets = mapColumn(fileChannel, position, (recordCount + 1L) * 4).asIntBuffer();
+        position += (recordCount + 1L) * 4;
+        names = mapColumn(fileChannel, position, namesLength);
+        position += namesLength;
+        sizes = mapColumn(fileChannel, position, recordCount * 8L).asLongBuffer();
+        position += recordCount * 8L;
+        lastModifiedDates = mapColumn(fileChannel, position, recordCount * 8L).asLongBuffer();
+        position += recordCount * 8L;
+        attributes = mapColumn(fileChannel, position, recordCount);
+        position += recordCount;
+        subtrees = mapColumn(fileChannel, position, (long) header.getInt(48) * SUBTREE_ENTRY_LENGTH);
+        nameDecoder = NAME_CHARSET.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        name = CharBuffer.allocate(256);
+    }
+
+    /*
+     * Maps one column of the file and keeps it for close
+     * @param   fileChannel->opened columnar cache file     position->start of the column   length->length of the column
+     * @return  read only buffer of the column
+     */
+    private MappedByteBuffer mapColumn(FileChannel fileChannel, long position, long length) throws IOException {
+        MappedByteBuffer mappedColumn = map(fileChannel, position, length);
+        mappedColumns.add(mappedColumn);
+        return mappedColumn;
+    }
+
+    /*
+     * Unmaps the columns, the file can be replaced or deleted afterwards and the records can not be read anymore
+     * Mapped regions are released at once where the runtime allows it, otherwise when they are garbage collected
+     */
+    public void close() {
+        parentIds = null;
+        nameOffsets = null;
+        names = null;
+        sizes = null;
+        lastModifiedDates = null;
+        attributes = null;
+        subtrees = null;
+        for (MappedByteBuffer mappedColumn : mappedColumns) {
+            unmap(mappedColumn);
+        }
+        mappedColumns.clear();
+    }
+
+    /*
+     * Releases a mapped region without waiting for the garbage collector, the buffer must not be used afterwards
+     * Uses Unsafe.invokeCleaner on Java 9 and later, the cleaner of the buffer before
+     * @param   mappedBuffer buffer returned by FileChannel.map
+     */
+    private static void unmap(MappedByteBuffer mappedBuffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), mappedBuffer);
+        } catch (NoSuchMethodException noSuchMethodException) {
+            try {
+                Method cleanerMethod = mappedBuffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(mappedBuffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (Exception unknownException) {
+                LOGGER.log(Level.FINE, "Mapped column is released by the garbage collector", unknownException);
+            }
+        } catch (Exception unknownException) {
+            LOGGER.log(Level.FINE, "Mapped column is released by the garbage collector", unknownException);
+        }
+    }
+
+    /*
+     * Maps a region of the file
+     * @param   fileChannel->opened columnar cache file     position->start of the column   length->length of the column
+     * @return  read only buffer of the column
+     */
+    private static MappedByteBuffer map(FileChannel fileChannel, long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Column too large to map: " + length);
+        }
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    /*
+     * Checks whether the columnar cache file is built from the current raw file
+     * @param   encoded name of the cache
+     * @return  true if the columnar cache file can be opened
+     */
+    public static boolean isAvailable(String cacheName) {
+        ByteBuffer header = readHeader(cacheName);
+        return (header != null);
+    }
+
+    /*
+     * Reads the header of the columnar cache file and validates it against the raw file
+     * @param   encoded name of the cache
+     * @return  header or null if the file is missing, of an older format or stale
+     */
+    private static ByteBuffer readHeader(String cacheName) {
+        File columnarFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.COLUMNAR_FILE_EXTENSION);
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        if (!columnarFile.exists() || columnarFile.length() < HEADER_LENGTH) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(columnarFile, "r");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            randomAccessFile.readFully(header.array());
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(16) != rawFile.length() || header.getLong(24) != rawFile.lastModified()) {
+                return null;
+            }
+            return header;
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Opens the columnar cache file if it is built from the current raw file
+     * @param   cacheName->encoded name of the cache
+     * @return  ColumnarCache positioned before the first record, to be closed after use, or null if the raw file must be read instead
+     */
+    public static ColumnarCache open(String cacheName) {
+        ByteBuffer header = readHeader(cacheName);
+        if (header == null) {
+            return null;    //older format or stale
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.COLUMNAR_FILE_EXTENSION, "r");
+            return new ColumnarCache(randomAccessFile.getChannel(), header);     //mappings stay valid after the channel is closed
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Moves to the next record, its name is decoded when it is asked for
+     * @return  false if there are no more records
+     */
+    public boolean next() {
+        if (recordIndex + 1 >= recordCount) {
+            return false;
+        }
+        recordIndex++;
+        parentId = readVarint(parentIds);
+        return true;
+    }
+
+    /*
+     * Moves forward to a record, the names of the records in between are not decoded
+     * @param   index of a record after the current one
+     * @return  false if there is no such record
+     */
+    public boolean moveTo(int record) {
+        if (record <= recordIndex || record >= recordCount) {
+            return false;
+        }
+        while (recordIndex + 1 < record) {
+            readVarint(parentIds);
+            recordIndex++;
+        }
+        return next();
+    }
+
+    /*
+     * Moves before the first record under a directory, its subtree ends at getSubtreeEnd
+     * @param   directoryId id of the directory
+     * @return  false if the records under the directory are not known
+     */
+    public boolean moveToSubtree(long directoryId) {
+        if (directoryId < 0 || directoryId >= subtrees.capacity() / SUBTREE_ENTRY_LENGTH) {
+            return false;
+        }
+        int entry = (int) directoryId * SUBTREE_ENTRY_LENGTH;
+        recordIndex = subtrees.getInt(entry) - 1;
+        parentIds.position((int) subtrees.getLong(entry + 8));
+        return true;
+    }
+
+    /*
+     * @param   directoryId id of a directory accepted by moveToSubtree
+     * @return  index after the last record under the directory
+     */
+    public int getSubtreeEnd(long directoryId) {
+        return subtrees.getInt((int) directoryId * SUBTREE_ENTRY_LENGTH + 4);
+    }
+
+    /*
+     * @return  index of the current record
+     */
+    public int getRecordIndex() {
+        return recordIndex;
+    }
+
+    /*
+     * @return  symbol prefix of the directories of this cache
+     */
+    public String getCacheIndex() {
+        return cacheIndex;
+    }
+
+    /*
+     * @return  id of the parent directory of the current record
+     */
+    public long getParentId() {
+        return parentId;
+    }
+
+    /*
+     * @return  symbol of the parent directory of the current record
+     */
+    public String getParentSymbol() {
+        return cacheIndex + parentId;
+    }
+
+    /*
+     * Decodes the name of the current record on the first call for the record
+     * @return  name of the current record, valid until the next record
+     */
+    public CharSequence getName() {
+        if (nameIndex != recordIndex) {
+            names.limit(nameOffsets.get(recordIndex + 1));
+            names.position(nameOffsets.get(recordIndex));
+            nameDecoder.reset();
+            name.clear();
+            CoderResult coderResult = nameDecoder.decode(names, name, true);
+            while (coderResult.isOverflow()) {
+                CharBuffer largerName = CharBuffer.allocate(name.capacity() * 2);
+                name.flip();
+                largerName.put(name);
+                name = largerName;
+                coderResult = nameDecoder.decode(names, name, true);
+            }
+            nameDecoder.flush(name);
+            name.flip();
+            nameIndex = recordIndex;
+        }
+        return name;
+    }
+
+    /*
+     * @return  size of the current record in bytes
+     */
+    public long getSize() {
+        return sizes.get(recordIndex);
+    }
+
+    /*
+     * @return  last modified date of the current record
+     */
+    public long getLastModifiedDate() {
+        return lastModifiedDates.get(recordIndex);
+    }
+
+    /*
+     * @return  properties mask of the current record
+     */
+    public int getAttributes() {
+        return attributes.get(recordIndex);
+    }
+
+    /*
+     * Builds the cache formatted path of the current record as written in the raw file
+     * @return  rawPath of the current record
+     */
+    public String getRawPath() {
+        return buildRawPath(getParentSymbol(), getName(), getSize(), getLastModifiedDate(), getAttributes());
+    }
+
+    /*
+     * @return  number of records in the file
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /*
+     * Builds the cache formatted path of a record as written in the raw file
+     * @param   parentSymbol->symbol of the parent directory    recordName->name of the record
+     *          size->size in bytes     lastModifiedDate->modified time     propertiesMask->file property bitmask
+     * @return  rawPath of the record
+     */
+    static String buildRawPath(String parentSymbol, CharSequence recordName, long size, long lastModifiedDate, int propertiesMask) {
+        StringBuilder rawPath = new StringBuilder(64);
+        rawPath.append(parentSymbol).append(PropertyPage.FILE_SEPARATOR).append(recordName).append(PropertyPage.FILE_SEPARATOR);
+        rawPath.append(Utility.isDirectory(propertiesMask) ? 0L : size);
+        rawPath.append(PropertyPage.FILE_SEPARATOR).append(lastModifiedDate).append(PropertyPage.FILE_SEPARATOR).append(propertiesMask);
+        return rawPath.toString();
+    }
+
+    /*
+     * Builds the columnar cache file from the raw file of the cache
+     * The raw file is read twice, first to size the columns and then to write them at their positions
+     * @param   cacheName->encoded name of the cache    cacheIndex->symbol prefix of the cache
+     * @return  true if the columnar cache file is built
+     */
+    public static boolean build(String cacheName, String cacheIndex) {
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        File columnarFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.COLUMNAR_FILE_EXTENSION);
+        File temporaryFile = new File(columnarFile.getPath() + PropertyPage.PREVIOUS_FILE_EXTENSION);
+        if (!rawFile.exists()) {
+            columnarFile.delete();
+            return false;
+        }
+        long rawFileLength = rawFile.length();
+        long rawFileLastModified = rawFile.lastModified();
+        int[] parentDirectoryIds = readParentDirectoryIds(cacheName, cacheIndex);
+        int directoryCount = parentDirectoryIds.length;
+        int[] firstRecords = new int[directoryCount];
+        int[] endRecords = new int[directoryCount];
+        int[] subtreeCounts = new int[directoryCount];
+        long[] firstParentIdsOffsets = new long[directoryCount];
+        Arrays.fill(firstRecords, Integer.MAX_VALUE);
+        long[] fields = new long[4];
+        int recordCount = 0;
+        long parentIdsLength = 0;
+        long namesLength = 0;
+        BufferedReader bufferedReader = null;
+        RandomAccessFile randomAccessFile = null;
+        try {
+            bufferedReader = new BufferedReader(new FileReader(rawFile));
+            String rawPath;
+            while ((rawPath = bufferedReader.readLine()) != null) {
+                String recordName = parseRecord(rawPath, cacheIndex, fields);
+                if (recordName != null) {
+                    recordCount++;
+                    parentIdsLength += getVarintLength(fields[0]);
+                    namesLength += recordName.getBytes(NAME_CHARSET).length;
+                }
+            }
+            bufferedReader.close();
+            if (namesLength > Integer.MAX_VALUE || recordCount * 8L > Integer.MAX_VALUE) {
+                columnarFile.delete();
+                return false;   //searched from the raw file
+            }
+            randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
+            randomAccessFile.setLength(0);
+            FileChannel fileChannel = randomAccessFile.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(VERSION).putInt(Integer.parseInt(cacheIndex)).putInt(recordCount);
+            header.putLong(rawFileLength).putLong(rawFileLastModified).putLong(parentIdsLength).putLong(namesLength).putInt(directoryCount);
+            header.flip();
+            while (header.hasRemaining()) {
+                fileChannel.write(header);
+            }
+            long[] columnPositions = new long[7];
+            columnPositions[PARENT_IDS_COLUMN] = HEADER_LENGTH;
+            columnPositions[NAME_OFFSETS_COLUMN] = columnPositions[PARENT_IDS_COLUMN] + parentIdsLength;
+            columnPositions[NAMES_COLUMN] = columnPositions[NAME_OFFSETS_COLUMN] + (recordCount + 1L) * 4;
+            columnPositions[SIZES_COLUMN] = columnPositions[NAMES_COLUMN] + namesLength;
+            columnPositions[DATES_COLUMN] = columnPositions[SIZES_COLUMN] + recordCount * 8L;
+            columnPositions[ATTRIBUTES_COLUMN] = columnPositions[DATES_COLUMN] + recordCount * 8L;
+            columnPositions[SUBTREES_COLUMN] = columnPositions[ATTRIBUTES_COLUMN] + recordCount;
+            ByteBuffer[] columnBuffers = new ByteBuffer[7];
+            for (int column = 0; column < columnBuffers.length; column++) {
+                columnBuffers[column] = ByteBuffer.allocate(COLUMN_BUFFER_SIZE);
+            }
+            bufferedReader = new BufferedReader(new FileReader(rawFile));
+            int writtenCount = 0;
+            int nameOffset = 0;
+            long parentIdsOffset = 0;
+            while ((rawPath = bufferedReader.readLine()) != null && writtenCount < recordCount) {
+                String recordName = parseRecord(rawPath, cacheIndex, fields);
+                if (recordName != null) {
+                    byte[] nameBytes = recordName.getBytes(NAME_CHARSET);
+                    if (fields[0] < directoryCount) {
+                        int parentId = (int) fields[0];
+                        if (firstRecords[parentId] == Integer.MAX_VALUE) {
+                            firstRecords[parentId] = writtenCount;
+                            firstParentIdsOffsets[parentId] = parentIdsOffset;
+                        }
+                        endRecords[parentId] = writtenCount + 1;
+                        subtreeCounts[parentId]++;
+                    }
+                    ensureRemaining(fileChannel, columnBuffers, columnPositions, PARENT_IDS_COLUMN, 10);
+                    writeVarint(columnBuffers[PARENT_IDS_COLUMN], fields[0]);
+                    parentIdsOffset += getVarintLength(fields[0]);
+                    ensureRemaining(fileChannel, columnBuffers, columnPositions, NAME_OFFSETS_COLUMN, 4);
+                    columnBuffers[NAME_OFFSETS_COLUMN].putInt(nameOffset);
+                    if (nameBytes.length > COLUMN_BUFFER_SIZE) {
+                        flushColumn(fileChannel, columnBuffers, columnPositions, NAMES_COLUMN);
+                        flushColumn(fileChannel, ByteBuffer.wrap(nameBytes), columnPositions, NAMES_COLUMN);
+                    } else {
+                        ensureRemaining(fileChannel, columnBuffers, columnPositions, NAMES_COLUMN, nameBytes.length);
+                        columnBuffers[NAMES_COLUMN].put(nameBytes);
+                    }
+                    nameOffset += nameBytes.length;
+                    ensureRemaining(fileChannel, columnBuffers, columnPositions, SIZES_COLUMN, 8);
+                    columnBuffers[SIZES_COLUMN].putLong(fields[1]);
+                    ensureRemaining(fileChannel, columnBuffers, columnPositions, DATES_COLUMN, 8);
+                    columnBuffers[DATES_COLUMN].putLong(fields[2]);
+                    ensureRemaining(fileChannel, columnBuffers, columnPositions, ATTRIBUTES_COLUMN, 1);
+                    columnBuffers[ATTRIBUTES_COLUMN].put((byte) fields[3]);
+                    writtenCount++;
+                }
+            }
+            ensureRemaining(fileChannel, columnBuffers, columnPositions, NAME_OFFSETS_COLUMN, 4);
+            columnBuffers[NAME_OFFSETS_COLUMN].putInt(nameOffset);
+            if (writtenCount != recordCount) {
+                throw new IOException("Raw file changed while building " + columnarFile.getName());
+            }
+            for (int directoryId = directoryCount - 1; directoryId >= 0; directoryId--) {
+                int parentId = parentDirectoryIds[directoryId];
+                if (parentId >= 0) {    //a parent has a lower id than its children
+                    if (firstRecords[directoryId] < firstRecords[parentId]) {
+                        firstRecords[parentId] = firstRecords[directoryId];
+                        firstParentIdsOffsets[parentId] = firstParentIdsOffsets[directoryId];
+                    }
+                    endRecords[parentId] = Math.max(endRecords[parentId], endRecords[directoryId]);
+                    subtreeCounts[parentId] += subtreeCounts[directoryId];
+                }
+            }
+            for (int directoryId = 0; directoryId < directoryCount; directoryId++) {
+                ensureRemaining(fileChannel, columnBuffers, columnPositions, SUBTREES_COLUMN, SUBTREE_ENTRY_LENGTH);
+                if (subtreeCounts[directoryId] == 0) {
+                    columnBuffers[SUBTREES_COLUMN].putInt(0).putInt(0).putLong(0L);
+                } else if (endRecords[directoryId] - firstRecords[directoryId] != subtreeCounts[directoryId]) {
+                    columnBuffers[SUBTREES_COLUMN].putInt(0).putInt(recordCount).putLong(0L);  //not written in depth first order, every record is checked
+                } else {
+                    columnBuffers[SUBTREES_COLUMN].putInt(firstRecords[directoryId]).putInt(endRecords[directoryId]).putLong(firstParentIdsOffsets[directoryId]);
+                }
+            }
+            for (int column = 0; column < columnBuffers.length; column++) {
+                flushColumn(fileChannel, columnBuffers, columnPositions, column);
+            }
+            randomAccessFile.close();
+            randomAccessFile = null;
+            //a columnar file still mapped by a search can not be replaced on some platforms, the stale file is ignored by open then
+            Files.move(temporaryFile.toPath(), columnarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } catch (NumberFormatException numberFormatException) {
+            LOGGER.log(Level.SEVERE, "Invalid cache index", numberFormatException);
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+            temporaryFile.delete();
+        }
+        return false;
+    }
+
+    /*
+     * Finds the parent of each directory from the symbol file, whose directories are written in depth first order of their ids
+     * @param   cacheName->encoded name of the cache    cacheIndex->symbol prefix of the cache
+     * @return  parent id of each directory id, -1 for the roots, empty if the symbol file can not be read
+     */
+    private static int[] readParentDirectoryIds(String cacheName, String cacheIndex) {
+        File symbolFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION);
+        int[] parentDirectoryIds = new int[1024];
+        int directoryCount = 0;
+        int[] stackIds = new int[64];
+        String[] stackPaths = new String[64];
+        int stackSize = 0;
+        BufferedReader bufferedReader = null;
+        try {
+            bufferedReader = new BufferedReader(new FileReader(symbolFile));
+            String symbolLine;
+            while ((symbolLine = bufferedReader.readLine()) != null) {
+                int separatorIndex = symbolLine.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex <= cacheIndex.length() || !symbolLine.startsWith(cacheIndex)) {
+                    continue;
+                }
+                long directoryId = Long.parseLong(symbolLine.substring(cacheIndex.length(), separatorIndex));
+                if (directoryId != directoryCount) {
+                    return new int[0];  //ids are not in depth first order
+                }
+                String directoryPath = symbolLine.substring(separatorIndex + 1);
+                while (stackSize > 0 && !Utility.isInDirectory(directoryPath, stackPaths[stackSize - 1])) {
+                    stackSize--;
+                }
+                if (directoryCount == parentDirectoryIds.length) {
+                    parentDirectoryIds = Arrays.copyOf(parentDirectoryIds, directoryCount * 2);
+                }
+                parentDirectoryIds[directoryCount++] = (stackSize > 0 ? stackIds[stackSize - 1] : -1);
+                if (stackSize == stackIds.length) {
+                    stackIds = Arrays.copyOf(stackIds, stackSize * 2);
+                    stackPaths = Arrays.copyOf(stackPaths, stackSize * 2);
+                }
+                stackIds[stackSize] = (int) directoryId;
+                stackPaths[stackSize++] = directoryPath;
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            return new int[0];
+        } catch (NumberFormatException numberFormatException) {
+            LOGGER.log(Level.SEVERE, "Invalid directory symbol", numberFormatException);
+            return new int[0];
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return Arrays.copyOf(parentDirectoryIds, directoryCount);
+    }
+
+    /*
+     * Writes the buffered bytes of a column if the next value does not fit
+     * @param   fileChannel->destination    columnBuffers->buffers of the columns   columnPositions->file positions of the columns
+     *          column->index of the column     length->length of the next value
+     */
+    private static void ensureRemaining(FileChannel fileChannel, ByteBuffer[] columnBuffers, long[] columnPositions, int column, int length) throws IOException {
+        if (columnBuffers[column].remaining() < length) {
+            flushColumn(fileChannel, columnBuffers, columnPositions, column);
+        }
+    }
+
+    /*
+     * Writes the buffered bytes of a column at its file position
+     * @param   fileChannel->destination    columnBuffers->buffers of the columns   columnPositions->file positions of the columns  column->index of the column
+     */
+    private static void flushColumn(FileChannel fileChannel, ByteBuffer[] columnBuffers, long[] columnPositions, int column) throws IOException {
+        ByteBuffer columnBuffer = columnBuffers[column];
+        columnBuffer.flip();
+        flushColumn(fileChannel, columnBuffer, columnPositions, column);
+        columnBuffer.clear();
+    }
+
+    /*
+     * Writes the remaining bytes of the buffer at the file position of a column
+     * @param   fileChannel->destination    buffer->bytes to write  columnPositions->file positions of the columns  column->index of the column
+     */
+    private static void flushColumn(FileChannel fileChannel, ByteBuffer buffer, long[] columnPositions, int column) throws IOException {
+        while (buffer.hasRemaining()) {
+            columnPositions[column] += fileChannel.write(buffer, columnPositions[column]);
+        }
+    }
+
+    /*
+     * Splits a raw record into its columns
+     * @param   rawPath->cache formatted path   cacheIndex->symbol prefix of the cache  fields->receives parentId, size, lastModifiedDate, mask
+     * @return  name of the record or null if the record can not be stored
+     */
+    private static String parseRecord(String rawPath, String cacheIndex, long[] fields) {
+        int nameIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR);
+        int maskIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR);
+        int dateIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR, maskIndex - 1);
+        int sizeIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR, dateIndex - 1);
+        if (nameIndex <= cacheIndex.length() || sizeIndex < nameIndex || !rawPath.startsWith(cacheIndex)) {
+            return null;
+        }
+        try {
+            fields[0] = Long.parseLong(rawPath.substring(cacheIndex.length(), nameIndex));
+            fields[1] = Utility.parseFileSize(rawPath.substring(sizeIndex + 1, dateIndex));
+            fields[2] = Long.parseLong(rawPath.substring(dateIndex + 1, maskIndex));
+            fields[3] = Integer.parseInt(rawPath.substring(maskIndex + 1));
+        } catch (NumberFormatException numberFormatException) {
+            return null;    //incomplete record
+        }
+        if (fields[0] < 0) {
+            return null;
+        }
+        return rawPath.substring(nameIndex + 1, sizeIndex);
+    }
+
+    /*
+     * Reads an unsigned varint
+     * @param   buffer positioned at the varint
+     * @return  decoded value
+     */
+    static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte nextByte;
+        do {
+            nextByte = buffer.get();
+            value |= (long) (nextByte & 0x7F) << shift;
+            shift += 7;
+        } while ((nextByte & 0x80) != 0);
+        return value;
+    }
+
+    /*
+     * Writes an unsigned varint, 7 bits per byte with the high bit marking continuation
+     * @param   buffer->destination     value->non negative value
+     */
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /*
+     * @param   non negative value
+     * @return  number of bytes of the varint
+     */
+    private static int getVarintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
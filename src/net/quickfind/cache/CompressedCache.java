@@ -0,0 +1,408 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * CompressedCache.java
+ * Compressed file of a cache made of independently deflated blocks of whole lines
+ * Layout: header, blocks of every entry, footer with the block index of each entry, offset of the footer
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class CompressedCache {
+
+    /*
+     * Identifies the block compressed file, "QFB1", older compressed files are zip files
+     */
+    private static final int MAGIC = 0x51464231;
+    /*
+     * Format version
+     */
+    private static final int VERSION = 1;
+    /*
+     * magic, version, cacheIndex
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 4;
+    /*
+     * footerOffset, magic
+     */
+    private static final int TRAILER_LENGTH = 8 + 4;
+    /*
+     * Uncompressed size of a block, blocks end at a line end so they may be larger
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+    /*
+     * Blocks decompressed ahead of the one being consumed
+     */
+    private static final int READ_AHEAD_BLOCKS = 2 * Runtime.getRuntime().availableProcessors();
+    /*
+     * Pool compressing and decompressing the blocks, created on first use
+     */
+    private static ExecutorService blockPool;
+    /*
+     * Opened compressed file
+     */
+    private final RandomAccessFile compressedFile;
+    /*
+     * Symbol prefix of the directories of this cache
+     */
+    private final String cacheIndex;
+    /*
+     * Names of the entries
+     */
+    private final ArrayList<String> entryNames;
+    /*
+     * Per entry: file offsets of the blocks
+     */
+    private final ArrayList<long[]> blockOffsets;
+    /*
+     * Per entry: compressed and uncompressed lengths of the blocks
+     */
+    private final ArrayList<int[]> compressedLengths;
+    private final ArrayList<int[]> uncompressedLengths;
+    /*
+     * Per entry: number of the first line of the blocks
+     */
+    private final ArrayList<long[]> firstRecords;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(CompressedCache.class.getName());
+
+    /*
+     * Constructs the CompressedCache by reading the footer of the file
+     * @param   aCompressedFile->opened compressed file   header->header of the file
+     */
+    private CompressedCache(RandomAccessFile aCompressedFile, ByteBuffer header) throws IOException {
+        compressedFile = aCompressedFile;
+        cacheIndex = String.valueOf(header.getInt(8));
+        entryNames = new ArrayList<String>();
+        blockOffsets = new ArrayList<long[]>();
+        compressedLengths = new ArrayList<int[]>();
+        uncompressedLengths = new ArrayList<int[]>();
+        firstRecords = new ArrayList<long[]>();
+        long fileLength = compressedFile.length();
+        compressedFile.seek(fileLength - TRAILER_LENGTH);
+        long footerOffset = compressedFile.readLong();
+        if (compressedFile.readInt() != MAGIC || footerOffset < HEADER_LENGTH || footerOffset > fileLength - TRAILER_LENGTH) {
+            throw new IOException("Incomplete compressed cache file");
+        }
+        byte[] footer = new byte[(int) (fileLength - TRAILER_LENGTH - footerOffset)];
+        compressedFile.seek(footerOffset);
+        compressedFile.readFully(footer);
+        DataInputStream footerStream = new DataInputStream(new ByteArrayInputStream(footer));
+        int entryCount = footerStream.readInt();
+        for (int entry = 0; entry < entryCount; entry++) {
+            entryNames.add(footerStream.readUTF());
+            int blockCount = footerStream.readInt();
+            long[] offsets = new long[blockCount];
+            int[] compressed = new int[blockCount];
+            int[] uncompressed = new int[blockCount];
+            long[] records = new long[blockCount];
+            for (int block = 0; block < blockCount; block++) {
+                offsets[block] = footerStream.readLong();
+                compressed[block] = footerStream.readInt();
+                uncompressed[block] = footerStream.readInt();
+                records[block] = footerStream.readLong();
+            }
+            blockOffsets.add(offsets);
+            compressedLengths.add(compressed);
+            uncompressedLengths.add(uncompressed);
+            firstRecords.add(records);
+        }
+    }
+
+    /*
+     * Opens the compressed file of the cache
+     * @param   encoded name of the cache
+     * @return  CompressedCache or null if the file is missing or a zip file
+     */
+    public static CompressedCache open(String cacheName) {
+        File file = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.COMPRESSED_FILE_EXTENSION);
+        if (!file.exists() || file.length() < HEADER_LENGTH + TRAILER_LENGTH) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            randomAccessFile.readFully(header.array());
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                randomAccessFile.close();
+                return null;
+            }
+            return new CompressedCache(randomAccessFile, header);
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException closeException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", closeException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Checks whether the compressed file of the cache is block compressed
+     * @param   encoded name of the cache
+     * @return  true if the blocks of the cache can be read without extracting it
+     */
+    public static boolean isAvailable(String cacheName) {
+        CompressedCache compressedCache = open(cacheName);
+        if (compressedCache == null) {
+            return false;
+        }
+        compressedCache.close();
+        return true;
+    }
+
+    /*
+     * @return  pool compressing and decompressing the blocks
+     */
+    public static synchronized ExecutorService getBlockPool() {
+        if (blockPool == null) {
+            blockPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CacheBlockWorker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return blockPool;
+    }
+
+    /*
+     * @return  symbol prefix of the directories of this cache
+     */
+    public String getCacheIndex() {
+        return cacheIndex;
+    }
+
+    /*
+     * @param   name of the entry
+     * @return  number of blocks of the entry, 0 if there is no such entry
+     */
+    public int getBlockCount(String entryName) {
+        int entry = entryNames.indexOf(entryName);
+        return (entry < 0 ? 0 : blockOffsets.get(entry).length);
+    }
+
+    /*
+     * Finds the block holding a line of the entry using the first line numbers of the footer
+     * @param   entryName->name of the entry    recordNumber->line number
+     * @return  index of the block or -1 if the entry has no such line
+     */
+    public int findBlock(String entryName, long recordNumber) {
+        int entry = entryNames.indexOf(entryName);
+        if (entry < 0 || recordNumber < 0 || blockOffsets.get(entry).length == 0) {
+            return -1;
+        }
+        int block = Arrays.binarySearch(firstRecords.get(entry), recordNumber);
+        return (block >= 0 ? block : -block - 2);
+    }
+
+    /*
+     * Reads and decompresses one block, may be called from several threads
+     * @param   entryName->name of the entry    block->index of the block
+     * @return  whole lines of the block
+     */
+    public byte[] readBlock(String entryName, int block) throws IOException {
+        int entry = entryNames.indexOf(entryName);
+        ByteBuffer compressedBlock = ByteBuffer.allocate(compressedLengths.get(entry)[block]);
+        FileChannel fileChannel = compressedFile.getChannel();
+        long position = blockOffsets.get(entry)[block];
+        while (compressedBlock.hasRemaining()) {
+            int readCount = fileChannel.read(compressedBlock, position + compressedBlock.position());
+            if (readCount < 0) {
+                throw new IOException("Incomplete compressed cache file");
+            }
+        }
+        byte[] uncompressedBlock = new byte[uncompressedLengths.get(entry)[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressedBlock.array());
+            int length = 0;
+            while (length < uncompressedBlock.length && !inflater.finished()) {
+                int inflatedCount = inflater.inflate(uncompressedBlock, length, uncompressedBlock.length - length);
+                if (inflatedCount == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Corrupt block in compressed cache file");
+                }
+                length += inflatedCount;
+            }
+        } catch (DataFormatException dataFormatException) {
+            throw new IOException(dataFormatException);
+        } finally {
+            inflater.end();
+        }
+        return uncompressedBlock;
+    }
+
+    /*
+     * Decompresses an entry into a file, blocks are decompressed in parallel and written in order
+     * @param   entryName->name of the entry    destination->file to be written
+     */
+    public void extract(final String entryName, File destination) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(destination), BLOCK_SIZE);
+        LinkedList<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+        try {
+            int blockCount = getBlockCount(entryName);
+            for (int block = 0; block < blockCount || !pendingBlocks.isEmpty();) {
+                while (block < blockCount && pendingBlocks.size() < READ_AHEAD_BLOCKS) {
+                    final int nextBlock = block++;
+                    pendingBlocks.add(getBlockPool().submit(new Callable<byte[]>() {
+
+                        @Override
+                        public byte[] call() throws IOException {
+                            return readBlock(entryName, nextBlock);
+                        }
+                    }));
+                }
+                outputStream.write(pendingBlocks.removeFirst().get());
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException(interruptedException);
+        } catch (ExecutionException executionException) {
+            throw new IOException(executionException.getCause());
+        } finally {
+            for (Future<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(false);
+            }
+            outputStream.close();
+        }
+    }
+
+    /*
+     * @return  names of the entries
+     */
+    public ArrayList<String> getEntryNames() {
+        return entryNames;
+    }
+
+    /*
+     * Closes the compressed file
+     */
+    public void close() {
+        try {
+            compressedFile.close();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+    }
+
+    /*
+     * Writes the files as entries of a block compressed file
+     * @param   destination->compressed file   cacheIndex->symbol prefix of the cache  sourceFiles->files to be compressed
+     *          compressionLevel->deflate level of the blocks
+     */
+    static void write(File destination, int cacheIndex, File[] sourceFiles, int compressionLevel) throws IOException {
+        String[] entryNames = new String[sourceFiles.length];
+        for (int entry = 0; entry < sourceFiles.length; entry++) {
+            entryNames[entry] = sourceFiles[entry].getName();
+        }
+        BlockCompressor blockCompressor = new BlockCompressor(destination, cacheIndex, entryNames, compressionLevel);
+        try {
+            byte[] buffer = new byte[BLOCK_SIZE];
+            for (int entry = 0; entry < sourceFiles.length; entry++) {
+                InputStream inputStream = new FileInputStream(sourceFiles[entry]);
+                try {
+                    int readCount;
+                    while ((readCount = inputStream.read(buffer)) > 0) {
+                        blockCompressor.write(entry, buffer, 0, readCount);
+                    }
+                } finally {
+                    inputStream.close();
+                }
+            }
+        } catch (IOException iOException) {
+            blockCompressor.abort();
+            throw iOException;
+        }
+        blockCompressor.finish();
+    }
+
+    /*
+     * Writes the header of a compressed file
+     * @param   outputStream->compressed file   cacheIndex->symbol prefix of the cache
+     * @return  length of the header
+     */
+    static long writeHeader(DataOutputStream outputStream, int cacheIndex) throws IOException {
+        outputStream.writeInt(MAGIC);
+        outputStream.writeInt(VERSION);
+        outputStream.writeInt(cacheIndex);
+        return HEADER_LENGTH;
+    }
+
+    /*
+     * Writes the trailer of a compressed file which locates its footer
+     * @param   outputStream->compressed file   footerOffset->position of the footer
+     */
+    static void writeTrailer(DataOutputStream outputStream, long footerOffset) throws IOException {
+        outputStream.writeLong(footerOffset);
+        outputStream.writeInt(MAGIC);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * DeltaLog.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class DeltaLog {
+
+    /*
+     * Prefix of a new directory symbol, followed by symbol/absolutePath
+     */
+    static final char SYMBOL_ENTRY = 'S';
+    /*
+     * Prefix of an added or modified record, followed by the raw record
+     */
+    static final char ADDED_ENTRY = '+';
+    /*
+     * Prefix of a deleted record, followed by parentSymbol/name
+     */
+    static final char DELETED_ENTRY = '-';
+    /*
+     * Prefix of a deleted directory, followed by its symbol
+     */
+    static final char DELETED_DIRECTORY_ENTRY = 'D';
+    /*
+     * Map to hold symbols of the directories created after the scan
+     */
+    private final LinkedHashMap<String, String> directorySymbols;
+    /*
+     * Symbols of the directories deleted after the scan
+     */
+    private final HashSet<String> deletedDirectorySymbols;
+    /*
+     * Map to hold parentSymbol/name and its latest record, null value denotes deleted record
+     */
+    private final LinkedHashMap<String, String> changedRecords;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(DeltaLog.class.getName());
+
+    /*
+     * Constructs the DeltaLog by replaying the delta file of the cache
+     * @param   encoded name of the cache
+     */
+    public DeltaLog(String cacheName) {
+        directorySymbols = new LinkedHashMap<String, String>();
+        deletedDirectorySymbols = new HashSet<String>();
+        changedRecords = new LinkedHashMap<String, String>();
+        File deltaFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.DELTA_FILE_EXTENSION);
+        if (!deltaFile.exists()) {
+            return;
+        }
+        BufferedReader bufferedReader = null;
+        try {
+            bufferedReader = new BufferedReader(new FileReader(deltaFile));
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                replay(line);
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+    }
+
+    /*
+     * Applies one line of the delta file, incomplete lines are ignored
+     * @param   line of the delta file
+     */
+    private void replay(String line) {
+        if (line.length() < 2) {
+            return;
+        }
+        String entry = line.substring(1);
+        switch (line.charAt(0)) {
+            case SYMBOL_ENTRY:
+                int separatorIndex = entry.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex > 0) {
+                    directorySymbols.put(entry.substring(0, separatorIndex), entry.substring(separatorIndex + 1));
+                }
+                break;
+            case ADDED_ENTRY:
+                String recordKey = getRecordKey(entry);
+                if (recordKey != null) {
+                    changedRecords.remove(recordKey);   //keeps the records in the order of their last change
+                    changedRecords.put(recordKey, entry);
+                }
+                break;
+            case DELETED_ENTRY:
+                changedRecords.remove(entry);
+                changedRecords.put(entry, null);
+                break;
+            case DELETED_DIRECTORY_ENTRY:
+                deletedDirectorySymbols.add(entry);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /*
+     * Finds parentSymbol/name part of the raw record which identifies the file in its cache
+     * @param   rawPath cache formatted path
+     * @return  parentSymbol/name or null if the record is incomplete
+     */
+    public static String getRecordKey(String rawPath) {
+        int nameIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR);
+        if (nameIndex < 0) {
+            return null;
+        }
+        int sizeIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR, nameIndex + 1);
+        if (sizeIndex < 0) {
+            return null;
+        }
+        return rawPath.substring(0, sizeIndex);
+    }
+
+    /*
+     * @return  true if nothing changed since the scan
+     */
+    public boolean isEmpty() {
+        return (changedRecords.isEmpty() && deletedDirectorySymbols.isEmpty());
+    }
+
+    /*
+     * Checks whether a record of the scanned raw file is replaced or deleted by the delta
+     * @param   rawPath cache formatted path of the scanned raw file
+     * @return  true if the record must be skipped
+     */
+    public boolean isChanged(String rawPath) {
+        String recordKey = getRecordKey(rawPath);
+        if (recordKey == null) {
+            return false;
+        }
+        if (changedRecords.containsKey(recordKey)) {
+            return true;
+        }
+        return (!deletedDirectorySymbols.isEmpty() && deletedDirectorySymbols.contains(recordKey.substring(0, recordKey.indexOf(PropertyPage.FILE_SEPARATOR))));
+    }
+
+    /*
+     * Finds the parent directories whose scanned records may be replaced or deleted by the delta
+     * @return  symbols of the parent directories of the changed records and of the deleted directories
+     */
+    public HashSet<String> getChangedParentSymbols() {
+        HashSet<String> changedParentSymbols = new HashSet<String>(deletedDirectorySymbols);
+        for (String recordKey : changedRecords.keySet()) {
+            changedParentSymbols.add(recordKey.substring(0, recordKey.indexOf(PropertyPage.FILE_SEPARATOR)));
+        }
+        return changedParentSymbols;
+    }
+
+    /*
+     * Finds the records added or modified after the scan
+     * @return  iterator over the current raw records of the delta
+     */
+    public Iterator<String> getAddedRecords() {
+        final Iterator<Map.Entry<String, String>> changedRecordsIterator = changedRecords.entrySet().iterator();
+        return new Iterator<String>() {
+
+            /*
+             * Next record to be returned
+             */
+            private String nextRecord = findNext();
+
+            /*
+             * Skips deleted records and records of deleted directories
+             */
+            private String findNext() {
+                while (changedRecordsIterator.hasNext()) {
+                    Map.Entry<String, String> changedRecord = changedRecordsIterator.next();
+                    String record = changedRecord.getValue();
+                    if (record != null && !deletedDirectorySymbols.contains(record.substring(0, record.indexOf(PropertyPage.FILE_SEPARATOR)))) {
+                        return record;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return (nextRecord != null);
+            }
+
+            @Override
+            public String next() {
+                String record = nextRecord;
+                nextRecord = findNext();
+                return record;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /*
+     * Finds absolute path of a directory created after the scan
+     * @param   directory symbol
+     * @return  absolute path or null if the symbol belongs to the scanned symbol file
+     */
+    public String getDirectoryPath(String directorySymbol) {
+        return directorySymbols.get(directorySymbol);
+    }
+
+    /*
+     * Checks whether a directory was deleted after the scan
+     * @param   directory symbol
+     * @return  true if the directory is deleted
+     */
+    public boolean isDeletedDirectory(String directorySymbol) {
+        return deletedDirectorySymbols.contains(directorySymbol);
+    }
+
+    /*
+     * @return  the directorySymbols of the directories created after the scan
+     */
+    public Map<String, String> getDirectorySymbols() {
+        return directorySymbols;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * DirectoryTask.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+@SuppressWarnings("serial")
+class DirectoryTask extends RecursiveAction {
+
+    /*
+     * Absolute path of the directory to be listed
+     */
+    private final String directoryPath;
+    /*
+     * Last modified date of the directory read before it is listed
+     */
+    private final long lastModifiedDate;
+    /*
+     * File iterator which owns this walk
+     */
+    private final FileIterator fileIterator;
+    /*
+     * Absolute paths of the children, null for excluded directories and skipped children
+     */
+    private String[] childPaths;
+    /*
+     * File sizes of the children
+     */
+    private long[] childSizes;
+    /*
+     * Last modified dates of the children
+     */
+    private long[] childLastModifiedDates;
+    /*
+     * File property bitmasks of the children
+     */
+    private int[] childPropertiesMasks;
+    /*
+     * Listing tasks of the child directories, null for files
+     */
+    private DirectoryTask[] childDirectoryTasks;
+    /*
+     * Records of the children carried forward from the previous scan, null when listed again
+     */
+    private String[] childRecords;
+    /*
+     * Flag to denote that some children were excluded from caching or skipped by a resumed scan
+     */
+    private boolean isChildSkipped;
+    /*
+     * Names of the children written before the checkpoint of a resumed scan, null for a normal scan
+     */
+    private HashSet<String> skippedNames;
+    /*
+     * Flag to make sure the task is submitted only once
+     */
+    private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(DirectoryTask.class.getName());
+
+    /*
+     * Modified date used when the directory could not be read
+     */
+    static final long UNKNOWN_LAST_MODIFIED_DATE = -1L;
+    /*
+     * Directory bit of the file property bitmask
+     */
+    private static final int DIRECTORY_PROPERTY_MASK = 16;
+
+    /*
+     * Constructs the DirectoryTask with directory path, its modified date and owning file iterator
+     * @param   aDirectoryPath->directory to be listed    aLastModifiedDate->modified date of the directory
+     *          aFileIterator->owner of the walk
+     */
+    DirectoryTask(String aDirectoryPath, long aLastModifiedDate, FileIterator aFileIterator) {
+        directoryPath = aDirectoryPath;
+        lastModifiedDate = aLastModifiedDate;
+        fileIterator = aFileIterator;
+    }
+
+    /*
+     * Lists the directory and collects the properties of each child
+     * Properties are taken from a single attributes read per child
+     * Unchanged directories of an incremental scan take their file records from the previous scan
+     * Child directories are forked so that they are listed by idle workers
+     */
+    @Override
+    protected void compute() {
+        if (PropertyPage.getFileIteratorStopper()) {
+            return; //caching process aborted by user
+        }
+        if (fileIterator.getPreviousCache() != null && lastModifiedDate != UNKNOWN_LAST_MODIFIED_DATE && skippedNames == null) {
+            ArrayList<String> previousRecords = fileIterator.getPreviousCache().getUnchangedRecords(directoryPath, lastModifiedDate);
+            if (previousRecords != null && copyPreviousRecords(previousRecords)) {
+                forkChildDirectoryTasks();
+                return;
+            }
+        }
+        ArrayList<Path> childFiles = listDirectory();
+        if (childFiles == null) {
+            return;
+        }
+        int childCount = childFiles.size();
+        allocateChildren(childCount);
+        for (int i = 0; i < childCount; i++) {
+            Path childFile = childFiles.get(i);
+            if (skippedNames != null && skippedNames.contains(childFile.getFileName().toString())) {
+                isChildSkipped = true;
+                continue;   //written before the checkpoint
+            }
+            String childPath = childFile.toString();
+            BasicFileAttributes fileAttributes;
+            try {
+                fileAttributes = Utility.readFileAttributes(childFile);
+            } catch (IOException iOException) {
+                childPaths[i] = childPath;  //broken link or vanished file, cached without properties
+                continue;
+            }
+            if (fileAttributes.isDirectory()) {
+                if (fileIterator.isExcluded(childPath)) {
+                    isChildSkipped = true;
+                    continue;   //excluded from caching
+                }
+                childDirectoryTasks[i] = new DirectoryTask(childPath, fileAttributes.lastModifiedTime().toMillis(), fileIterator);
+            } else {
+                childSizes[i] = fileAttributes.size();
+            }
+            childPaths[i] = childPath;
+            childLastModifiedDates[i] = fileAttributes.lastModifiedTime().toMillis();
+            childPropertiesMasks[i] = Utility.getFilePropertiesMask(childFile, fileAttributes);
+        }
+        childFiles = null;
+        forkChildDirectoryTasks();
+    }
+
+    /*
+     * Takes the children of an unchanged directory from its previous records
+     * File records are carried forward as they are, directories are read again to find whether they changed
+     * @param   previousRecords->raw records of the children written by the previous scan
+     * @return  false if a record could not be used, then the directory has to be listed again
+     */
+    private boolean copyPreviousRecords(ArrayList<String> previousRecords) {
+        int childCount = previousRecords.size();
+        allocateChildren(childCount);
+        childRecords = new String[childCount];
+        for (int i = 0; i < childCount; i++) {
+            String record = previousRecords.get(i);
+            int maskIndex = record.lastIndexOf(PropertyPage.FILE_SEPARATOR);
+            int dateIndex = record.lastIndexOf(PropertyPage.FILE_SEPARATOR, maskIndex - 1);
+            int sizeIndex = record.lastIndexOf(PropertyPage.FILE_SEPARATOR, dateIndex - 1);
+            int nameIndex = record.indexOf(PropertyPage.FILE_SEPARATOR);
+            if (nameIndex < 0 || sizeIndex <= nameIndex + 1) {
+                return false;   //root level directory or unknown record
+            }
+            String childPath = directoryPath.endsWith(PropertyPage.FILE_SEPARATOR)
+                    ? directoryPath + record.substring(nameIndex + 1, sizeIndex)
+                    : directoryPath + record.substring(nameIndex, sizeIndex);
+            int propertiesMask;
+            try {
+                propertiesMask = Integer.parseInt(record.substring(maskIndex + 1));
+            } catch (NumberFormatException numberFormatException) {
+                return false;
+            }
+            if ((propertiesMask & DIRECTORY_PROPERTY_MASK) == 0) {
+                childPaths[i] = childPath;
+                childRecords[i] = record.substring(nameIndex);
+                continue;
+            }
+            Path childFile = Paths.get(childPath);
+            BasicFileAttributes fileAttributes;
+            try {
+                fileAttributes = Utility.readFileAttributes(childFile);
+            } catch (IOException iOException) {
+                return false;   //directory vanished since the modified date was read
+            }
+            if (!fileAttributes.isDirectory()) {
+                return false;
+            }
+            if (fileIterator.isExcluded(childPath)) {
+                isChildSkipped = true;
+                continue;   //excluded from caching
+            }
+            childPaths[i] = childPath;
+            childLastModifiedDates[i] = fileAttributes.lastModifiedTime().toMillis();
+            childPropertiesMasks[i] = Utility.getFilePropertiesMask(childFile, fileAttributes);
+            childDirectoryTasks[i] = new DirectoryTask(childPath, childLastModifiedDates[i], fileIterator);
+        }
+        return true;
+    }
+
+    /*
+     * Allocates the arrays which hold the properties of the children
+     * @param   number of children
+     */
+    private void allocateChildren(int childCount) {
+        childPaths = new String[childCount];
+        childSizes = new long[childCount];
+        childLastModifiedDates = new long[childCount];
+        childPropertiesMasks = new int[childCount];
+        childDirectoryTasks = new DirectoryTask[childCount];
+        childRecords = null;
+        isChildSkipped = false;
+    }
+
+    /*
+     * Forks the listing of child directories unless too many entries are waiting to be written
+     */
+    private void forkChildDirectoryTasks() {
+        if (fileIterator.addPendingEntries(childPaths.length)) {
+            for (int i = 0; i < childPaths.length; i++) {
+                if (childDirectoryTasks[i] != null && childDirectoryTasks[i].markScheduled()) {
+                    childDirectoryTasks[i].fork();
+                }
+            }
+        }
+    }
+
+    /*
+     * Reads the entries of the directory
+     * @return  child paths or null if the directory could not be read
+     */
+    private ArrayList<Path> listDirectory() {
+        ArrayList<Path> childFiles = new ArrayList<Path>();
+        DirectoryStream<Path> directoryStream = null;
+        try {
+            directoryStream = Files.newDirectoryStream(Paths.get(directoryPath));
+            for (Path childFile : directoryStream) {
+                childFiles.add(childFile);
+            }
+        } catch (IOException iOException) {
+            return null;    //not accessible, same as an unreadable File.listFiles
+        } finally {
+            try {
+                if (directoryStream != null) {
+                    directoryStream.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return childFiles;
+    }
+
+    /*
+     * Marks the task as submitted
+     * @return  true if the task was not submitted before
+     */
+    boolean markScheduled() {
+        return isScheduled.compareAndSet(false, true);
+    }
+
+    /*
+     * Releases the collected listing once it is written to the symbol table
+     */
+    void release() {
+        childPaths = null;
+        childSizes = null;
+        childLastModifiedDates = null;
+        childPropertiesMasks = null;
+        childDirectoryTasks = null;
+        childRecords = null;
+    }
+
+    /*
+     * @return  the directoryPath
+     */
+    String getDirectoryPath() {
+        return directoryPath;
+    }
+
+    /*
+     * @return  the lastModifiedDate
+     */
+    long getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    /*
+     * @return  the childPaths, null if directory could not be listed
+     */
+    String[] getChildPaths() {
+        return childPaths;
+    }
+
+    /*
+     * @return  the childSizes
+     */
+    long[] getChildSizes() {
+        return childSizes;
+    }
+
+    /*
+     * @return  the childLastModifiedDates
+     */
+    long[] getChildLastModifiedDates() {
+        return childLastModifiedDates;
+    }
+
+    /*
+     * @return  the childPropertiesMasks
+     */
+    int[] getChildPropertiesMasks() {
+        return childPropertiesMasks;
+    }
+
+    /*
+     * @return  the childDirectoryTasks
+     */
+    DirectoryTask[] getChildDirectoryTasks() {
+        return childDirectoryTasks;
+    }
+
+    /*
+     * @return  the childRecords, null if the directory was listed
+     */
+    String[] getChildRecords() {
+        return childRecords;
+    }
+
+    /*
+     * @return  true if some children were excluded from caching or skipped by a resumed scan
+     */
+    boolean isChildSkipped() {
+        return isChildSkipped;
+    }
+
+    /*
+     * @param   names of the children to be skipped, written before the checkpoint of a resumed scan
+     */
+    void setSkippedNames(HashSet<String> someSkippedNames) {
+        skippedNames = someSkippedNames;
+    }
+}
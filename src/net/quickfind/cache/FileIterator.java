@@ -34,8 +34,16 @@
 package net.quickfind.cache;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.quickfind.config.PropertyPage;
@@ -45,7 +53,7 @@ import net.quickfind.core.Utility;
  * FileIterator.java
  * @author  Copyright (C) 2010 Vasantkumar Mulage
  */
-public class FileIterator extends Thread {
+public class FileIterator implements Runnable {
 
     /*
      * Root directory of the cache
@@ -96,58 +104,132 @@ public class FileIterator extends Thread {
      */
     private ArrayList<String> excludedRootsList;
     /*
-     * Thread lock to hold current thread
+     * Work stealing pool which lists the directories in parallel, shared with other file iterators
      */
-    private final Object FILE_ITERATOR_THREAD_LOCK = new Object();
+    private ForkJoinPool directoryListingPool;
+    /*
+     * Number of entries listed by the pool but not yet written to the symbol table
+     */
+    private final AtomicLong pendingEntriesCount = new AtomicLong(0L);
+    /*
+     * Maximum number of listed entries held in memory before the pool stops reading ahead
+     */
+    private static final long MAX_PENDING_ENTRIES = 500000L;
+    /*
+     * Cache files of the previous scan, null unless the scan is incremental
+     */
+    private PreviousCache previousCache;
+    /*
+     * Flag to denote that the files of the previous scan are moved aside for an incremental scan
+     */
+    private boolean isIncremental;
+    /*
+     * Checkpoint of the interrupted scan which is resumed, null for a new scan
+     */
+    private ScanCheckpoint resumeCheckpoint;
+    /*
+     * Directories being walked, cache root first
+     */
+    private final ArrayList<String> directoryStack = new ArrayList<String>();
+    /*
+     * Position of the cache root being walked among the included paths
+     */
+    private int currentRootIndex;
+    /*
+     * Time of the last checkpoint
+     */
+    private long lastCheckpointTime;
+    /*
+     * Flag to denote that the scan is stopped and its last checkpoint is written
+     */
+    private boolean isStopCheckpointWritten = false;
+    /*
+     * Interval in milliseconds between two checkpoints
+     */
+    private static final long CHECKPOINT_INTERVAL = 30000L;
     /*
      * Exception logger
      */
     private final static Logger LOGGER = Logger.getLogger(FileIterator.class.getName());
 
     /*
-     * Constructs the FileIterator with cache root path, cachepage and scanner
+     * Constructs the FileIterator with cache root path, cachepage, scanner and directory listing pool
      * @param   aCacheRoot->cache root path   aCachePage->cache configuration    aScanner->scanner
+     *          aDirectoryListingPool->pool which lists the directories
      */
-    public FileIterator(String aCacheRoot, CachePage aCachePage, Scanner aScanner) {
+    public FileIterator(String aCacheRoot, CachePage aCachePage, Scanner aScanner, ForkJoinPool aDirectoryListingPool) {
         cacheRoot = aCacheRoot;
         cachePage = aCachePage;
         scanner = aScanner;
-        cachePage.deleteOldCacheFiles(String.valueOf(cacheRoot.hashCode()));
-        cacheIndex = cachePage.getNextCacheIndex(String.valueOf(cacheRoot.hashCode()));
-        symbolTable = new SymbolTable(cacheRoot, cacheIndex);
-        localItemsCount = startTime = endTime = 0L;
-        for (int i = 0; i < aCachePage.getCacheList().size(); i++) {
-            if (((Cache) aCachePage.getCacheList().get(i)).getIncludedPath().equals(aCacheRoot)) {
-                cache = (Cache) aCachePage.getCacheList().get(i);
-                excludedPath = cache.getExcludedPath();
-                break;
+        directoryListingPool = aDirectoryListingPool;
+        String cacheName = String.valueOf(cacheRoot.hashCode());
+        cacheIndex = cachePage.getNextCacheIndex(cacheName);
+        cachePage.beginScan(cacheName);     //no extraction of the compressed file from here on
+        boolean isConstructed = false;
+        try {
+            resumeCheckpoint = ScanCheckpoint.load(cacheName);
+            if (resumeCheckpoint != null && !(resumeCheckpoint.getCacheRoot().equals(cacheRoot) && resumeCheckpoint.getCacheIndex() == cacheIndex
+                    && resumeCheckpoint.truncateCacheFiles(cacheName))) {
+                resumeCheckpoint = null;    //cache changed or files lost since the checkpoint
+            }
+            localItemsCount = startTime = endTime = 0L;
+            if (resumeCheckpoint != null) {
+                PreviousCache.delete(cacheName);
+                new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.DELTA_FILE_EXTENSION).delete();
+                symbolTable = new SymbolTable(cacheRoot, resumeCheckpoint);
+                localItemsCount = resumeCheckpoint.getItemsCount();
+            } else {
+                ScanCheckpoint.delete(cacheName);
+                if (aScanner.isIncrementalScan()) {
+                    isIncremental = keepPreviousCacheFiles(cacheName);
+                }
+                if (!isIncremental) {
+                    cachePage.deleteOldCacheFiles(cacheName);
+                }
+                symbolTable = new SymbolTable(cacheRoot, cacheIndex);
+            }
+            synchronized (aCachePage) {     //other file iterators may be adding their caches
+                for (int i = 0; i < aCachePage.getCacheList().size(); i++) {
+                    if (((Cache) aCachePage.getCacheList().get(i)).getIncludedPath().equals(aCacheRoot)) {
+                        cache = (Cache) aCachePage.getCacheList().get(i);
+                        excludedPath = cache.getExcludedPath();
+                        break;
+                    }
+                }
+            }
+            if (cache == null) {
+                cache = new Cache();
+            }
+            isConstructed = true;
+        } finally {
+            if (!isConstructed) {
+                cachePage.endScan(cacheName);   //the scan never starts
             }
-        }
-        if (cache == null) {
-            cache = new Cache();
         }
     }
 
     /*
-     * Starts the thread with normal priority
+     * Moves the files of the previous scan aside so that unchanged directories need not be listed again
+     * @param   encoded name of the cache
+     * @return  true if the previous files are available for the scan
      */
-    protected void runScanner() {
-        this.setPriority(NORM_PRIORITY);
-        synchronized (this.FILE_ITERATOR_THREAD_LOCK) {
-            try {
-                this.start();
-                this.FILE_ITERATOR_THREAD_LOCK.wait();    //blocking thread to enable single thread operation
-            } catch (InterruptedException interruptedEx) {
-                LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
-            }
+    private boolean keepPreviousCacheFiles(String cacheName) {
+        if (!PreviousCache.isAvailable(cacheName) || !cachePage.isRawDataCurrent(cacheName)) {
+            cachePage.createRawData(cacheName);     //raw files may not be extracted yet, only compressed file is left
+        }
+        if (PreviousCache.isAvailable(cacheName) && PreviousCache.moveAside(cacheName)) {
+            new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.DELTA_FILE_EXTENSION).delete();  //changes watched so far are found by the scan
+            return true;
         }
+        PreviousCache.delete(cacheName);
+        return false;
     }
 
     /*
      * Initiates the cache
      */
     private void initializeFileIterator() {
-        startTime = System.currentTimeMillis();
+        startTime = lastCheckpointTime = System.currentTimeMillis();
         PropertyPage.incrementIteratorThreadAliveCount();
         cache.setLocalCacheIndex(String.valueOf(cacheIndex));
         cache.setStartTimeStamp(String.valueOf(startTime));
@@ -161,6 +243,12 @@ public class FileIterator extends Thread {
         } else {
             excludedRootsList = new ArrayList<String>(0);
         }
+        if (isIncremental) {
+            previousCache = new PreviousCache();
+            if (!previousCache.load(String.valueOf(cacheRoot.hashCode()))) {
+                previousCache = null;   //lists every directory again
+            }
+        }
     }
 
     /*
@@ -174,33 +262,128 @@ public class FileIterator extends Thread {
         cache.setEndTimeStamp(String.valueOf(endTime));
         cache.setTimeTakenToCache(Utility.getReadableElapsedInterval(endTime - startTime));
         symbolTable.saveToCompressedFile();     //puts raw and symbol files into compressed file
+        CachePage.markRawDataCurrent(String.valueOf(cacheRoot.hashCode()));
+        symbolTable.writeBitmapIndex();     //identifies the raw file by its stamped modified date
+        ColumnarCache.build(String.valueOf(cacheRoot.hashCode()), String.valueOf(cacheIndex));
+        if (!BitmapIndex.isAvailable(String.valueOf(cacheRoot.hashCode()))) {
+            BitmapIndex.build(String.valueOf(cacheRoot.hashCode()));    //records of a resumed scan are not collected while written
+        }
+        if (PropertyPage.isTrigramIndex()) {
+            TrigramIndex.build(String.valueOf(cacheRoot.hashCode()));
+        }
+        if (previousCache != null) {
+            previousCache.close();
+            previousCache = null;
+        }
+        if (isIncremental) {
+            PreviousCache.delete(String.valueOf(cacheRoot.hashCode()));
+        }
+        if (!isStopCheckpointWritten) {
+            ScanCheckpoint.delete(String.valueOf(cacheRoot.hashCode()));   //scan completed
+        }
         cache.setCacheFileSize(symbolTable.getCompressedFileSize());
         cachePage.addCache(cache);
-        PropertyPage.decrementIteratorThreadAliveCount();   //removing this thread count from queue
     }
 
     /*
      * Calls file iterator to cache all Files/Directories under cacheRoot
+     * The cache is marked as scanned even when the scan fails, so that its raw files can be extracted again
      */
     @Override
     public void run() {
+        try {
+            scanCacheRoots();
+        } finally {
+            if (previousCache != null) {
+                previousCache.close();  //scan failed before the previous cache was released
+                previousCache = null;
+            }
+            cachePage.endScan(String.valueOf(cacheRoot.hashCode()));
+            if (startTime != 0L) {
+                PropertyPage.decrementIteratorThreadAliveCount();   //removing this thread count from queue
+            }
+        }
+    }
+
+    /*
+     * Walks every included path of the cache and stores the cache
+     */
+    private void scanCacheRoots() {
         initializeFileIterator();
         StringTokenizer includesStringTokenizer = new StringTokenizer(cacheRoot, "|");
-        while (includesStringTokenizer.hasMoreTokens()) {
+        for (currentRootIndex = 0; includesStringTokenizer.hasMoreTokens(); currentRootIndex++) {
             splittedCacheRoot = includesStringTokenizer.nextToken();
+            if (resumeCheckpoint != null && currentRootIndex < resumeCheckpoint.getRootIndex()) {
+                continue;   //walked completely before the checkpoint
+            }
+            if (resumeCheckpoint != null && currentRootIndex == resumeCheckpoint.getRootIndex()) {
+                resumeInterruptedWalk();
+                continue;
+            }
             symbolTable.addCacheRoot(splittedCacheRoot);
-            iterateFilesInDirectory(splittedCacheRoot);
+            if (!isExcluded(splittedCacheRoot)) {
+                iterateFilesInDirectory(new DirectoryTask(splittedCacheRoot, getLastModifiedDate(splittedCacheRoot), this));
+            }
         }
         finalizeFileIterator();
-        signal();   //release the FILE_ITERATOR_THREAD_LOCK
     }
 
     /*
-     * Releases the FILE_ITERATOR_THREAD_LOCK
+     * Continues the walk of an interrupted scan from its checkpoint
+     * Each directory being walked at the checkpoint is listed again, deepest first, skipping the children written before
+     */
+    private void resumeInterruptedWalk() {
+        HashMap<String, HashSet<String>> writtenChildren = resumeCheckpoint.readWrittenChildren(String.valueOf(cacheRoot.hashCode()));
+        ArrayList<String> checkpointStack = resumeCheckpoint.getDirectoryStack();
+        for (int level = checkpointStack.size() - 1; level >= 0; level--) {
+            directoryStack.clear();
+            directoryStack.addAll(checkpointStack.subList(0, level));  //parents are still pending
+            DirectoryTask directoryTask = new DirectoryTask(checkpointStack.get(level), DirectoryTask.UNKNOWN_LAST_MODIFIED_DATE, this);
+            directoryTask.setSkippedNames(writtenChildren.get(checkpointStack.get(level)));
+            iterateFilesInDirectory(directoryTask);
+        }
+        directoryStack.clear();
+    }
+
+    /*
+     * Writes a checkpoint from which an interrupted scan can be resumed
+     * Must be called between two records, when every directory in the stack is in the symbol table
+     */
+    private void writeCheckpoint() {
+        if (isStopCheckpointWritten) {
+            return; //walk after the stop is not consistent
+        }
+        ScanCheckpoint scanCheckpoint = new ScanCheckpoint(cacheRoot, cacheIndex, currentRootIndex, symbolTable.getLocalSeedValue(), localItemsCount, symbolTable.flushAll());
+        for (int i = 0; i < directoryStack.size(); i++) {
+            String directorySymbol = symbolTable.getSymbol(directoryStack.get(i));
+            if (directorySymbol == null) {
+                LOGGER.log(Level.WARNING, "Checkpoint skipped, no symbol for {0}", directoryStack.get(i));
+                return;
+            }
+            scanCheckpoint.addDirectory(directoryStack.get(i), directorySymbol);
+        }
+        scanCheckpoint.save(String.valueOf(cacheRoot.hashCode()));
+        lastCheckpointTime = System.currentTimeMillis();
+    }
+
+    /*
+     * Writes the last checkpoint of a stopped scan
      */
-    private void signal() {
-        synchronized (this.FILE_ITERATOR_THREAD_LOCK) {
-            this.FILE_ITERATOR_THREAD_LOCK.notify();
+    private void writeStopCheckpoint() {
+        writeCheckpoint();
+        isStopCheckpointWritten = true;
+    }
+
+    /*
+     * Reads modified date of the given directory
+     * @param   absolute path of the directory
+     * @return  modified date or unknown date if it could not be read
+     */
+    private long getLastModifiedDate(String directoryPath) {
+        try {
+            return Files.readAttributes(Paths.get(directoryPath), BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException iOException) {
+            return DirectoryTask.UNKNOWN_LAST_MODIFIED_DATE;
         }
     }
 
@@ -209,7 +392,7 @@ public class FileIterator extends Thread {
      * @param Directory path
      * @return true if it exists in the excluded roots list otherwise false
      */
-    private boolean isExcluded(final String rootDirectory) {
+    boolean isExcluded(final String rootDirectory) {
         for (int i = 0; i < excludedRootsList.size(); i++) {
             return (rootDirectory.startsWith(excludedRootsList.get(i).toString()));
         }
@@ -217,38 +400,86 @@ public class FileIterator extends Thread {
     }
 
     /*
-     * Iterates through all child files/directory under rootDirectory
-     * @param   rootDirectory of the iteration
+     * @return  files of the previous scan, null unless the scan is incremental
+     */
+    PreviousCache getPreviousCache() {
+        return previousCache;
+    }
+
+    /*
+     * Accounts the entries listed by a directory task
+     * @param   number of entries listed
+     * @return  true if the pool may keep reading ahead of the symbol table
+     */
+    boolean addPendingEntries(final long entriesCount) {
+        return (pendingEntriesCount.addAndGet(entriesCount) < MAX_PENDING_ENTRIES);
+    }
+
+    /*
+     * Writes the listing of directoryTask to the symbol table and walks its child directories
+     * Directories are listed in parallel by the pool, but written here in depth first order
+     * A checkpoint is written periodically and when the scan is stopped
+     * @param   directoryTask of the iteration
      */
-    private void iterateFilesInDirectory(final String rootDirectory) {
+    private void iterateFilesInDirectory(final DirectoryTask directoryTask) {
         scanner.sendProgress(); // update the progress to user
+        directoryStack.add(directoryTask.getDirectoryPath());
 
         if (PropertyPage.getFileIteratorStopper()) {
+            writeStopCheckpoint();
+            directoryStack.remove(directoryStack.size() - 1);
             return; //caching process aborted by user
         }
 
-        if (isExcluded(rootDirectory)) {
-            return; //excluded from caching
+        if (directoryTask.markScheduled()) {
+            directoryListingPool.execute(directoryTask);    //not read ahead by the pool yet
         }
+        directoryTask.join();
 
-        if (!rootDirectory.equals(splittedCacheRoot)) {
-            symbolTable.add(rootDirectory, true);   //cache the directory
-            localItemsCount++;
+        String[] childPaths = directoryTask.getChildPaths();
+        if (childPaths == null && PropertyPage.getFileIteratorStopper()) {
+            writeStopCheckpoint();  //listing aborted, the directory is listed again on resume
         }
-
-        File parentDirectory = new File(rootDirectory);
-        File[] childFiles = parentDirectory.listFiles();
-        parentDirectory = null;
-        if (childFiles != null) {
-            for (int i = 0; i < childFiles.length; i++) {
-
-                if (childFiles[i].isDirectory()) {
-                    iterateFilesInDirectory(childFiles[i].getAbsolutePath()); //recursive call to subdirectory
+        if (childPaths != null) {
+            String[] childRecords = directoryTask.getChildRecords();
+            long writtenCount = 0L;
+            long[] childSizes = directoryTask.getChildSizes();
+            long[] childLastModifiedDates = directoryTask.getChildLastModifiedDates();
+            int[] childPropertiesMasks = directoryTask.getChildPropertiesMasks();
+            DirectoryTask[] childDirectoryTasks = directoryTask.getChildDirectoryTasks();
+            pendingEntriesCount.addAndGet(-childPaths.length);
+            for (int i = 0; i < childPaths.length; i++) {
+                if (childPaths[i] == null) {
+                    continue;   //excluded from caching
+                }
+                if (PropertyPage.getFileIteratorStopper()) {
+                    writeStopCheckpoint();
+                    break;  //caching process aborted by user
+                }
+                if (System.currentTimeMillis() - lastCheckpointTime > CHECKPOINT_INTERVAL) {
+                    writeCheckpoint();
+                }
+                if (childDirectoryTasks[i] != null) {
+                    symbolTable.add(childPaths[i], true, 0L, childLastModifiedDates[i], childPropertiesMasks[i]);   //cache the directory
+                    localItemsCount++;
+                    writtenCount++;
+                    iterateFilesInDirectory(childDirectoryTasks[i]); //walk through subdirectory
+                } else if (childRecords != null && childRecords[i] != null) {
+                    symbolTable.addPreviousRecord(directoryTask.getDirectoryPath(), childRecords[i]);   //unchanged file of the previous scan
+                    localItemsCount++;
+                    writtenCount++;
                 } else {
-                    symbolTable.add(childFiles[i].toString(), false);   //cache the file
+                    symbolTable.add(childPaths[i], false, childSizes[i], childLastModifiedDates[i], childPropertiesMasks[i]);   //cache the file
                     localItemsCount++;
+                    writtenCount++;
                 }
             }
+            if (!PropertyPage.getFileIteratorStopper() && !directoryTask.isChildSkipped()
+                    && directoryTask.getLastModifiedDate() != DirectoryTask.UNKNOWN_LAST_MODIFIED_DATE) {
+                symbolTable.addDirectoryData(directoryTask.getDirectoryPath(), directoryTask.getLastModifiedDate(), writtenCount);
+            }
         }
+        directoryTask.release();
+        directoryStack.remove(directoryStack.size() - 1);
     }
 }
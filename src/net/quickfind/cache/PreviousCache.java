@@ -0,0 +1,371 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * PreviousCache.java
+ * Only the directories of the previous scan are kept in memory, the records of a directory are read from the
+ * previous raw file when the directory is found unchanged
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+class PreviousCache {
+
+    /*
+     * Map to hold directory path and symbol of the previous cache
+     */
+    private final HashMap<String, String> directorySymbols;
+    /*
+     * Map to hold directory symbol and {file offset, byte length, record count} of the raw records of its children
+     */
+    private final HashMap<String, long[]> recordRanges;
+    /*
+     * Map to hold directory path and {last modified date, child count}
+     */
+    private final HashMap<String, long[]> directoryData;
+    /*
+     * Symbols of the directories whose records hold human readable sizes or are not written together,
+     * these directories are listed again
+     */
+    private final HashSet<String> relistedSymbols;
+    /*
+     * Previous raw file, read by all the directory listing threads at the offsets of recordRanges
+     */
+    private FileChannel rawFileChannel;
+    /*
+     * Bytes of the previous raw file read at a time while it is indexed
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(PreviousCache.class.getName());
+
+    /*
+     * Constructs empty PreviousCache, call load to read the previous files
+     */
+    PreviousCache() {
+        directorySymbols = new HashMap<String, String>();
+        recordRanges = new HashMap<String, long[]>();
+        directoryData = new HashMap<String, long[]>();
+        relistedSymbols = new HashSet<String>();
+    }
+
+    /*
+     * Checks whether the files of an earlier scan are available for an incremental scan
+     * @param   encoded name of the cache
+     * @return  true if raw, symbol and directory files exist
+     */
+    static boolean isAvailable(String cacheName) {
+        return (new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION).exists()
+                && new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION).exists()
+                && new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.DIRECTORY_FILE_EXTENSION).exists());
+    }
+
+    /*
+     * Moves the files of the earlier scan aside so that the new scan can write its own
+     * @param   encoded name of the cache
+     * @return  true if all the files are moved
+     */
+    static boolean moveAside(String cacheName) {
+        String[] extensions = {PropertyPage.RAW_FILE_EXTENSION, PropertyPage.SYMBOLS_FILE_EXTENSION, PropertyPage.DIRECTORY_FILE_EXTENSION};
+        for (int i = 0; i < extensions.length; i++) {
+            File currentFile = new File(PropertyPage.getCacheDirectory() + cacheName + extensions[i]);
+            File previousFile = new File(PropertyPage.getCacheDirectory() + cacheName + extensions[i] + PropertyPage.PREVIOUS_FILE_EXTENSION);
+            previousFile.delete();
+            if (!currentFile.renameTo(previousFile)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Deletes the files moved aside by moveAside
+     * @param   encoded name of the cache
+     */
+    static void delete(String cacheName) {
+        new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION).delete();
+        new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION).delete();
+        new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.DIRECTORY_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION).delete();
+    }
+
+    /*
+     * Reads the directories of the files moved aside by moveAside and indexes the records of each directory
+     * @param   encoded name of the cache
+     * @return  true if the previous cache is loaded completely
+     */
+    boolean load(String cacheName) {
+        String previousFilePrefix = PropertyPage.getCacheDirectory() + cacheName;
+        BufferedReader bufferedReader = null;
+        try {
+            String line;
+            bufferedReader = new BufferedReader(new FileReader(previousFilePrefix + PropertyPage.SYMBOLS_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION));
+            while ((line = bufferedReader.readLine()) != null) {
+                int separatorIndex = line.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex > 0) {
+                    directorySymbols.put(line.substring(separatorIndex + 1), line.substring(0, separatorIndex));
+                }
+            }
+            bufferedReader.close();
+
+            indexRecords(previousFilePrefix + PropertyPage.RAW_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION);
+            rawFileChannel = new RandomAccessFile(previousFilePrefix + PropertyPage.RAW_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION, "r").getChannel();
+
+            bufferedReader = new BufferedReader(new FileReader(previousFilePrefix + PropertyPage.DIRECTORY_FILE_EXTENSION + PropertyPage.PREVIOUS_FILE_EXTENSION));
+            while ((line = bufferedReader.readLine()) != null) {
+                int firstSeparatorIndex = line.indexOf(PropertyPage.FILE_SEPARATOR);
+                int secondSeparatorIndex = line.indexOf(PropertyPage.FILE_SEPARATOR, firstSeparatorIndex + 1);
+                if (firstSeparatorIndex > 0 && secondSeparatorIndex > firstSeparatorIndex) {
+                    long lastModifiedDate = Long.parseLong(line.substring(0, firstSeparatorIndex));
+                    long childCount = Long.parseLong(line.substring(firstSeparatorIndex + 1, secondSeparatorIndex));
+                    directoryData.put(line.substring(secondSeparatorIndex + 1), new long[]{lastModifiedDate, childCount});
+                }
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            close();
+            return false;
+        } catch (NumberFormatException numberFormatException) {
+            LOGGER.log(Level.SEVERE, "Invalid directory data", numberFormatException);
+            close();
+            return false;
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Finds the byte range of the records of each directory in the previous raw file
+     * The records of a directory are written together, a directory whose records are scattered is listed again
+     * @param   rawFilePath path of the previous raw file
+     */
+    private void indexRecords(String rawFilePath) throws IOException {
+        InputStream inputStream = new FileInputStream(rawFilePath);
+        try {
+            byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+            byte[] lineBytes = new byte[256];
+            int lineLength = 0;
+            long lineStart = 0L;
+            long bufferStart = 0L;
+            String currentSymbol = null;
+            int readCount;
+            while ((readCount = inputStream.read(readBuffer)) > 0) {
+                for (int i = 0; i < readCount; i++) {
+                    if (readBuffer[i] == '\n') {
+                        currentSymbol = addRecord(lineBytes, lineLength, lineStart, bufferStart + i + 1, currentSymbol);
+                        lineLength = 0;
+                        lineStart = bufferStart + i + 1;
+                    } else {
+                        if (lineLength == lineBytes.length) {
+                            lineBytes = Arrays.copyOf(lineBytes, lineLength * 2);
+                        }
+                        lineBytes[lineLength++] = readBuffer[i];
+                    }
+                }
+                bufferStart += readCount;
+            }
+            if (lineLength > 0) {
+                addRecord(lineBytes, lineLength, lineStart, bufferStart, currentSymbol);    //last line without line break
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /*
+     * Extends the byte range of the directory of a record
+     * @param   lineBytes->bytes of the record     lineLength->number of bytes of the record without line break
+     *          lineStart->offset of the record     lineEnd->offset after the line break     currentSymbol->directory of the previous record
+     * @return  directory symbol of the record
+     */
+    private String addRecord(byte[] lineBytes, int lineLength, long lineStart, long lineEnd, String currentSymbol) {
+        if (lineLength > 0 && lineBytes[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        int separatorIndex = indexOf(lineBytes, 0, lineLength, PropertyPage.FILE_SEPARATOR.charAt(0));
+        if (separatorIndex <= 0) {
+            return currentSymbol;
+        }
+        String parentSymbol = new String(lineBytes, 0, separatorIndex);
+        long[] recordRange = recordRanges.get(parentSymbol);
+        if (recordRange == null) {
+            recordRange = new long[]{lineStart, 0L, 0L};
+            recordRanges.put(parentSymbol, recordRange);
+        } else if (!parentSymbol.equals(currentSymbol)) {
+            relistedSymbols.add(parentSymbol);  //records of the directory are not written together
+        }
+        recordRange[1] = lineEnd - recordRange[0];
+        recordRange[2]++;
+        if (!isSizeInBytes(lineBytes, lineLength)) {
+            relistedSymbols.add(parentSymbol);    //scanned before sizes were kept in bytes
+        }
+        return parentSymbol;
+    }
+
+    /*
+     * Closes the previous raw file, the records can not be read afterwards
+     */
+    void close() {
+        if (rawFileChannel != null) {
+            try {
+                rawFileChannel.close();
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+            rawFileChannel = null;
+        }
+    }
+
+    /*
+     * Finds the previous records of a directory which has not changed since the previous scan
+     * A directory is unchanged when its modified date and child count match the previous scan and its records hold sizes in bytes
+     * @param   directoryPath->absolute path    lastModifiedDate->current modified date of the directory
+     * @return  previous raw records of the children or null if the directory has to be listed again
+     */
+    ArrayList<String> getUnchangedRecords(String directoryPath, long lastModifiedDate) {
+        long[] previousDirectoryData = directoryData.get(directoryPath);
+        if (previousDirectoryData == null || previousDirectoryData[0] != lastModifiedDate) {
+            return null;
+        }
+        String directorySymbol = directorySymbols.get(directoryPath);
+        if (directorySymbol == null || relistedSymbols.contains(directorySymbol)) {
+            return null;
+        }
+        long[] recordRange = recordRanges.get(directorySymbol);
+        if ((recordRange == null ? 0L : recordRange[2]) != previousDirectoryData[1]) {
+            return null;
+        }
+        if (recordRange == null) {
+            return new ArrayList<String>(0);
+        }
+        try {
+            return readRecords(recordRange);
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            return null;
+        }
+    }
+
+    /*
+     * Reads the records of a directory from the previous raw file
+     * @param   recordRange {file offset, byte length, record count} of the records
+     * @return  raw records of the children
+     */
+    private ArrayList<String> readRecords(long[] recordRange) throws IOException {
+        ByteBuffer recordBuffer = ByteBuffer.allocate((int) recordRange[1]);
+        while (recordBuffer.hasRemaining()) {
+            if (rawFileChannel.read(recordBuffer, recordRange[0] + recordBuffer.position()) < 0) {
+                throw new IOException("Previous raw file is truncated");
+            }
+        }
+        String recordLines = new String(recordBuffer.array());  //raw file is written in the default charset
+        ArrayList<String> records = new ArrayList<String>((int) recordRange[2]);
+        int lineStart = 0;
+        while (lineStart < recordLines.length()) {
+            int lineEnd = recordLines.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = recordLines.length();
+            }
+            int recordEnd = (lineEnd > lineStart && recordLines.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd);
+            if (recordEnd > lineStart) {
+                records.add(recordLines.substring(lineStart, recordEnd));
+            }
+            lineStart = lineEnd + 1;
+        }
+        return records;
+    }
+
+    /*
+     * Checks the size field of a raw record
+     * @param   lineBytes->bytes of the cache formatted path     lineLength->number of bytes of the path
+     * @return  true if the size is in bytes, false if it is human readable
+     */
+    private static boolean isSizeInBytes(byte[] lineBytes, int lineLength) {
+        char separator = PropertyPage.FILE_SEPARATOR.charAt(0);
+        int maskIndex = lastIndexOf(lineBytes, lineLength - 1, separator);
+        int dateIndex = lastIndexOf(lineBytes, maskIndex - 1, separator);
+        int sizeIndex = lastIndexOf(lineBytes, dateIndex - 1, separator);
+        return (sizeIndex < 0 || indexOf(lineBytes, sizeIndex + 1, dateIndex, ' ') < 0);
+    }
+
+    /*
+     * @param   bytes->searched bytes     fromIndex->first index searched     toIndex->index after the last one     searched->ascii character
+     * @return  index of the first searched byte or -1
+     */
+    private static int indexOf(byte[] bytes, int fromIndex, int toIndex, char searched) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (bytes[i] == searched) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * @param   bytes->searched bytes     fromIndex->last index searched, backwards     searched->ascii character
+     * @return  index of the last searched byte or -1
+     */
+    private static int lastIndexOf(byte[] bytes, int fromIndex, char searched) {
+        for (int i = fromIndex; i >= 0; i--) {
+            if (bytes[i] == searched) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
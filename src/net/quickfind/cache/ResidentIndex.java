@@ -0,0 +1,263 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.File;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * ResidentIndex.java
+ * Copy of the columnar cache held in primitive arrays, caches marked resident are searched without reading their files
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class ResidentIndex {
+
+    /*
+     * Initial capacity of the names arena per record
+     */
+    private static final int AVERAGE_NAME_LENGTH = 16;
+    /*
+     * Encoded name of the cache
+     */
+    private final String cacheName;
+    /*
+     * Symbol prefix of the directories of this cache
+     */
+    private final String cacheIndex;
+    /*
+     * Length and last modified date of the raw file the index is loaded from
+     */
+    private final long rawFileLength;
+    private final long rawFileLastModified;
+    /*
+     * Number of records
+     */
+    private final int recordCount;
+    /*
+     * Parent directory id of each record
+     */
+    private final int[] parentIds;
+    /*
+     * Start offsets of the names in the arena, recordCount + 1 entries
+     */
+    private final int[] nameOffsets;
+    /*
+     * Names of all records one after another
+     */
+    private final char[] names;
+    /*
+     * View on the whole names arena, matched between the offsets of a record
+     */
+    private final CharBuffer namesView;
+    /*
+     * File sizes in bytes, last modified dates and properties masks of each record
+     */
+    private final long[] sizes;
+    private final long[] lastModifiedDates;
+    private final byte[] attributes;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(ResidentIndex.class.getName());
+
+    /*
+     * Constructs the ResidentIndex with its columns
+     */
+    private ResidentIndex(String aCacheName, String aCacheIndex, long aRawFileLength, long aRawFileLastModified, int[] aParentIds,
+            int[] aNameOffsets, char[] aNames, long[] aSizes, long[] aLastModifiedDates, byte[] anAttributes) {
+        cacheName = aCacheName;
+        cacheIndex = aCacheIndex;
+        rawFileLength = aRawFileLength;
+        rawFileLastModified = aRawFileLastModified;
+        recordCount = aParentIds.length;
+        parentIds = aParentIds;
+        nameOffsets = aNameOffsets;
+        names = aNames;
+        namesView = CharBuffer.wrap(names).asReadOnlyBuffer();
+        sizes = aSizes;
+        lastModifiedDates = aLastModifiedDates;
+        attributes = anAttributes;
+    }
+
+    /*
+     * Loads the columnar cache file into memory
+     * @param   encoded name of the cache
+     * @return  ResidentIndex or null if there is no current columnar cache file or it does not fit the arrays
+     */
+    public static ResidentIndex load(String cacheName) {
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        long rawFileLength = rawFile.length();
+        long rawFileLastModified = rawFile.lastModified();
+        ColumnarCache columnarCache = ColumnarCache.open(cacheName);
+        if (columnarCache == null) {
+            return null;
+        }
+        ResidentIndex residentIndex;
+        try {
+            int recordCount = columnarCache.getRecordCount();
+            int[] parentIds = new int[recordCount];
+            int[] nameOffsets = new int[recordCount + 1];
+            char[] names = new char[(int) Math.min((long) recordCount * AVERAGE_NAME_LENGTH, Integer.MAX_VALUE - 8)];
+            long[] sizes = new long[recordCount];
+            long[] lastModifiedDates = new long[recordCount];
+            byte[] attributes = new byte[recordCount];
+            int nameOffset = 0;
+            for (int record = 0; record < recordCount && columnarCache.next(); record++) {
+                CharSequence recordName = columnarCache.getName();
+                if (columnarCache.getParentId() > Integer.MAX_VALUE || (long) nameOffset + recordName.length() > Integer.MAX_VALUE - 8) {
+                    LOGGER.log(Level.WARNING, "Cache {0} is too large to be kept in memory", cacheName);
+                    return null;
+                }
+                parentIds[record] = (int) columnarCache.getParentId();
+                if (nameOffset + recordName.length() > names.length) {
+                    names = Arrays.copyOf(names, (int) Math.min(Math.max(2L * names.length, (long) nameOffset + recordName.length()), Integer.MAX_VALUE - 8));
+                }
+                for (int i = 0; i < recordName.length(); i++) {
+                    names[nameOffset++] = recordName.charAt(i);
+                }
+                nameOffsets[record + 1] = nameOffset;
+                sizes[record] = columnarCache.getSize();
+                lastModifiedDates[record] = columnarCache.getLastModifiedDate();
+                attributes[record] = (byte) columnarCache.getAttributes();
+            }
+            residentIndex = new ResidentIndex(cacheName, columnarCache.getCacheIndex(), rawFileLength, rawFileLastModified, parentIds,
+                    nameOffsets, Arrays.copyOf(names, nameOffset), sizes, lastModifiedDates, attributes);
+        } finally {
+            columnarCache.close();
+        }
+        LOGGER.log(Level.INFO, "Cache {0} kept in memory, {1} records in {2}", new Object[]{cacheName, residentIndex.getRecordCount(), Utility.getFileSize(residentIndex.getMemoryUsage())});
+        return residentIndex;
+    }
+
+    /*
+     * Checks whether the index is loaded from the current raw file, a rescanned cache is loaded again
+     * @return  true if the index can be searched
+     */
+    public boolean isCurrent() {
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        return rawFile.length() == rawFileLength && rawFile.lastModified() == rawFileLastModified;
+    }
+
+    /*
+     * @return  bytes held by the columns of the index
+     */
+    public long getMemoryUsage() {
+        return parentIds.length * 4L + nameOffsets.length * 4L + names.length * 2L
+                + sizes.length * 8L + lastModifiedDates.length * 8L + attributes.length;
+    }
+
+    /*
+     * @return  symbol prefix of the directories of this cache
+     */
+    public String getCacheIndex() {
+        return cacheIndex;
+    }
+
+    /*
+     * @return  number of records
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /*
+     * @param   index of the record
+     * @return  id of the parent directory of the record
+     */
+    public long getParentId(int record) {
+        return parentIds[record];
+    }
+
+    /*
+     * @return  names of all records, the name of a record lies between getNameStart and getNameEnd
+     */
+    public CharSequence getNames() {
+        return namesView;
+    }
+
+    /*
+     * @param   index of the record
+     * @return  start of the name of the record in getNames
+     */
+    public int getNameStart(int record) {
+        return nameOffsets[record];
+    }
+
+    /*
+     * @param   index of the record
+     * @return  end of the name of the record in getNames
+     */
+    public int getNameEnd(int record) {
+        return nameOffsets[record + 1];
+    }
+
+    /*
+     * @param   index of the record
+     * @return  size of the record in bytes
+     */
+    public long getSize(int record) {
+        return sizes[record];
+    }
+
+    /*
+     * @param   index of the record
+     * @return  last modified date of the record
+     */
+    public long getLastModifiedDate(int record) {
+        return lastModifiedDates[record];
+    }
+
+    /*
+     * @param   index of the record
+     * @return  properties mask of the record
+     */
+    public int getAttributes(int record) {
+        return attributes[record];
+    }
+
+    /*
+     * Builds the cache formatted path of a record as written in the raw file
+     * @param   index of the record
+     * @return  rawPath of the record
+     */
+    public String getRawPath(int record) {
+        return ColumnarCache.buildRawPath(cacheIndex + parentIds[record], CharBuffer.wrap(names, nameOffsets[record], nameOffsets[record + 1] - nameOffsets[record]),
+                sizes[record], lastModifiedDates[record], attributes[record]);
+    }
+}
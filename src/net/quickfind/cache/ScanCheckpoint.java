@@ -0,0 +1,359 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * ScanCheckpoint.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+class ScanCheckpoint {
+
+    /*
+     * Included path of the cache
+     */
+    private String cacheRoot;
+    /*
+     * Cache index of the interrupted scan
+     */
+    private int cacheIndex;
+    /*
+     * Position of the cache root being walked among the included paths
+     */
+    private int rootIndex;
+    /*
+     * Seed value of the next directory symbol
+     */
+    private long localSeedValue;
+    /*
+     * Number of items written till the checkpoint
+     */
+    private long itemsCount;
+    /*
+     * Lengths of the raw, symbol and directory files at the checkpoint
+     */
+    private long[] fileOffsets;
+    /*
+     * Directories being walked at the checkpoint, cache root first
+     */
+    private ArrayList<String> directoryStack;
+    /*
+     * Symbols of the directories being walked
+     */
+    private ArrayList<String> directoryStackSymbols;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(ScanCheckpoint.class.getName());
+
+    /*
+     * Constructs the ScanCheckpoint with the state of a running scan
+     * @param   aCacheRoot->included path    aCacheIndex->cache index    aRootIndex->position of the walked root
+     *          aLocalSeedValue->next seed value    anItemsCount->items written    someFileOffsets->lengths of raw, symbol and directory files
+     */
+    ScanCheckpoint(String aCacheRoot, int aCacheIndex, int aRootIndex, long aLocalSeedValue, long anItemsCount, long[] someFileOffsets) {
+        cacheRoot = aCacheRoot;
+        cacheIndex = aCacheIndex;
+        rootIndex = aRootIndex;
+        localSeedValue = aLocalSeedValue;
+        itemsCount = anItemsCount;
+        fileOffsets = someFileOffsets;
+        directoryStack = new ArrayList<String>();
+        directoryStackSymbols = new ArrayList<String>();
+    }
+
+    /*
+     * Adds a directory being walked, parents must be added first
+     * @param   directoryPath->absolute path    directorySymbol->symbol of the directory
+     */
+    void addDirectory(String directoryPath, String directorySymbol) {
+        directoryStack.add(directoryPath);
+        directoryStackSymbols.add(directorySymbol);
+    }
+
+    /*
+     * Checks whether an interrupted scan of the cache can be resumed
+     * @param   encoded name of the cache
+     * @return  true if checkpoint file exists
+     */
+    static boolean isAvailable(String cacheName) {
+        return new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.CHECKPOINT_FILE_EXTENSION).exists();
+    }
+
+    /*
+     * Deletes the checkpoint of the cache
+     * @param   encoded name of the cache
+     */
+    static void delete(String cacheName) {
+        new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.CHECKPOINT_FILE_EXTENSION).delete();
+    }
+
+    /*
+     * Writes the checkpoint, the previous checkpoint is replaced only when the new one is complete
+     * @param   encoded name of the cache
+     */
+    void save(String cacheName) {
+        File checkpointFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.CHECKPOINT_FILE_EXTENSION);
+        File temporaryFile = new File(checkpointFile.getPath() + PropertyPage.PREVIOUS_FILE_EXTENSION);
+        BufferedWriter bufferedWriter = null;
+        try {
+            bufferedWriter = new BufferedWriter(new FileWriter(temporaryFile));
+            bufferedWriter.write(cacheRoot);
+            bufferedWriter.newLine();
+            bufferedWriter.write(cacheIndex + PropertyPage.FILE_SEPARATOR + rootIndex + PropertyPage.FILE_SEPARATOR + localSeedValue + PropertyPage.FILE_SEPARATOR + itemsCount);
+            bufferedWriter.newLine();
+            bufferedWriter.write(fileOffsets[0] + PropertyPage.FILE_SEPARATOR + fileOffsets[1] + PropertyPage.FILE_SEPARATOR + fileOffsets[2]);
+            bufferedWriter.newLine();
+            for (int i = 0; i < directoryStack.size(); i++) {
+                bufferedWriter.write(directoryStackSymbols.get(i) + PropertyPage.FILE_SEPARATOR + directoryStack.get(i));
+                bufferedWriter.newLine();
+            }
+            bufferedWriter.close();
+            bufferedWriter = null;
+            Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (bufferedWriter != null) {
+                    bufferedWriter.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+    }
+
+    /*
+     * Reads the checkpoint of the cache
+     * @param   encoded name of the cache
+     * @return  checkpoint or null if it is missing or unreadable
+     */
+    static ScanCheckpoint load(String cacheName) {
+        if (!isAvailable(cacheName)) {
+            return null;
+        }
+        BufferedReader bufferedReader = null;
+        try {
+            bufferedReader = new BufferedReader(new FileReader(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.CHECKPOINT_FILE_EXTENSION));
+            String checkpointRoot = bufferedReader.readLine();
+            String[] counters = bufferedReader.readLine().split(Pattern.quote(PropertyPage.FILE_SEPARATOR));
+            String[] offsets = bufferedReader.readLine().split(Pattern.quote(PropertyPage.FILE_SEPARATOR));
+            ScanCheckpoint scanCheckpoint = new ScanCheckpoint(checkpointRoot, Integer.parseInt(counters[0]), Integer.parseInt(counters[1]),
+                    Long.parseLong(counters[2]), Long.parseLong(counters[3]),
+                    new long[]{Long.parseLong(offsets[0]), Long.parseLong(offsets[1]), Long.parseLong(offsets[2])});
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                int separatorIndex = line.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex > 0) {
+                    scanCheckpoint.addDirectory(line.substring(separatorIndex + 1), line.substring(0, separatorIndex));
+                }
+            }
+            return (scanCheckpoint.directoryStack.isEmpty() ? null : scanCheckpoint);
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } catch (RuntimeException runtimeException) {
+            LOGGER.log(Level.SEVERE, "Invalid checkpoint", runtimeException);   //incomplete checkpoint, scan starts afresh
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Cuts the raw, symbol and directory files back to the checkpoint
+     * Records written after the checkpoint are written again by the resumed scan
+     * @param   encoded name of the cache
+     * @return  false if the files are shorter than the checkpoint, then the scan can not be resumed
+     */
+    boolean truncateCacheFiles(String cacheName) {
+        String[] extensions = {PropertyPage.RAW_FILE_EXTENSION, PropertyPage.SYMBOLS_FILE_EXTENSION, PropertyPage.DIRECTORY_FILE_EXTENSION};
+        for (int i = 0; i < extensions.length; i++) {
+            if (new File(PropertyPage.getCacheDirectory() + cacheName + extensions[i]).length() < fileOffsets[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < extensions.length; i++) {
+            RandomAccessFile randomAccessFile = null;
+            try {
+                randomAccessFile = new RandomAccessFile(PropertyPage.getCacheDirectory() + cacheName + extensions[i], "rw");
+                randomAccessFile.setLength(fileOffsets[i]);
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+                return false;
+            } finally {
+                try {
+                    if (randomAccessFile != null) {
+                        randomAccessFile.close();
+                    }
+                } catch (IOException iOException) {
+                    LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Finds the children of each directory being walked which are written before the checkpoint
+     * Files are taken from the raw file, directories from the symbol file since their records carry no name under the file system root
+     * @param   encoded name of the cache, files must be truncated to the checkpoint already
+     * @return  map of directory path and names of its written children
+     */
+    HashMap<String, HashSet<String>> readWrittenChildren(String cacheName) {
+        HashMap<String, HashSet<String>> writtenChildren = new HashMap<String, HashSet<String>>();
+        HashMap<String, String> stackSymbolPaths = new HashMap<String, String>();
+        for (int i = 0; i < directoryStack.size(); i++) {
+            writtenChildren.put(directoryStack.get(i), new HashSet<String>());
+            stackSymbolPaths.put(directoryStackSymbols.get(i), directoryStack.get(i));
+        }
+        BufferedReader bufferedReader = null;
+        try {
+            String line;
+            bufferedReader = new BufferedReader(new FileReader(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION));
+            while ((line = bufferedReader.readLine()) != null) {
+                int nameIndex = line.indexOf(PropertyPage.FILE_SEPARATOR);
+                int maskIndex = line.lastIndexOf(PropertyPage.FILE_SEPARATOR);
+                int dateIndex = line.lastIndexOf(PropertyPage.FILE_SEPARATOR, maskIndex - 1);
+                int sizeIndex = line.lastIndexOf(PropertyPage.FILE_SEPARATOR, dateIndex - 1);
+                if (nameIndex < 0 || sizeIndex <= nameIndex) {
+                    continue;
+                }
+                String directoryPath = stackSymbolPaths.get(line.substring(0, nameIndex));
+                if (directoryPath != null) {
+                    writtenChildren.get(directoryPath).add(line.substring(nameIndex + 1, sizeIndex));
+                }
+            }
+            bufferedReader.close();
+            bufferedReader = new BufferedReader(new FileReader(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION));
+            while ((line = bufferedReader.readLine()) != null) {
+                int separatorIndex = line.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex < 0) {
+                    continue;
+                }
+                Path directoryPath = Paths.get(line.substring(separatorIndex + 1));
+                if (directoryPath.getParent() != null && directoryPath.getFileName() != null) {
+                    HashSet<String> childNames = writtenChildren.get(directoryPath.getParent().toString());
+                    if (childNames != null) {
+                        childNames.add(directoryPath.getFileName().toString());
+                    }
+                }
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return writtenChildren;
+    }
+
+    /*
+     * @return  the cacheRoot
+     */
+    String getCacheRoot() {
+        return cacheRoot;
+    }
+
+    /*
+     * @return  the cacheIndex
+     */
+    int getCacheIndex() {
+        return cacheIndex;
+    }
+
+    /*
+     * @return  the rootIndex
+     */
+    int getRootIndex() {
+        return rootIndex;
+    }
+
+    /*
+     * @return  the localSeedValue
+     */
+    long getLocalSeedValue() {
+        return localSeedValue;
+    }
+
+    /*
+     * @return  the itemsCount
+     */
+    long getItemsCount() {
+        return itemsCount;
+    }
+
+    /*
+     * @return  the directoryStack, cache root first
+     */
+    ArrayList<String> getDirectoryStack() {
+        return directoryStack;
+    }
+
+    /*
+     * @return  the directoryStackSymbols, cache root first
+     */
+    ArrayList<String> getDirectoryStackSymbols() {
+        return directoryStackSymbols;
+    }
+}
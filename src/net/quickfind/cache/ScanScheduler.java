@@ -0,0 +1,295 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * ScanScheduler.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+class ScanScheduler {
+
+    /*
+     * Work stealing pool shared by all the running file iterators
+     */
+    private final ForkJoinPool directoryListingPool;
+    /*
+     * Pool which runs the file iterators
+     */
+    private final ExecutorService cacheScanPool;
+    /*
+     * Delivers the file iterators in the order they finish
+     */
+    private final CompletionService<ScanJob> completionService;
+    /*
+     * Caches waiting for a free slot
+     */
+    private final ArrayList<ScanJob> pendingJobs;
+    /*
+     * Number of running file iterators per device
+     */
+    private final HashMap<String, Integer> runningScansPerDevice;
+    /*
+     * Maximum number of caches scanned at once
+     */
+    private final int maxConcurrentScans;
+    /*
+     * Maximum number of caches scanned at once on one device
+     */
+    private final int maxScansPerDevice;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(ScanScheduler.class.getName());
+
+    /*
+     * Constructs the ScanScheduler with thread budget and concurrency limits
+     * @param   listingThreads->threads shared by all scans   concurrentScans->caches at once   scansPerDevice->caches at once per device
+     */
+    ScanScheduler(int listingThreads, int concurrentScans, int scansPerDevice) {
+        directoryListingPool = new ForkJoinPool(listingThreads);
+        cacheScanPool = Executors.newFixedThreadPool(concurrentScans);
+        completionService = new ExecutorCompletionService<ScanJob>(cacheScanPool);
+        pendingJobs = new ArrayList<ScanJob>();
+        runningScansPerDevice = new HashMap<String, Integer>();
+        maxConcurrentScans = concurrentScans;
+        maxScansPerDevice = scansPerDevice;
+    }
+
+    /*
+     * @return  the directoryListingPool
+     */
+    ForkJoinPool getDirectoryListingPool() {
+        return directoryListingPool;
+    }
+
+    /*
+     * Queues the cache for scanning
+     * @param   cacheRoot->included path of the cache   fileIteratorFactory->creates the iterator when the cache starts
+     */
+    void addScan(String cacheRoot, Callable<FileIterator> fileIteratorFactory) {
+        pendingJobs.add(new ScanJob(getDevices(cacheRoot), fileIteratorFactory));
+    }
+
+    /*
+     * Runs all the queued caches and returns once every started cache has finished
+     * A queued cache is started as soon as a global slot and a slot on each of its devices are free
+     */
+    void runScans() {
+        int runningScansCount = 0;
+        try {
+            while (!pendingJobs.isEmpty() || runningScansCount > 0) {
+                if (PropertyPage.getFileIteratorStopper()) {
+                    pendingJobs.clear();    //caching process aborted by user, let running caches finish
+                }
+                Iterator<ScanJob> pendingJobsIterator = pendingJobs.iterator();
+                while (runningScansCount < maxConcurrentScans && pendingJobsIterator.hasNext()) {
+                    ScanJob scanJob = pendingJobsIterator.next();
+                    if (isDeviceAvailable(scanJob)) {
+                        pendingJobsIterator.remove();
+                        if (scanJob.createFileIterator()) {
+                            reserveDevices(scanJob, 1);
+                            completionService.submit(scanJob);
+                            ++runningScansCount;
+                        }
+                    }
+                }
+                if (runningScansCount == 0) {
+                    break;
+                }
+                ScanJob finishedJob = awaitNextScan();
+                --runningScansCount;
+                if (finishedJob != null) {
+                    reserveDevices(finishedJob, -1);
+                }
+            }
+        } catch (InterruptedException interruptedEx) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
+            Thread.currentThread().interrupt();
+        } finally {
+            cacheScanPool.shutdown();
+            directoryListingPool.shutdown();
+        }
+    }
+
+    /*
+     * Waits for the next file iterator to finish
+     * @return  finished job or null if it failed
+     */
+    private ScanJob awaitNextScan() throws InterruptedException {
+        try {
+            return completionService.take().get();
+        } catch (ExecutionException executionException) {
+            LOGGER.log(Level.SEVERE, "Caching failed", executionException.getCause());
+            return null;
+        }
+    }
+
+    /*
+     * Waits until all the started caches have finished
+     * @return  true when no cache is running
+     */
+    boolean awaitTermination() {
+        try {
+            while (!cacheScanPool.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                //wait until runScans shuts down the pool
+            }
+        } catch (InterruptedException interruptedEx) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /*
+     * Checks whether every device of the job has a free slot
+     * @param   scanJob to be started
+     * @return  true if the job can be started now
+     */
+    private boolean isDeviceAvailable(ScanJob scanJob) {
+        for (String device : scanJob.devices) {
+            Integer runningScans = runningScansPerDevice.get(device);
+            if (runningScans != null && runningScans.intValue() >= maxScansPerDevice) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Adds or removes the job from the running count of its devices
+     * @param   scanJob->job started or finished    delta->+1 when started, -1 when finished
+     */
+    private void reserveDevices(ScanJob scanJob, int delta) {
+        for (String device : scanJob.devices) {
+            Integer runningScans = runningScansPerDevice.get(device);
+            runningScansPerDevice.put(device, (runningScans == null ? 0 : runningScans.intValue()) + delta);
+        }
+    }
+
+    /*
+     * Finds the devices holding the included paths of a cache
+     * Paths which can not be resolved are treated as a device of their own
+     * @param   cacheRoot included paths seperated by |
+     * @return  set of device names
+     */
+    private HashSet<String> getDevices(String cacheRoot) {
+        HashSet<String> devices = new HashSet<String>();
+        StringTokenizer includesStringTokenizer = new StringTokenizer(cacheRoot, "|");
+        while (includesStringTokenizer.hasMoreTokens()) {
+            String includedPath = includesStringTokenizer.nextToken();
+            try {
+                devices.add(Files.getFileStore(Paths.get(includedPath)).toString());
+            } catch (IOException iOException) {
+                devices.add(includedPath);
+            } catch (InvalidPathException invalidPathException) {
+                devices.add(includedPath);
+            }
+        }
+        return devices;
+    }
+
+    /*
+     * Cache waiting to be scanned together with its devices
+     */
+    private static class ScanJob implements Callable<ScanJob> {
+
+        /*
+         * Devices holding the included paths
+         */
+        private final HashSet<String> devices;
+        /*
+         * Creates the file iterator when the job starts
+         */
+        private final Callable<FileIterator> fileIteratorFactory;
+        /*
+         * File iterator of the cache
+         */
+        private FileIterator fileIterator;
+
+        ScanJob(HashSet<String> aDevices, Callable<FileIterator> aFileIteratorFactory) {
+            devices = aDevices;
+            fileIteratorFactory = aFileIteratorFactory;
+        }
+
+        /*
+         * Creates the file iterator on the scheduling thread, as it updates the cache collection
+         * @return  true if the file iterator is created
+         */
+        boolean createFileIterator() {
+            try {
+                fileIterator = fileIteratorFactory.call();
+            } catch (Exception unknownException) {
+                LOGGER.log(Level.SEVERE, "Unknown error", unknownException);
+            }
+            return (fileIterator != null);
+        }
+
+        /*
+         * Runs the file iterator of the job
+         * The job is returned even when the iterator fails, so that its devices are released
+         */
+        @Override
+        public ScanJob call() {
+            try {
+                fileIterator.run();
+            } catch (Throwable unknownThrowable) {
+                LOGGER.log(Level.SEVERE, "Caching failed", unknownThrowable);
+            } finally {
+                fileIterator = null;
+            }
+            return this;
+        }
+    }
+}
@@ -34,7 +34,7 @@
 package net.quickfind.cache;
 
 import java.util.ArrayList;
-import java.util.logging.Level;
+import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 import javax.swing.SwingWorker;
 import net.quickfind.core.CacheElement;
@@ -55,13 +55,21 @@ public class Scanner extends SwingWorker<Void, Void> implements CacheElement {
      */
     private int scanListSize = 0;
     /*
-     * File iterator to walk through child files/directory
+     * Schedules the file iterators of the scan list
      */
-    private FileIterator fileIterator[];
+    private volatile ScanScheduler scanScheduler;
     /*
      * Cachepage to handle cache related data
      */
     private CachePage cachePage;
+    /*
+     * Incremental scan flag, reuses the unchanged directories of the previous scan
+     */
+    private boolean isIncrementalScan;
+    /*
+     * Cache watcher to be stopped before the caches are scanned
+     */
+    private CacheWatcher cacheWatcher;
     /*
      * Exception logger
      */
@@ -74,37 +82,35 @@ public class Scanner extends SwingWorker<Void, Void> implements CacheElement {
     public Scanner(CachePage aCachePage) {
         scanList = new ArrayList<String>();
         cachePage = aCachePage;
+        isIncrementalScan = PropertyPage.isIncrementalScan();
     }
 
     /*
      * Background process to handle scanner
+     * Caches on different devices are scanned at the same time, the call returns when the last one finishes
      */
     @Override
     protected Void doInBackground() {
+        if (cacheWatcher != null) {
+            cacheWatcher.stopWatching();
+            cacheWatcher.awaitTermination();    //watcher must not write deltas of the caches being scanned
+            cacheWatcher = null;
+        }
         PropertyPage.resetCachedFilesCount();
         scanListSize = scanList.size();
-        /*
-         * Timer to update cache progress
-         */
-        final int TIMER_VALUE = 10 * scanListSize;
-
-        fileIterator = new FileIterator[scanList.size()];
+        scanScheduler = new ScanScheduler(PropertyPage.getScanParallelism(), PropertyPage.getConcurrentScans(), PropertyPage.getScansPerDevice());
         for (int i = 0; i < scanListSize; i++) {
-            fileIterator[i] = new FileIterator(cachePage.getIncludedCachePath(scanList.get(i).toString()), cachePage, this);
-            fileIterator[i].runScanner();
-            sendProgress(); //update progress to user
-        }
-        while (!isCancelled() && PropertyPage.getIteratorThreadAliveCount() >= 1) {
-            sendProgress(); //update progress to user
-            try {
-                if (!PropertyPage.getFileIteratorStopper()) {
-                    Thread.sleep(TIMER_VALUE);
+            final String cacheRoot = cachePage.getIncludedCachePath(scanList.get(i).toString());
+            scanScheduler.addScan(cacheRoot, new Callable<FileIterator>() {
+
+                @Override
+                public FileIterator call() {
+                    return new FileIterator(cacheRoot, cachePage, Scanner.this, scanScheduler.getDirectoryListingPool());
                 }
-            } catch (InterruptedException interruptedEx) {
-                LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
-                Thread.currentThread().interrupt();
-            }
+            });
         }
+        scanScheduler.runScans();
+        sendProgress(); //update progress to user
         cachePage.saveCacheConfigToFile();
         return null;
     }
@@ -121,21 +127,31 @@ public class Scanner extends SwingWorker<Void, Void> implements CacheElement {
      * @return  true when scanner stops successfully
      */
     public boolean stopScanner() {
-        /*
-         * Timer to wait until caching process aborts completely
-         */
-        long LONGER_TIMER_VALUE = 100 * scanListSize;
-        for (int i = 0; i < scanListSize; i++) {
-            while (fileIterator[i].isAlive()) {
-                try {
-                    Thread.sleep(LONGER_TIMER_VALUE);
-                } catch (InterruptedException interruptedEx) {
-                    LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
-                    Thread.currentThread().interrupt();
-                }
-            }
+        if (scanScheduler == null) {
+            return true;    //scanner not started
         }
-        return true;
+        return scanScheduler.awaitTermination();
+    }
+
+    /*
+     * @return  true if the scan reuses the unchanged directories of the previous scan
+     */
+    public boolean isIncrementalScan() {
+        return isIncrementalScan;
+    }
+
+    /*
+     * @param   newValue the incremental scan flag to set
+     */
+    public void setIncrementalScan(boolean newValue) {
+        isIncrementalScan = newValue;
+    }
+
+    /*
+     * @param   aCacheWatcher the running cache watcher to be stopped before scanning
+     */
+    public void setCacheWatcher(CacheWatcher aCacheWatcher) {
+        cacheWatcher = aCacheWatcher;
     }
 
     /*
@@ -0,0 +1,261 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+package net.quickfind.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * SymbolIndex.java
+ * Offsets of the lines of the symbol file of a cache, kept in memory so that directory symbols are read by seeking to them
+ * Line numbers of the symbol file are the seed values of the symbols, the offset of every SAMPLE_INTERVAL th line is kept
+ * and a symbol is read by skipping at most SAMPLE_INTERVAL - 1 lines after it. The index is built once per symbol file.
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class SymbolIndex {
+
+    /*
+     * Lines between two kept offsets, a power of 2
+     */
+    private static final int SAMPLE_SHIFT = 6;
+    private static final int SAMPLE_INTERVAL = 1 << SAMPLE_SHIFT;
+    /*
+     * Bytes read from the symbol file at a time
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /*
+     * Map to hold encoded cache name and the index of its symbol file
+     */
+    private static final HashMap<String, SymbolIndex> symbolIndexes = new HashMap<String, SymbolIndex>();
+    /*
+     * Symbol file of the cache
+     */
+    private final File symbolFile;
+    /*
+     * Length and last modified date of the symbol file the index is built from
+     */
+    private final long symbolFileLength;
+    private final long symbolFileLastModified;
+    /*
+     * Number of lines of the symbol file
+     */
+    private final long symbolCount;
+    /*
+     * Offset of every SAMPLE_INTERVAL th line
+     */
+    private final long[] sampleOffsets;
+
+    /*
+     * Constructs the SymbolIndex of a symbol file
+     */
+    private SymbolIndex(File aSymbolFile, long aSymbolFileLength, long aSymbolFileLastModified, long aSymbolCount, long[] aSampleOffsets) {
+        symbolFile = aSymbolFile;
+        symbolFileLength = aSymbolFileLength;
+        symbolFileLastModified = aSymbolFileLastModified;
+        symbolCount = aSymbolCount;
+        sampleOffsets = aSampleOffsets;
+    }
+
+    /*
+     * Finds the index of the current symbol file of the cache, building it if the cache is new or rescanned
+     * @param   encoded name of the cache
+     * @return  SymbolIndex or null if the cache has no symbol file
+     */
+    public static SymbolIndex open(String cacheName) throws IOException {
+        File symbolFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION);
+        if (!symbolFile.exists()) {
+            return null;
+        }
+        synchronized (symbolIndexes) {
+            SymbolIndex symbolIndex = symbolIndexes.get(cacheName);
+            if (symbolIndex == null || !symbolIndex.isCurrent()) {
+                symbolIndex = build(symbolFile);
+                symbolIndexes.put(cacheName, symbolIndex);
+            }
+            return symbolIndex;
+        }
+    }
+
+    /*
+     * Reads the symbol file once to keep the offsets of its lines
+     * @param   symbolFile symbol file of the cache
+     * @return  index of the symbol file
+     */
+    private static SymbolIndex build(File symbolFile) throws IOException {
+        long symbolFileLength = symbolFile.length();
+        long symbolFileLastModified = symbolFile.lastModified();
+        long[] sampleOffsets = new long[1024];
+        long symbolCount = 0;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(symbolFile, "r");
+        try {
+            FileChannel symbolFileChannel = randomAccessFile.getChannel();
+            ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            long bufferStart = 0;
+            long lineStart = 0;
+            while (bufferStart < symbolFileLength) {
+                readBuffer.clear();
+                int readCount = symbolFileChannel.read(readBuffer, bufferStart);
+                if (readCount <= 0) {
+                    break;
+                }
+                for (int i = 0; i < readCount; i++) {
+                    if (readBuffer.get(i) == '\n') {
+                        addSample(sampleOffsets = ensureSampleCapacity(sampleOffsets, symbolCount), symbolCount++, lineStart);
+                        lineStart = bufferStart + i + 1;
+                    }
+                }
+                bufferStart += readCount;
+            }
+            if (lineStart < symbolFileLength) {
+                addSample(sampleOffsets = ensureSampleCapacity(sampleOffsets, symbolCount), symbolCount++, lineStart);   //last line without line break
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        return new SymbolIndex(symbolFile, symbolFileLength, symbolFileLastModified, symbolCount,
+                Arrays.copyOf(sampleOffsets, (int) ((symbolCount + SAMPLE_INTERVAL - 1) >>> SAMPLE_SHIFT)));
+    }
+
+    /*
+     * @param   sampleOffsets->kept offsets     line->line about to be added
+     * @return  offsets with room for the line
+     */
+    private static long[] ensureSampleCapacity(long[] sampleOffsets, long line) {
+        int sample = (int) (line >>> SAMPLE_SHIFT);
+        return (sample < sampleOffsets.length ? sampleOffsets : Arrays.copyOf(sampleOffsets, sampleOffsets.length * 2));
+    }
+
+    /*
+     * Keeps the offset of the line if it starts a sample
+     */
+    private static void addSample(long[] sampleOffsets, long line, long lineStart) {
+        if ((line & (SAMPLE_INTERVAL - 1)) == 0) {
+            sampleOffsets[(int) (line >>> SAMPLE_SHIFT)] = lineStart;
+        }
+    }
+
+    /*
+     * Checks whether the index is built from the current symbol file, a rescanned cache is indexed again
+     * @return  true if the offsets lead to the lines of the symbol file
+     */
+    public boolean isCurrent() {
+        return symbolFile.length() == symbolFileLength && symbolFile.lastModified() == symbolFileLastModified;
+    }
+
+    /*
+     * @return  number of directory symbols of the symbol file
+     */
+    public long getSymbolCount() {
+        return symbolCount;
+    }
+
+    /*
+     * Reads the lines of the given directory ids, ids of one sample are read with one seek
+     * @param   directoryIds->sorted ids of the directories     count->number of ids to be read
+     * @return  symbol/absolutePath line of each id, null where the id is not part of the symbol file
+     */
+    public String[] readSymbolValues(long[] directoryIds, int count) throws IOException {
+        String[] symbolValues = new String[count];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(symbolFile, "r");
+        try {
+            FileChannel symbolFileChannel = randomAccessFile.getChannel();
+            ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            long bufferStart = -1;
+            int bufferLength = 0;
+            long line = -1;
+            long lineStart = 0;
+            for (int i = 0; i < count; i++) {
+                long directoryId = directoryIds[i];
+                if (directoryId < 0 || directoryId >= symbolCount) {
+                    continue;
+                }
+                if (line < 0 || directoryId < line || (directoryId >>> SAMPLE_SHIFT) != (line >>> SAMPLE_SHIFT)) {
+                    line = directoryId & ~((long) SAMPLE_INTERVAL - 1);
+                    lineStart = sampleOffsets[(int) (directoryId >>> SAMPLE_SHIFT)];
+                }
+                while (true) {
+                    if (bufferStart < 0 || lineStart < bufferStart || lineStart >= bufferStart + bufferLength) {
+                        readBuffer.clear();
+                        bufferLength = Math.max(0, symbolFileChannel.read(readBuffer, lineStart));
+                        bufferStart = lineStart;
+                    }
+                    int lineEnd = findLineEnd(readBuffer.array(), (int) (lineStart - bufferStart), bufferLength);
+                    if (lineEnd < 0 && bufferStart != lineStart) {
+                        bufferStart = -1;   //line crosses the end of the buffer, read again from its start
+                        continue;
+                    }
+                    if (lineEnd < 0) {
+                        if (bufferLength == readBuffer.capacity()) {
+                            readBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                            bufferStart = -1;
+                            continue;
+                        }
+                        lineEnd = bufferLength;     //last line without line break
+                    }
+                    if (line == directoryId) {
+                        int valueStart = (int) (lineStart - bufferStart);
+                        int valueEnd = (lineEnd > valueStart && readBuffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd);
+                        symbolValues[i] = new String(readBuffer.array(), valueStart, valueEnd - valueStart);  //symbol file is written in the default charset
+                        break;
+                    }
+                    line++;
+                    lineStart = bufferStart + lineEnd + 1;
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        return symbolValues;
+    }
+
+    /*
+     * @param   bytes->read bytes   start->start of the line in the bytes   length->number of read bytes
+     * @return  position of the line break ending the line, -1 if it is not read yet
+     */
+    private static int findLineEnd(byte[] bytes, int start, int length) {
+        for (int i = start; i < length; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -35,18 +35,16 @@ package net.quickfind.cache;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import net.quickfind.config.PropertyPage;
 import net.quickfind.core.Utility;
 
@@ -84,6 +82,18 @@ public class SymbolTable {
      * Directory symbols file writter
      */
     private BufferedWriter symbolsFileWriter = null;
+    /*
+     * Directory data file writter, keeps modified date and child count of each listed directory
+     */
+    private BufferedWriter directoryFileWriter = null;
+    /*
+     * Compresses the raw, symbol and directory files while they are written, null when appending to an interrupted scan
+     */
+    private BlockCompressor blockCompressor = null;
+    /*
+     * Collects extension and attribute bitmaps of the records while they are written, null when appending to an interrupted scan
+     */
+    private BitmapIndex.Builder bitmapBuilder = null;
     /*
      * Seed value at cache level
      */
@@ -106,16 +116,64 @@ public class SymbolTable {
         this.cacheIndex = cacheIndex;
         directoryTable = new HashMap<String, String>();
         cacheFormattedFilePath = new StringBuilder(1024);
-        try {
-            rawFileWriter = new BufferedWriter(new FileWriter((new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION))));
-        } catch (IOException iOException) {
-            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        openWriters(false);
+    }
+
+    /*
+     * Constructs SymbolTable which continues an interrupted scan from its checkpoint
+     * Cache files must be truncated to the checkpoint already
+     * @param   cacheRootPath->root directory     scanCheckpoint-> checkpoint of the interrupted scan
+     */
+    SymbolTable(String cacheRootPath, ScanCheckpoint scanCheckpoint) {
+        cacheRoot = cacheRootPath;
+        cacheIndex = scanCheckpoint.getCacheIndex();
+        localseedValue = scanCheckpoint.getLocalSeedValue();
+        directoryTable = new HashMap<String, String>();
+        for (int i = 0; i < scanCheckpoint.getDirectoryStack().size(); i++) {
+            directoryTable.put(scanCheckpoint.getDirectoryStack().get(i), scanCheckpoint.getDirectoryStackSymbols().get(i));
+        }
+        splittedCacheRoot = scanCheckpoint.getDirectoryStack().get(0);
+        cacheFormattedFilePath = new StringBuilder(1024);
+        openWriters(true);
+    }
+
+    /*
+     * Opens raw, symbol and directory file writters
+     * Files of a new scan are compressed while they are written
+     * @param   true to append to the files of an interrupted scan
+     */
+    private void openWriters(boolean isAppend) {
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION);
+        File symbolFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION);
+        File directoryFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.DIRECTORY_FILE_EXTENSION);
+        if (!isAppend) {
+            try {
+                blockCompressor = new BlockCompressor(new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.COMPRESSED_FILE_EXTENSION), cacheIndex, new String[]{rawFile.getName(), symbolFile.getName(), directoryFile.getName()}, PropertyPage.getCompressionLevel());
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+            bitmapBuilder = new BitmapIndex.Builder();
         }
+        rawFileWriter = openWriter(rawFile, isAppend, 0);
+        symbolsFileWriter = openWriter(symbolFile, isAppend, 1);
+        directoryFileWriter = openWriter(directoryFile, isAppend, 2);
+    }
+
+    /*
+     * Opens the writter of a file, which also feeds the block compressor if there is one
+     * @param   file->file to be written    isAppend->true to append    entry->index of the file in the compressed file
+     * @return  writter or null if the file can not be opened
+     */
+    private BufferedWriter openWriter(File file, boolean isAppend, int entry) {
         try {
-            symbolsFileWriter = new BufferedWriter(new FileWriter((new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION))));
+            if (blockCompressor != null) {
+                return new BufferedWriter(new OutputStreamWriter(blockCompressor.getEntryStream(entry, new FileOutputStream(file))));
+            }
+            return new BufferedWriter(new FileWriter(file, isAppend));
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
         }
+        return null;
     }
 
     /*
@@ -133,9 +191,11 @@ public class SymbolTable {
     /*
      * Converts given filePath to cache format and writes to file
      * Converts directory as symbol+filePath and writes to file
+     * File size is written in bytes, it is formatted only for display
      * @param   filePath->absolute path    isDirectorytype->denotes directory or file
+     *          fileSize->size in bytes    lastModifiedDate->modified time    propertiesMask->file property bitmask
      */
-    protected void add(String filePath, boolean isDirectorytype) {
+    protected void add(String filePath, boolean isDirectorytype, long fileSize, long lastModifiedDate, int propertiesMask) {
         PropertyPage.incrementCachedFilesCount();
         cacheFormattedFilePath.delete(0, cacheFormattedFilePath.length());
         if (isDirectorytype) {
@@ -143,17 +203,41 @@ public class SymbolTable {
             increaseSeedValue();
             writeSymbolData(seedValue + PropertyPage.FILE_SEPARATOR + filePath);
             directoryTable.put(filePath, seedValue);
-            cacheFormattedFilePath.append(directoryTable.get(getParentPath(filePath))).append(getDirectoryName(filePath)).append(PropertyPage.FILE_SEPARATOR).append("0").append(PropertyPage.FILE_SEPARATOR).append(Utility.getLastModifiedDate(filePath)).append(PropertyPage.FILE_SEPARATOR).append(Utility.getFilePropertiesMask(filePath));
+            cacheFormattedFilePath.append(directoryTable.get(getParentPath(filePath))).append(getDirectoryName(filePath)).append(PropertyPage.FILE_SEPARATOR).append("0").append(PropertyPage.FILE_SEPARATOR).append(lastModifiedDate).append(PropertyPage.FILE_SEPARATOR).append(propertiesMask);
             writeRawData(cacheFormattedFilePath.toString());
             if (directoryTable.size() > 100) {
                 shrinkData(filePath);
             }
         } else {
-            cacheFormattedFilePath.append(directoryTable.get(getParentPath(filePath))).append(getFileName(filePath)).append(PropertyPage.FILE_SEPARATOR).append(Utility.getFileSize(filePath)).append(PropertyPage.FILE_SEPARATOR).append(Utility.getLastModifiedDate(filePath)).append(PropertyPage.FILE_SEPARATOR).append(Utility.getFilePropertiesMask(filePath));
+            cacheFormattedFilePath.append(directoryTable.get(getParentPath(filePath))).append(getFileName(filePath)).append(PropertyPage.FILE_SEPARATOR).append(fileSize).append(PropertyPage.FILE_SEPARATOR).append(lastModifiedDate).append(PropertyPage.FILE_SEPARATOR).append(propertiesMask);
             writeRawData(cacheFormattedFilePath.toString());
         }
     }
 
+    /*
+     * Writes a file record carried forward from the previous scan under the symbol of its parent
+     * @param   parentPath->absolute path of the parent directory    recordTail->record without the parent symbol
+     */
+    protected void addPreviousRecord(String parentPath, String recordTail) {
+        PropertyPage.incrementCachedFilesCount();
+        cacheFormattedFilePath.delete(0, cacheFormattedFilePath.length());
+        cacheFormattedFilePath.append(directoryTable.get(parentPath)).append(recordTail);
+        writeRawData(cacheFormattedFilePath.toString());
+    }
+
+    /*
+     * Writes modified date and child count of a completely listed directory
+     * @param   directoryPath->absolute path    lastModifiedDate->modified time    childCount->records written for the directory
+     */
+    protected void addDirectoryData(String directoryPath, long lastModifiedDate, long childCount) {
+        try {
+            directoryFileWriter.write(lastModifiedDate + PropertyPage.FILE_SEPARATOR + childCount + PropertyPage.FILE_SEPARATOR + directoryPath);
+            directoryFileWriter.newLine();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+    }
+
     /*
      * Removes symbols from directory table except symbols refering to current path
      * @param   currentPath->path in which current cache is working on
@@ -181,6 +265,9 @@ public class SymbolTable {
         try {
             rawFileWriter.write(cacheFormattedFilePath);
             rawFileWriter.newLine();
+            if (bitmapBuilder != null) {
+                bitmapBuilder.add(cacheFormattedFilePath);
+            }
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
         }
@@ -311,42 +398,84 @@ public class SymbolTable {
     }
 
     /*
-     * Compresses raw and symbol file into single file
+     * Compresses raw, symbol and directory file into single block compressed file
      */
     protected void saveToCompressedFile() {
-        byte[] buffer = new byte[1024];
-        int len;
-        String destFileName = PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.COMPRESSED_FILE_EXTENSION;
+        File destFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.COMPRESSED_FILE_EXTENSION);
         try {
-            FileOutputStream fileOutputStream = new FileOutputStream(destFileName);
-            ZipOutputStream zipOutputStream = new ZipOutputStream(fileOutputStream);
-            File rawFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION);
-            File symbolFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION);
+            File rawFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION);
+            File symbolFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION);
+            File directoryFile = new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.DIRECTORY_FILE_EXTENSION);
             if (!(symbolFile.exists() && rawFile.exists())) {
+                if (blockCompressor != null) {
+                    blockCompressor.abort();
+                    blockCompressor = null;
+                }
                 return;
             }
-            ZipEntry rawFileZipEntry = new ZipEntry(rawFile.getName());
-            zipOutputStream.setLevel(9);
-            zipOutputStream.putNextEntry(rawFileZipEntry);
-            FileInputStream rawFileFileInputStream = new FileInputStream(rawFile);
-            while ((len = rawFileFileInputStream.read(buffer)) > 0) {
-                zipOutputStream.write(buffer, 0, len);
-            }
-            rawFileFileInputStream.close();
-            ZipEntry symbolFileZipEntry = new ZipEntry(symbolFile.getName());
-            zipOutputStream.putNextEntry(symbolFileZipEntry);
-            FileInputStream symbolFileFileInputStream = new FileInputStream(symbolFile);
-            while ((len = symbolFileFileInputStream.read(buffer)) > 0) {
-                zipOutputStream.write(buffer, 0, len);
+            if (blockCompressor != null) {
+                try {
+                    blockCompressor.finish();   //only the last blocks are left to compress
+                    return;
+                } catch (IOException iOException) {
+                    LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+                } finally {
+                    blockCompressor = null;
+                }
             }
-            symbolFileFileInputStream.close();
-            zipOutputStream.closeEntry();
-            zipOutputStream.close();
+            File[] sourceFiles = (directoryFile.exists() ? new File[]{rawFile, symbolFile, directoryFile} : new File[]{rawFile, symbolFile});
+            CompressedCache.write(destFile, cacheIndex, sourceFiles, PropertyPage.getCompressionLevel());
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
         }
     }
 
+    /*
+     * Flushes the writters so that everything written so far is on the disk
+     * @return  lengths of the raw, symbol and directory files
+     */
+    protected long[] flushAll() {
+        try {
+            rawFileWriter.flush();
+            symbolsFileWriter.flush();
+            directoryFileWriter.flush();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+        return new long[]{new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION).length(),
+                    new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION).length(),
+                    new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.DIRECTORY_FILE_EXTENSION).length()};
+    }
+
+    /*
+     * Finds symbol of the directory being walked
+     * @param   directoryPath-> absolute path
+     * @return  directory symbol or null if it is not in the directory table
+     */
+    protected String getSymbol(String directoryPath) {
+        return directoryTable.get(directoryPath);
+    }
+
+    /*
+     * @return  seed value of the next directory symbol
+     */
+    protected long getLocalSeedValue() {
+        return localseedValue;
+    }
+
+    /*
+     * Writes the bitmaps collected while the records were written, called once the raw file is stamped
+     * @return  true if the bitmap index file is written
+     */
+    protected boolean writeBitmapIndex() {
+        if (bitmapBuilder == null) {
+            return false;
+        }
+        boolean isWritten = bitmapBuilder.write(String.valueOf(cacheRoot.hashCode()));
+        bitmapBuilder = null;
+        return isWritten;
+    }
+
     /*
      * Closes all the opened files
      */
@@ -354,9 +483,10 @@ public class SymbolTable {
         try {
             rawFileWriter.close();
             symbolsFileWriter.close();
+            directoryFileWriter.close();
             rawFileWriter = null;
             symbolsFileWriter = null;
-
+            directoryFileWriter = null;
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
         }
@@ -0,0 +1,514 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * TrigramIndex.java
+ * Inverted index from each 3 byte sequence of the lower case UTF-8 names to the ids of the records of the columnar cache holding it
+ * Layout: header, posting lists(delta varint record ids), dictionary sorted by trigram(trigram, postingCount, offset, length)
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class TrigramIndex {
+
+    /*
+     * Identifies the trigram index file, "QFT1"
+     */
+    private static final int MAGIC = 0x51465431;
+    /*
+     * Format version, files of any other version are built again
+     */
+    private static final int VERSION = 1;
+    /*
+     * magic, version, rawFileLength, rawFileLastModified, recordCount, trigramCount, dictionaryOffset
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 4 + 4 + 8;
+    /*
+     * trigram, postingCount, offset, length
+     */
+    private static final int DICTIONARY_ENTRY_LENGTH = 4 + 4 + 8 + 4;
+    /*
+     * Bytes of posting lists held in memory by one pass of the build, larger caches are built in several passes
+     */
+    private static final long BUILD_PASS_MEMORY = 32L * 1024 * 1024;
+    /*
+     * UTF-8 charset of the names
+     */
+    private static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+    /*
+     * Number of records of the columnar cache the index is built from
+     */
+    private final int recordCount;
+    /*
+     * Number of trigrams in the dictionary
+     */
+    private final int trigramCount;
+    /*
+     * Mapped posting lists and dictionary, read with absolute gets only
+     */
+    private final MappedByteBuffer postingLists;
+    private final MappedByteBuffer dictionary;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(TrigramIndex.class.getName());
+
+    /*
+     * Constructs the TrigramIndex by mapping the file
+     * @param   fileChannel->opened trigram index file     header->header of the file
+     */
+    private TrigramIndex(FileChannel fileChannel, ByteBuffer header) throws IOException {
+        recordCount = header.getInt(24);
+        trigramCount = header.getInt(28);
+        long dictionaryOffset = header.getLong(32);
+        if (dictionaryOffset > Integer.MAX_VALUE || (long) trigramCount * DICTIONARY_ENTRY_LENGTH > Integer.MAX_VALUE) {
+            throw new IOException("Trigram index too large to map");
+        }
+        postingLists = fileChannel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, dictionaryOffset - HEADER_LENGTH);
+        dictionary = fileChannel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, (long) trigramCount * DICTIONARY_ENTRY_LENGTH);
+    }
+
+    /*
+     * Reads the header of the trigram index file and validates it against the raw file
+     * @param   encoded name of the cache
+     * @return  header or null if the file is missing, of an older format or stale
+     */
+    private static ByteBuffer readHeader(String cacheName) {
+        File trigramFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.TRIGRAM_FILE_EXTENSION);
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        if (!trigramFile.exists() || trigramFile.length() < HEADER_LENGTH) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(trigramFile, "r");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            randomAccessFile.readFully(header.array());
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(8) != rawFile.length() || header.getLong(16) != rawFile.lastModified()) {
+                return null;
+            }
+            return header;
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Checks whether the trigram index file is built from the current raw file
+     * @param   encoded name of the cache
+     * @return  true if the trigram index file can be opened
+     */
+    public static boolean isAvailable(String cacheName) {
+        return (readHeader(cacheName) != null);
+    }
+
+    /*
+     * Opens the trigram index file if it is built from the current raw file
+     * @param   encoded name of the cache
+     * @return  TrigramIndex or null if the names must be scanned instead
+     */
+    public static TrigramIndex open(String cacheName) {
+        ByteBuffer header = readHeader(cacheName);
+        if (header == null) {
+            return null;    //not built, older format or stale
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.TRIGRAM_FILE_EXTENSION, "r");
+            return new TrigramIndex(randomAccessFile.getChannel(), header);     //mappings stay valid after the channel is closed
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Finds the records whose names may hold all the literals, each candidate must still be matched
+     * @param   literals lower case literals required by the query
+     * @return  ascending record ids, or null if the literals are too short to restrict the records
+     */
+    public int[] findCandidates(String[] literals) {
+        int[] trigrams = getTrigrams(literals);
+        if (trigrams.length == 0) {
+            return null;
+        }
+        int[] entries = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            entries[i] = findEntry(trigrams[i]);
+            if (entries[i] < 0) {
+                return new int[0];  //no name holds this trigram
+            }
+        }
+        long[] entriesByCount = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            entriesByCount[i] = ((long) dictionary.getInt(entries[i] * DICTIONARY_ENTRY_LENGTH + 4) << 32) | entries[i];
+        }
+        Arrays.sort(entriesByCount);     //shortest posting list first
+        int[] candidates = readPostingList((int) entriesByCount[0]);
+        for (int i = 1; i < entriesByCount.length && candidates.length > 0; i++) {
+            candidates = intersect(candidates, (int) entriesByCount[i]);
+        }
+        return candidates;
+    }
+
+    /*
+     * @return  number of records of the columnar cache the index is built from
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /*
+     * Finds the dictionary entry of a trigram with a binary search
+     * @param   trigram three bytes in the low 24 bits
+     * @return  index of the entry or -1
+     */
+    private int findEntry(int trigram) {
+        int low = 0;
+        int high = trigramCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleTrigram = dictionary.getInt(middle * DICTIONARY_ENTRY_LENGTH);
+            if (middleTrigram < trigram) {
+                low = middle + 1;
+            } else if (middleTrigram > trigram) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * @param   entry index of the dictionary entry
+     * @return  positioned view on the posting list of the entry
+     */
+    private ByteBuffer getPostingList(int entry) {
+        ByteBuffer postingList = postingLists.duplicate();
+        int offset = (int) dictionary.getLong(entry * DICTIONARY_ENTRY_LENGTH + 8);
+        postingList.limit(offset + dictionary.getInt(entry * DICTIONARY_ENTRY_LENGTH + 16));
+        postingList.position(offset);
+        return postingList;
+    }
+
+    /*
+     * Decodes a posting list
+     * @param   entry index of the dictionary entry
+     * @return  ascending record ids
+     */
+    private int[] readPostingList(int entry) {
+        ByteBuffer postingList = getPostingList(entry);
+        int[] recordIds = new int[dictionary.getInt(entry * DICTIONARY_ENTRY_LENGTH + 4)];
+        int recordId = 0;
+        for (int i = 0; i < recordIds.length; i++) {
+            recordId += (int) ColumnarCache.readVarint(postingList);
+            recordIds[i] = recordId;
+        }
+        return recordIds;
+    }
+
+    /*
+     * Keeps the candidates which are in the posting list, the list is decoded while it is merged
+     * @param   candidates->ascending record ids    entry->index of the dictionary entry
+     * @return  ascending record ids in both
+     */
+    private int[] intersect(int[] candidates, int entry) {
+        ByteBuffer postingList = getPostingList(entry);
+        int postingCount = dictionary.getInt(entry * DICTIONARY_ENTRY_LENGTH + 4);
+        int[] intersection = new int[candidates.length];
+        int intersectionCount = 0;
+        int candidate = 0;
+        int recordId = 0;
+        for (int i = 0; i < postingCount && candidate < candidates.length; i++) {
+            recordId += (int) ColumnarCache.readVarint(postingList);
+            while (candidate < candidates.length && candidates[candidate] < recordId) {
+                candidate++;
+            }
+            if (candidate < candidates.length && candidates[candidate] == recordId) {
+                intersection[intersectionCount++] = recordId;
+                candidate++;
+            }
+        }
+        return Arrays.copyOf(intersection, intersectionCount);
+    }
+
+    /*
+     * Finds the distinct trigrams of the literals
+     * @param   literals lower case literals
+     * @return  ascending trigrams
+     */
+    private static int[] getTrigrams(String[] literals) {
+        int[] trigrams = new int[0];
+        for (String literal : literals) {
+            byte[] literalBytes = literal.getBytes(NAME_CHARSET);
+            int[] literalTrigrams = getTrigrams(literalBytes, literalBytes.length);
+            int trigramCount = trigrams.length;
+            trigrams = Arrays.copyOf(trigrams, trigramCount + literalTrigrams.length);
+            System.arraycopy(literalTrigrams, 0, trigrams, trigramCount, literalTrigrams.length);
+        }
+        return distinct(trigrams, trigrams.length);
+    }
+
+    /*
+     * @param   nameBytes->lower case UTF-8 name    length->bytes of the name
+     * @return  ascending distinct trigrams of the name
+     */
+    private static int[] getTrigrams(byte[] nameBytes, int length) {
+        if (length < 3) {
+            return new int[0];
+        }
+        int[] trigrams = new int[length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((nameBytes[i] & 0xFF) << 16) | ((nameBytes[i + 1] & 0xFF) << 8) | (nameBytes[i + 2] & 0xFF);
+        }
+        return distinct(trigrams, trigrams.length);
+    }
+
+    /*
+     * @param   values->values to sort in place     length->number of values
+     * @return  ascending distinct values
+     */
+    private static int[] distinct(int[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int distinctCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (distinctCount == 0 || values[distinctCount - 1] != values[i]) {
+                values[distinctCount++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinctCount);
+    }
+
+    /*
+     * @param   recordName name of a record
+     * @return  name lower cased character by character as the queries are, in UTF-8
+     */
+    private static byte[] getLowerCaseBytes(CharSequence recordName) {
+        char[] lowerCaseName = new char[recordName.length()];
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            lowerCaseName[i] = Character.toLowerCase(recordName.charAt(i));
+        }
+        return new String(lowerCaseName).getBytes(NAME_CHARSET);
+    }
+
+    /*
+     * Builds the trigram index file from the columnar cache file of the cache
+     * Posting lists of the trigrams are collected in passes over the columnar cache, each pass keeps a share of the trigrams
+     * @param   encoded name of the cache
+     * @return  true if the trigram index file is built
+     */
+    public static boolean build(String cacheName) {
+        File rawFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.RAW_FILE_EXTENSION);
+        File trigramFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.TRIGRAM_FILE_EXTENSION);
+        File temporaryFile = new File(trigramFile.getPath() + PropertyPage.PREVIOUS_FILE_EXTENSION);
+        long rawFileLength = rawFile.length();
+        long rawFileLastModified = rawFile.lastModified();
+        ColumnarCache columnarCache = ColumnarCache.open(cacheName);
+        if (columnarCache == null) {
+            trigramFile.delete();
+            return false;   //names are scanned without the index
+        }
+        long trigramOccurrences = 0;
+        int recordCount = columnarCache.getRecordCount();
+        try {
+            while (columnarCache.next()) {
+                trigramOccurrences += Math.max(0, columnarCache.getName().length() - 2);
+            }
+        } finally {
+            columnarCache.close();
+        }
+        int passCount = (int) Math.max(1, (trigramOccurrences * 2 + BUILD_PASS_MEMORY - 1) / BUILD_PASS_MEMORY);
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 64 * 1024));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            outputStream.write(header.array());    //written when the dictionary offset is known
+            long offset = 0;
+            int[] dictionaryTrigrams = new int[1024];
+            int[] dictionaryCounts = new int[1024];
+            long[] dictionaryOffsets = new long[1024];
+            int[] dictionaryLengths = new int[1024];
+            int trigramCount = 0;
+            for (int pass = 0; pass < passCount; pass++) {
+                HashMap<Integer, PostingListBuilder> postingListBuilders = new HashMap<Integer, PostingListBuilder>();
+                columnarCache = ColumnarCache.open(cacheName);
+                if (columnarCache == null) {
+                    throw new IOException("Columnar cache changed while building " + trigramFile.getName());
+                }
+                try {
+                    for (int record = 0; columnarCache.next(); record++) {
+                        byte[] nameBytes = getLowerCaseBytes(columnarCache.getName());
+                        for (int trigram : getTrigrams(nameBytes, nameBytes.length)) {
+                            if ((trigram * 0x9E3779B1 >>> 8) % passCount != pass) {
+                                continue;   //collected by another pass
+                            }
+                            PostingListBuilder postingListBuilder = postingListBuilders.get(trigram);
+                            if (postingListBuilder == null) {
+                                postingListBuilder = new PostingListBuilder();
+                                postingListBuilders.put(trigram, postingListBuilder);
+                            }
+                            postingListBuilder.add(record);
+                        }
+                    }
+                } finally {
+                    columnarCache.close();
+                }
+                int[] passTrigrams = new int[postingListBuilders.size()];
+                int passTrigramCount = 0;
+                for (Integer trigram : postingListBuilders.keySet()) {
+                    passTrigrams[passTrigramCount++] = trigram;
+                }
+                Arrays.sort(passTrigrams);
+                if (trigramCount + passTrigrams.length > dictionaryTrigrams.length) {
+                    int capacity = Math.max(2 * dictionaryTrigrams.length, trigramCount + passTrigrams.length);
+                    dictionaryTrigrams = Arrays.copyOf(dictionaryTrigrams, capacity);
+                    dictionaryCounts = Arrays.copyOf(dictionaryCounts, capacity);
+                    dictionaryOffsets = Arrays.copyOf(dictionaryOffsets, capacity);
+                    dictionaryLengths = Arrays.copyOf(dictionaryLengths, capacity);
+                }
+                for (int trigram : passTrigrams) {
+                    PostingListBuilder postingListBuilder = postingListBuilders.get(trigram);
+                    outputStream.write(postingListBuilder.bytes, 0, postingListBuilder.length);
+                    dictionaryTrigrams[trigramCount] = trigram;
+                    dictionaryCounts[trigramCount] = postingListBuilder.count;
+                    dictionaryOffsets[trigramCount] = offset;
+                    dictionaryLengths[trigramCount] = postingListBuilder.length;
+                    offset += postingListBuilder.length;
+                    trigramCount++;
+                }
+            }
+            long[] entryOrder = new long[trigramCount];
+            for (int entry = 0; entry < trigramCount; entry++) {
+                entryOrder[entry] = ((long) dictionaryTrigrams[entry] << 32) | entry;
+            }
+            Arrays.sort(entryOrder);    //entries of all passes by trigram
+            for (long entryKey : entryOrder) {
+                int entry = (int) entryKey;
+                outputStream.writeInt(dictionaryTrigrams[entry]);
+                outputStream.writeInt(dictionaryCounts[entry]);
+                outputStream.writeLong(dictionaryOffsets[entry]);
+                outputStream.writeInt(dictionaryLengths[entry]);
+            }
+            outputStream.close();
+            outputStream = null;
+            header.putInt(MAGIC).putInt(VERSION).putLong(rawFileLength).putLong(rawFileLastModified);
+            header.putInt(recordCount).putInt(trigramCount).putLong(HEADER_LENGTH + offset);
+            RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
+            try {
+                randomAccessFile.write(header.array());
+            } finally {
+                randomAccessFile.close();
+            }
+            //a trigram file still mapped by a search can not be replaced on some platforms, the stale file is ignored by open then
+            Files.move(temporaryFile.toPath(), trigramFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+            temporaryFile.delete();
+        }
+        return false;
+    }
+
+    /*
+     * Posting list of one trigram being built, record ids are appended in ascending order as delta varints
+     */
+    private static class PostingListBuilder {
+
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int count;
+        private int lastRecordId;
+
+        /*
+         * @param   recordId id larger than the ones added before
+         */
+        private void add(int recordId) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+            int delta = recordId - lastRecordId;
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            lastRecordId = recordId;
+            count++;
+        }
+    }
+}
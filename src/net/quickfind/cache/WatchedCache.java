@@ -0,0 +1,418 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * WatchedCache.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+class WatchedCache {
+
+    /*
+     * Encoded name of the cache
+     */
+    private final String cacheName;
+    /*
+     * Cache index which prefixes every directory symbol of the cache
+     */
+    private String cacheIndex;
+    /*
+     * List of excluded paths from caching
+     */
+    private ArrayList<String> excludedRootsList;
+    /*
+     * Map to hold directory path and symbol, including directories created after the scan
+     */
+    private HashMap<String, String> directorySymbols;
+    /*
+     * Map to hold directory path and its registered watch key
+     */
+    private HashMap<String, WatchKey> watchKeys;
+    /*
+     * Seed value of the next directory created after the scan
+     */
+    private long nextSeedValue;
+    /*
+     * Delta file writter, appends the changes found after the scan
+     */
+    private BufferedWriter deltaFileWriter = null;
+    /*
+     * Time of the last scan done by the watcher
+     */
+    private long lastRescanTime;
+    /*
+     * Time of the next incremental rescan, Long.MAX_VALUE while the cache is completely watched
+     */
+    private long nextRescanTime = Long.MAX_VALUE;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(WatchedCache.class.getName());
+
+    /*
+     * Constructs the WatchedCache with encoded name of the cache
+     * @param   encoded name of the cache
+     */
+    WatchedCache(String aCacheName) {
+        cacheName = aCacheName;
+        lastRescanTime = System.currentTimeMillis();
+    }
+
+    /*
+     * Reads directory symbols of the scan and of the delta file
+     * @param   cache configuration
+     * @return  false if the cache was never scanned
+     */
+    boolean load(Cache cache) {
+        cacheIndex = cache.getLocalCacheIndex();
+        File symbolFile = new File(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.SYMBOLS_FILE_EXTENSION);
+        if (cacheIndex == null || cacheIndex.startsWith("-") || !symbolFile.exists()) {
+            return false;
+        }
+        excludedRootsList = new ArrayList<String>();
+        if (cache.getExcludedPath() != null) {
+            StringTokenizer excludesStringTokenizer = new StringTokenizer(cache.getExcludedPath(), "|");
+            while (excludesStringTokenizer.hasMoreTokens()) {
+                excludedRootsList.add(excludesStringTokenizer.nextToken());
+            }
+        }
+        directorySymbols = new HashMap<String, String>();
+        watchKeys = new HashMap<String, WatchKey>();
+        nextSeedValue = 0L;
+        BufferedReader bufferedReader = null;
+        try {
+            bufferedReader = new BufferedReader(new FileReader(symbolFile));
+            String symbolValue;
+            while ((symbolValue = bufferedReader.readLine()) != null) {
+                int separatorIndex = symbolValue.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex > 0) {
+                    addDirectorySymbol(symbolValue.substring(separatorIndex + 1), symbolValue.substring(0, separatorIndex));
+                }
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            return false;
+        } finally {
+            try {
+                if (bufferedReader != null) {
+                    bufferedReader.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        DeltaLog deltaLog = new DeltaLog(cacheName);
+        for (Map.Entry<String, String> directorySymbol : deltaLog.getDirectorySymbols().entrySet()) {
+            addDirectorySymbol(directorySymbol.getValue(), directorySymbol.getKey());
+        }
+        Iterator<Map.Entry<String, String>> directorySymbolsIterator = directorySymbols.entrySet().iterator();
+        while (directorySymbolsIterator.hasNext()) {
+            if (deltaLog.isDeletedDirectory(directorySymbolsIterator.next().getValue())) {
+                directorySymbolsIterator.remove();
+            }
+        }
+        try {
+            deltaFileWriter = new BufferedWriter(new FileWriter(PropertyPage.getCacheDirectory() + cacheName + PropertyPage.DELTA_FILE_EXTENSION, true));
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Adds directory symbol and keeps the seed value ahead of it
+     * @param   directoryPath->absolute path    directorySymbol->symbol of the directory
+     */
+    private void addDirectorySymbol(String directoryPath, String directorySymbol) {
+        directorySymbols.put(directoryPath, directorySymbol);
+        if (directorySymbol.startsWith(cacheIndex)) {
+            try {
+                nextSeedValue = Math.max(nextSeedValue, Long.parseLong(directorySymbol.substring(cacheIndex.length())) + 1);
+            } catch (NumberFormatException numberFormatException) {
+                LOGGER.log(Level.SEVERE, "Invalid directory symbol", numberFormatException);
+            }
+        }
+    }
+
+    /*
+     * Registers every directory of the cache with the watch service
+     * @param   watchService->watch service    watchBudget->number of watches still allowed
+     * @return  number of watches registered, zero if the cache does not fit in the budget
+     */
+    int register(WatchService watchService, int watchBudget) {
+        if (directorySymbols.size() > watchBudget) {
+            schedulePeriodicRescan();   //too many directories to be watched
+            return 0;
+        }
+        for (String directoryPath : directorySymbols.keySet()) {
+            registerDirectory(watchService, directoryPath);
+        }
+        return watchKeys.size();
+    }
+
+    /*
+     * Registers a directory with the watch service
+     * @param   watchService->watch service    directoryPath->absolute path
+     * @return  the watch key or null if the directory could not be watched
+     */
+    private WatchKey registerDirectory(WatchService watchService, String directoryPath) {
+        try {
+            WatchKey watchKey = Paths.get(directoryPath).register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(directoryPath, watchKey);
+            return watchKey;
+        } catch (IOException iOException) {
+            return null;    //not accessible, it is refreshed by rescan only
+        }
+    }
+
+    /*
+     * Cancels all the watch keys and closes the delta file
+     */
+    void close() {
+        if (watchKeys != null) {
+            for (WatchKey watchKey : watchKeys.values()) {
+                watchKey.cancel();
+            }
+            watchKeys.clear();
+        }
+        try {
+            if (deltaFileWriter != null) {
+                deltaFileWriter.close();
+                deltaFileWriter = null;
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+    }
+
+    /*
+     * Applies the current state of a changed file or directory to the delta file
+     * Several events of the same path are applied once, so the file is read only when the events are over
+     * @param   watchService->watch service    changedPath->absolute path of the changed file
+     *          watchBudget->number of watches still allowed
+     * @return  number of watches registered for new directories
+     */
+    int applyChange(WatchService watchService, Path changedPath, int watchBudget) {
+        Path parentPath = changedPath.getParent();
+        if (parentPath == null || changedPath.getFileName() == null) {
+            return 0;
+        }
+        String parentSymbol = directorySymbols.get(parentPath.toString());
+        if (parentSymbol == null) {
+            return 0;   //parent is deleted or not part of the cache
+        }
+        String recordKey = parentSymbol + PropertyPage.FILE_SEPARATOR + changedPath.getFileName().toString();
+        BasicFileAttributes fileAttributes;
+        try {
+            fileAttributes = Utility.readFileAttributes(changedPath);
+        } catch (IOException iOException) {
+            writeDeltaData(DeltaLog.DELETED_ENTRY + recordKey);
+            removeDirectory(changedPath.toString());
+            return 0;
+        }
+        String changedFilePath = changedPath.toString();
+        if (!fileAttributes.isDirectory()) {
+            writeDeltaData(DeltaLog.ADDED_ENTRY + recordKey + PropertyPage.FILE_SEPARATOR + fileAttributes.size()
+                    + PropertyPage.FILE_SEPARATOR + fileAttributes.lastModifiedTime().toMillis() + PropertyPage.FILE_SEPARATOR + Utility.getFilePropertiesMask(changedPath, fileAttributes));
+            return 0;
+        }
+        if (isExcluded(changedFilePath)) {
+            return 0;
+        }
+        writeDeltaData(DeltaLog.ADDED_ENTRY + recordKey + PropertyPage.FILE_SEPARATOR + "0"
+                + PropertyPage.FILE_SEPARATOR + fileAttributes.lastModifiedTime().toMillis() + PropertyPage.FILE_SEPARATOR + Utility.getFilePropertiesMask(changedPath, fileAttributes));
+        if (directorySymbols.containsKey(changedFilePath)) {
+            return 0;   //existing directory modified, its children report their own changes
+        }
+        String directorySymbol = cacheIndex + String.valueOf(nextSeedValue++);
+        directorySymbols.put(changedFilePath, directorySymbol);
+        writeDeltaData(DeltaLog.SYMBOL_ENTRY + directorySymbol + PropertyPage.FILE_SEPARATOR + changedFilePath);
+        int registeredCount = 0;
+        if (watchBudget > 0 && registerDirectory(watchService, changedFilePath) != null) {
+            registeredCount++;
+        } else {
+            schedulePeriodicRescan();   //new directory can not be watched
+        }
+        /*
+         * Directory may be moved in with its contents, those do not raise events of their own
+         */
+        DirectoryStream<Path> directoryStream = null;
+        try {
+            directoryStream = Files.newDirectoryStream(changedPath);
+            for (Path childPath : directoryStream) {
+                registeredCount += applyChange(watchService, childPath, watchBudget - registeredCount);
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            try {
+                if (directoryStream != null) {
+                    directoryStream.close();
+                }
+            } catch (IOException iOException) {
+                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+            }
+        }
+        return registeredCount;
+    }
+
+    /*
+     * Removes a deleted directory and all its subdirectories
+     * @param   absolute path of the deleted directory
+     */
+    private void removeDirectory(String directoryPath) {
+        if (!directorySymbols.containsKey(directoryPath)) {
+            return; //deleted file
+        }
+        String subdirectoryPrefix = directoryPath.endsWith(PropertyPage.FILE_SEPARATOR) ? directoryPath : directoryPath + PropertyPage.FILE_SEPARATOR;
+        Iterator<Map.Entry<String, String>> directorySymbolsIterator = directorySymbols.entrySet().iterator();
+        while (directorySymbolsIterator.hasNext()) {
+            Map.Entry<String, String> directorySymbol = directorySymbolsIterator.next();
+            if (directorySymbol.getKey().equals(directoryPath) || directorySymbol.getKey().startsWith(subdirectoryPrefix)) {
+                writeDeltaData(DeltaLog.DELETED_DIRECTORY_ENTRY + directorySymbol.getValue());
+                WatchKey watchKey = watchKeys.remove(directorySymbol.getKey());
+                if (watchKey != null) {
+                    watchKey.cancel();
+                }
+                directorySymbolsIterator.remove();
+            }
+        }
+    }
+
+    /*
+     * Checks whether the given directory path excluded from caching
+     * @param   Directory path
+     * @return  true if it starts with one of the excluded roots
+     */
+    private boolean isExcluded(String directoryPath) {
+        for (int i = 0; i < excludedRootsList.size(); i++) {
+            if (directoryPath.startsWith(excludedRootsList.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Writes one change to the delta file
+     * @param   deltaData-> prefixed change
+     */
+    private void writeDeltaData(String deltaData) {
+        try {
+            deltaFileWriter.write(deltaData);
+            deltaFileWriter.newLine();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+    }
+
+    /*
+     * Makes the applied changes visible to the searches
+     */
+    void flush() {
+        try {
+            deltaFileWriter.flush();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+    }
+
+    /*
+     * Schedules an incremental rescan, not earlier than the rescan interval after the last one
+     */
+    void schedulePeriodicRescan() {
+        nextRescanTime = Math.min(nextRescanTime, lastRescanTime + PropertyPage.getWatchRescanInterval() * 60000L);
+    }
+
+    /*
+     * Marks the cache as rescanned
+     */
+    void rescanned() {
+        lastRescanTime = System.currentTimeMillis();
+        nextRescanTime = Long.MAX_VALUE;
+    }
+
+    /*
+     * @return  the number of watch keys registered for the cache
+     */
+    int getWatchCount() {
+        return (watchKeys == null ? 0 : watchKeys.size());
+    }
+
+    /*
+     * @return  the watchKeys of the registered directories
+     */
+    HashMap<String, WatchKey> getWatchKeys() {
+        return watchKeys;
+    }
+
+    /*
+     * @return  the cacheName
+     */
+    String getCacheName() {
+        return cacheName;
+    }
+
+    /*
+     * @return  the nextRescanTime
+     */
+    long getNextRescanTime() {
+        return nextRescanTime;
+    }
+}
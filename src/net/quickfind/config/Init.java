@@ -57,6 +57,15 @@ public class Init {
         cleanCacheFiles();
         PropertyPage.updateSearchResultLimit();
         PropertyPage.updateLoadDefaults();
+        PropertyPage.updateScanParallelism();
+        PropertyPage.updateConcurrentScans();
+        PropertyPage.updateScansPerDevice();
+        PropertyPage.updateIncrementalScan();
+        PropertyPage.updateWatchCaches();
+        PropertyPage.updateMaxWatchedDirectories();
+        PropertyPage.updateWatchRescanInterval();
+        PropertyPage.updateCompressionLevel();
+        PropertyPage.updateTrigramIndex();
     }
 
     /*
@@ -95,7 +104,7 @@ public class Init {
     }
 
     /*
-     * Cleans all cache files except compressed and configuration
+     * Cleans search results and temporary cache files
      */
     private void cleanCacheFiles() {
         Utility.cacheCleaner(null, 2);
@@ -53,6 +53,15 @@ public class Preference {
     static final String SEARCH_RESULT_LIMIT = "SrcLim";
     static final String CURRENT_SELECTED_THEME = "CurLim";
     static final String LOAD_DEFAULTS = "IsDft";
+    static final String SCAN_PARALLELISM = "ScnPar";
+    static final String CONCURRENT_SCANS = "ScnCon";
+    static final String SCANS_PER_DEVICE = "ScnDev";
+    static final String INCREMENTAL_SCAN = "ScnInc";
+    static final String WATCH_CACHES = "WchCch";
+    static final String MAX_WATCHED_DIRECTORIES = "WchMax";
+    static final String WATCH_RESCAN_INTERVAL = "WchInt";
+    static final String COMPRESSION_LEVEL = "CmpLvl";
+    static final String TRIGRAM_INDEX = "TriIdx";
 
     /*
      * Exception logger
@@ -88,6 +97,132 @@ public class Preference {
         preferences.putBoolean(LOAD_DEFAULTS, newValue);
     }
 
+    /*
+     * @return  the SCAN_PARALLELISM
+     */
+    public static int getScanParallelism() {
+        return preferences.getInt(SCAN_PARALLELISM, PropertyPage.getScanParallelism());
+    }
+
+    /*
+     * @param newValue the SCAN_PARALLELISM to set
+     */
+    public static void setScanParallelism(int newValue) {
+        preferences.putInt(SCAN_PARALLELISM, newValue);
+    }
+
+    /*
+     * @return  the CONCURRENT_SCANS
+     */
+    public static int getConcurrentScans() {
+        return preferences.getInt(CONCURRENT_SCANS, PropertyPage.getConcurrentScans());
+    }
+
+    /*
+     * @param newValue the CONCURRENT_SCANS to set
+     */
+    public static void setConcurrentScans(int newValue) {
+        preferences.putInt(CONCURRENT_SCANS, newValue);
+    }
+
+    /*
+     * @return  the SCANS_PER_DEVICE
+     */
+    public static int getScansPerDevice() {
+        return preferences.getInt(SCANS_PER_DEVICE, PropertyPage.getScansPerDevice());
+    }
+
+    /*
+     * @param newValue the SCANS_PER_DEVICE to set
+     */
+    public static void setScansPerDevice(int newValue) {
+        preferences.putInt(SCANS_PER_DEVICE, newValue);
+    }
+
+    /*
+     * @return  the INCREMENTAL_SCAN
+     */
+    public static boolean isIncrementalScan() {
+        return preferences.getBoolean(INCREMENTAL_SCAN, PropertyPage.isIncrementalScan());
+    }
+
+    /*
+     * @param  newValue the INCREMENTAL_SCAN to set
+     */
+    public static void setIncrementalScan(boolean newValue) {
+        preferences.putBoolean(INCREMENTAL_SCAN, newValue);
+    }
+
+    /*
+     * @return  the WATCH_CACHES
+     */
+    public static boolean isWatchCaches() {
+        return preferences.getBoolean(WATCH_CACHES, PropertyPage.isWatchCaches());
+    }
+
+    /*
+     * @param  newValue the WATCH_CACHES to set
+     */
+    public static void setWatchCaches(boolean newValue) {
+        preferences.putBoolean(WATCH_CACHES, newValue);
+    }
+
+    /*
+     * @return  the MAX_WATCHED_DIRECTORIES
+     */
+    public static int getMaxWatchedDirectories() {
+        return preferences.getInt(MAX_WATCHED_DIRECTORIES, PropertyPage.getMaxWatchedDirectories());
+    }
+
+    /*
+     * @param newValue the MAX_WATCHED_DIRECTORIES to set
+     */
+    public static void setMaxWatchedDirectories(int newValue) {
+        preferences.putInt(MAX_WATCHED_DIRECTORIES, newValue);
+    }
+
+    /*
+     * @return  the WATCH_RESCAN_INTERVAL in minutes
+     */
+    public static int getWatchRescanInterval() {
+        return preferences.getInt(WATCH_RESCAN_INTERVAL, PropertyPage.getWatchRescanInterval());
+    }
+
+    /*
+     * @param newValue the WATCH_RESCAN_INTERVAL in minutes to set
+     */
+    public static void setWatchRescanInterval(int newValue) {
+        preferences.putInt(WATCH_RESCAN_INTERVAL, newValue);
+    }
+
+    /*
+     * @return  the COMPRESSION_LEVEL
+     */
+    public static int getCompressionLevel() {
+        return preferences.getInt(COMPRESSION_LEVEL, PropertyPage.getCompressionLevel());
+    }
+
+    /*
+     * @param newValue the COMPRESSION_LEVEL to set
+     */
+    public static void setCompressionLevel(int newValue) {
+        preferences.putInt(COMPRESSION_LEVEL, newValue);
+    }
+
+    /*
+     * @return  the TRIGRAM_INDEX
+     */
+    public static boolean isTrigramIndex() {
+        return preferences.getBoolean(TRIGRAM_INDEX, PropertyPage.isTrigramIndex());
+    }
+
+    /*
+     * @param  newValue the TRIGRAM_INDEX to set
+     */
+    public static void setTrigramIndex(boolean newValue) {
+        preferences.putBoolean(TRIGRAM_INDEX, newValue);
+    }
+
     /*
      * @return  the CURRENT_SELECTED_THEME
      */
@@ -78,6 +78,13 @@ public class PropertyPage {
     public static final String RAW_FILE_EXTENSION = ".raw";
     public static final String SYMBOLS_FILE_EXTENSION = ".syb";
     public static final String INDEX_FILE_EXTENSION = ".ind";
+    public static final String DIRECTORY_FILE_EXTENSION = ".dir";
+    public static final String PREVIOUS_FILE_EXTENSION = ".prv";
+    public static final String DELTA_FILE_EXTENSION = ".dlt";
+    public static final String CHECKPOINT_FILE_EXTENSION = ".chk";
+    public static final String COLUMNAR_FILE_EXTENSION = ".col";
+    public static final String TRIGRAM_FILE_EXTENSION = ".tri";
+    public static final String BITMAP_FILE_EXTENSION = ".bit";
     public static final String CONFIG_FILE_EXTENSION = ".xml";
     public static final String SEARCH_RAW_FILE_INDEX = "searchResult";
     public static final String SEARCH_RAW_FILE = "searchResult";
@@ -111,6 +118,15 @@ public class PropertyPage {
     private static String currentOS = null;
     private static int SEARCH_RESULT_LIMIT = 1000;
     private static boolean LOAD_DEFAULTS = false;
+    private static int SCAN_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static int CONCURRENT_SCANS = 4;
+    private static int SCANS_PER_DEVICE = 1;
+    private static boolean INCREMENTAL_SCAN = false;
+    private static boolean WATCH_CACHES = false;
+    private static int MAX_WATCHED_DIRECTORIES = 8192;
+    private static int WATCH_RESCAN_INTERVAL = 30;
+    private static int COMPRESSION_LEVEL = 9;
+    private static boolean TRIGRAM_INDEX = false;
     /*
      * Exception logger
      */
@@ -185,6 +201,132 @@ public class PropertyPage {
         LOAD_DEFAULTS = Preference.isLoadDefaults();
     }
 
+    /*
+     * @return  the SCAN_PARALLELISM
+     */
+    public static int getScanParallelism() {
+        return SCAN_PARALLELISM;
+    }
+
+    /*
+     * updates the SCAN_PARALLELISM, falls back to one thread for invalid values
+     */
+    public static void updateScanParallelism() {
+        SCAN_PARALLELISM = Math.max(1, Preference.getScanParallelism());
+    }
+
+    /*
+     * @return  the CONCURRENT_SCANS
+     */
+    public static int getConcurrentScans() {
+        return CONCURRENT_SCANS;
+    }
+
+    /*
+     * updates the CONCURRENT_SCANS, falls back to one cache at a time for invalid values
+     */
+    public static void updateConcurrentScans() {
+        CONCURRENT_SCANS = Math.max(1, Preference.getConcurrentScans());
+    }
+
+    /*
+     * @return  the SCANS_PER_DEVICE
+     */
+    public static int getScansPerDevice() {
+        return SCANS_PER_DEVICE;
+    }
+
+    /*
+     * updates the SCANS_PER_DEVICE, falls back to one cache per device for invalid values
+     */
+    public static void updateScansPerDevice() {
+        SCANS_PER_DEVICE = Math.max(1, Preference.getScansPerDevice());
+    }
+
+    /*
+     * @return  the INCREMENTAL_SCAN
+     */
+    public static boolean isIncrementalScan() {
+        return INCREMENTAL_SCAN;
+    }
+
+    /*
+     * updates  the INCREMENTAL_SCAN
+     */
+    public static void updateIncrementalScan() {
+        INCREMENTAL_SCAN = Preference.isIncrementalScan();
+    }
+
+    /*
+     * @return  the WATCH_CACHES
+     */
+    public static boolean isWatchCaches() {
+        return WATCH_CACHES;
+    }
+
+    /*
+     * updates  the WATCH_CACHES
+     */
+    public static void updateWatchCaches() {
+        WATCH_CACHES = Preference.isWatchCaches();
+    }
+
+    /*
+     * @return  the MAX_WATCHED_DIRECTORIES
+     */
+    public static int getMaxWatchedDirectories() {
+        return MAX_WATCHED_DIRECTORIES;
+    }
+
+    /*
+     * updates  the MAX_WATCHED_DIRECTORIES
+     */
+    public static void updateMaxWatchedDirectories() {
+        MAX_WATCHED_DIRECTORIES = Math.max(0, Preference.getMaxWatchedDirectories());
+    }
+
+    /*
+     * @return  the WATCH_RESCAN_INTERVAL in minutes
+     */
+    public static int getWatchRescanInterval() {
+        return WATCH_RESCAN_INTERVAL;
+    }
+
+    /*
+     * updates  the WATCH_RESCAN_INTERVAL
+     */
+    public static void updateWatchRescanInterval() {
+        WATCH_RESCAN_INTERVAL = Math.max(1, Preference.getWatchRescanInterval());
+    }
+
+    /*
+     * @return  the COMPRESSION_LEVEL, deflate level of the compressed cache files
+     */
+    public static int getCompressionLevel() {
+        return COMPRESSION_LEVEL;
+    }
+
+    /*
+     * updates  the COMPRESSION_LEVEL
+     */
+    public static void updateCompressionLevel() {
+        COMPRESSION_LEVEL = Math.min(9, Math.max(1, Preference.getCompressionLevel()));
+    }
+
+    /*
+     * @return  the TRIGRAM_INDEX, true to build the trigram index of the caches
+     */
+    public static boolean isTrigramIndex() {
+        return TRIGRAM_INDEX;
+    }
+
+    /*
+     * updates  the TRIGRAM_INDEX
+     */
+    public static void updateTrigramIndex() {
+        TRIGRAM_INDEX = Preference.isTrigramIndex();
+    }
+
     /**
      * @return the isSystemStartUp
      */
@@ -0,0 +1,127 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+
+package net.quickfind.core;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+/*
+ * UnixFileAttributes.java
+ * Attributes of a file read through the unix attribute view, the owner and group are kept as numeric ids
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+final class UnixFileAttributes implements BasicFileAttributes {
+
+    /*
+     * Attributes by name as read by Files.readAttributes
+     */
+    private final Map<String, Object> attributes;
+
+    /*
+     * Constructs the UnixFileAttributes
+     * @param   anAttributes attributes read with the unix: prefix
+     */
+    UnixFileAttributes(Map<String, Object> anAttributes) {
+        attributes = anAttributes;
+    }
+
+    /*
+     * @return  permission bits and file type of the file
+     */
+    int getMode() {
+        return (Integer) attributes.get("mode");
+    }
+
+    /*
+     * @return  numeric user id of the owner
+     */
+    long getUid() {
+        return ((Integer) attributes.get("uid")) & 0xffffffffL;
+    }
+
+    /*
+     * @return  numeric group id of the file
+     */
+    long getGid() {
+        return ((Integer) attributes.get("gid")) & 0xffffffffL;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return (FileTime) attributes.get("lastModifiedTime");
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return (FileTime) attributes.get("lastAccessTime");
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return (FileTime) attributes.get("creationTime");
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return (Boolean) attributes.get("isRegularFile");
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return (Boolean) attributes.get("isDirectory");
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return (Boolean) attributes.get("isSymbolicLink");
+    }
+
+    @Override
+    public boolean isOther() {
+        return (Boolean) attributes.get("isOther");
+    }
+
+    @Override
+    public long size() {
+        return (Long) attributes.get("size");
+    }
+
+    @Override
+    public Object fileKey() {
+        return attributes.get("fileKey");
+    }
+}
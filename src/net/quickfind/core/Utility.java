@@ -33,9 +33,16 @@
 
 package net.quickfind.core;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +60,22 @@ public class Utility {
      * Exception logger
      */
     private final static Logger LOGGER = Logger.getLogger(Utility.class.getName());
+    /*
+     * Name of the user running the application
+     */
+    private final static String CURRENT_USER = System.getProperty("user.name");
+    /*
+     * Unix attributes read per file, all of them come from one stat and none needs a user or group name lookup
+     */
+    private final static String UNIX_ATTRIBUTES = "unix:size,lastModifiedTime,lastAccessTime,creationTime,isDirectory,isRegularFile,isSymbolicLink,isOther,fileKey,mode,uid,gid";
+    /*
+     * Numeric user id of the application and the ids of its groups, null where they can not be read
+     */
+    private final static long[] CURRENT_USER_IDS = getCurrentUserIds();
+    /*
+     * Attributes type read where the unix attributes are not available
+     */
+    private final static Class<? extends BasicFileAttributes> FILE_ATTRIBUTES_TYPE = getFileAttributesType();
 
     /*
      * Finds file size in human readable format
@@ -63,17 +86,45 @@ public class Utility {
         String formattedFileSize = "0 B";
         File fileReference = new File(filePath);
         if (fileReference.exists()) {
-            long fileSizeInBytes = fileReference.length();
-            if (fileSizeInBytes < 1024) {
-                return fileSizeInBytes + " B";
-            }
-            int unitIndex = (int) (Math.log(fileSizeInBytes) / Math.log(1024));
-            String computedUnit = "KMGT".charAt(unitIndex - 1) + "";
-            formattedFileSize = String.format("%.1f %sB", fileSizeInBytes / Math.pow(1024, unitIndex), computedUnit);
+            formattedFileSize = getFileSize(fileReference.length());
         }
         return formattedFileSize;
     }
 
+    /*
+     * Converts file size into human readable format
+     * @param   file size in bytes
+     * @return  file size in human readable format
+     */
+    public static String getFileSize(final long fileSizeInBytes) {
+        if (fileSizeInBytes < 1024) {
+            return fileSizeInBytes + " B";
+        }
+        int unitIndex = (int) (Math.log(fileSizeInBytes) / Math.log(1024));
+        String computedUnit = "KMGT".charAt(unitIndex - 1) + "";
+        return String.format("%.1f %sB", fileSizeInBytes / Math.pow(1024, unitIndex), computedUnit);
+    }
+
+    /*
+     * Converts the size field of a record into bytes
+     * Records of caches scanned before sizes were kept in bytes hold human readable sizes, which are approximate above 1 KB
+     * @param   file size in bytes or in human readable format
+     * @return  file size in bytes
+     */
+    public static long parseFileSize(final String formattedFileSize) {
+        int unitIndex = formattedFileSize.indexOf(' ');
+        if (unitIndex < 0) {
+            return Long.parseLong(formattedFileSize);
+        }
+        int exponent = "BKMGT".indexOf(formattedFileSize.charAt(unitIndex + 1));
+        if (exponent < 0) {
+            throw new NumberFormatException(formattedFileSize);
+        }
+        //decimal separator of the default locale was used by String.format
+        double fileSize = Double.parseDouble(formattedFileSize.substring(0, unitIndex).replace(',', '.'));
+        return Math.round(fileSize * Math.pow(1024, exponent));
+    }
+
     /*
      * Finds file extension from the given file path
      * @param   absolute filePath
@@ -146,6 +197,147 @@ public class Utility {
         return fileBitMask;
     }
 
+    /*
+     * Reads the numeric user id and group ids of the application once
+     * @return  user id followed by the primary and supplementary group ids, null if they are not available
+     */
+    private static long[] getCurrentUserIds() {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            return null;
+        }
+        try {
+            com.sun.security.auth.module.UnixSystem unixSystem = new com.sun.security.auth.module.UnixSystem();
+            long[] groups = unixSystem.getGroups();
+            long[] currentUserIds = new long[(groups == null ? 0 : groups.length) + 2];
+            currentUserIds[0] = unixSystem.getUid();
+            currentUserIds[1] = unixSystem.getGid();
+            for (int i = 2; i < currentUserIds.length; i++) {
+                currentUserIds[i] = groups[i - 2];
+            }
+            return currentUserIds;
+        } catch (Throwable unknownThrowable) {
+            LOGGER.log(Level.WARNING, "User ids are not available", unknownThrowable);
+            return null;
+        }
+    }
+
+    /*
+     * Reads every property needed by the cache in a single call
+     * On unix the numeric owner and mode are read, so no user name is looked up per file
+     * @param   filePath absolute path
+     * @return  attributes to be passed to getFilePropertiesMask
+     */
+    public static BasicFileAttributes readFileAttributes(final Path filePath) throws IOException {
+        if (CURRENT_USER_IDS != null) {
+            return new UnixFileAttributes(Files.readAttributes(filePath, UNIX_ATTRIBUTES));
+        }
+        return Files.readAttributes(filePath, FILE_ATTRIBUTES_TYPE);
+    }
+
+    /*
+     * Finds the richest file attributes type supported by the default file system
+     * Reading this type returns every property needed by the cache in a single call
+     * @return  attributes type to be used with Files.readAttributes
+     */
+    private static Class<? extends BasicFileAttributes> getFileAttributesType() {
+        Set<String> supportedViews = FileSystems.getDefault().supportedFileAttributeViews();
+        if (supportedViews.contains("posix")) {
+            return PosixFileAttributes.class;
+        }
+        if (supportedViews.contains("dos")) {
+            return DosFileAttributes.class;
+        }
+        return BasicFileAttributes.class;
+    }
+
+    /*
+     * Finds bitmask of the file/directory property from already read attributes
+     * Unix permissions are checked against the owner bits for the owner, the group bits for a member of the group,
+     * all access for root and the others bits for everyone else
+     * @param   filePath->absolute path    fileAttributes->attributes read for filePath
+     * @return  bitmask
+     */
+    public static int getFilePropertiesMask(final Path filePath, final BasicFileAttributes fileAttributes) {
+        int fileBitMask = 0;
+        boolean isReadable = true;
+        boolean isWritable = true;
+        boolean isExecutable = true;
+        boolean isHidden = false;
+        if (fileAttributes instanceof UnixFileAttributes) {
+            UnixFileAttributes unixFileAttributes = (UnixFileAttributes) fileAttributes;
+            int mode = unixFileAttributes.getMode();
+            if (CURRENT_USER_IDS[0] == 0) {
+                isExecutable = fileAttributes.isDirectory() || (mode & 0111) != 0;
+            } else if (unixFileAttributes.getUid() == CURRENT_USER_IDS[0]) {
+                isReadable = (mode & 0400) != 0;
+                isWritable = (mode & 0200) != 0;
+                isExecutable = (mode & 0100) != 0;
+            } else if (isCurrentGroup(unixFileAttributes.getGid())) {
+                isReadable = (mode & 040) != 0;
+                isWritable = (mode & 020) != 0;
+                isExecutable = (mode & 010) != 0;
+            } else {
+                isReadable = (mode & 04) != 0;
+                isWritable = (mode & 02) != 0;
+                isExecutable = (mode & 01) != 0;
+            }
+            Path fileName = filePath.getFileName();
+            isHidden = (fileName != null && fileName.toString().startsWith(PropertyPage.FILE_EXTENSION_SEPARATOR));
+        } else if (fileAttributes instanceof PosixFileAttributes) {
+            PosixFileAttributes posixFileAttributes = (PosixFileAttributes) fileAttributes;
+            Set<PosixFilePermission> permissions = posixFileAttributes.permissions();
+            if ("root".equals(CURRENT_USER)) {
+                isExecutable = fileAttributes.isDirectory()
+                        || permissions.contains(PosixFilePermission.OWNER_EXECUTE)
+                        || permissions.contains(PosixFilePermission.GROUP_EXECUTE)
+                        || permissions.contains(PosixFilePermission.OTHERS_EXECUTE);
+            } else if (posixFileAttributes.owner().getName().equals(CURRENT_USER)) {
+                isReadable = permissions.contains(PosixFilePermission.OWNER_READ);
+                isWritable = permissions.contains(PosixFilePermission.OWNER_WRITE);
+                isExecutable = permissions.contains(PosixFilePermission.OWNER_EXECUTE);
+            } else {
+                isReadable = permissions.contains(PosixFilePermission.OTHERS_READ);
+                isWritable = permissions.contains(PosixFilePermission.OTHERS_WRITE);
+                isExecutable = permissions.contains(PosixFilePermission.OTHERS_EXECUTE);
+            }
+            Path fileName = filePath.getFileName();
+            isHidden = (fileName != null && fileName.toString().startsWith(PropertyPage.FILE_EXTENSION_SEPARATOR));
+        } else if (fileAttributes instanceof DosFileAttributes) {
+            DosFileAttributes dosFileAttributes = (DosFileAttributes) fileAttributes;
+            isWritable = !dosFileAttributes.isReadOnly();
+            isHidden = dosFileAttributes.isHidden();
+        }
+        if (isReadable) {
+            fileBitMask = fileBitMask | 1;
+        }
+        if (isWritable) {
+            fileBitMask = fileBitMask | 2;
+        }
+        if (isExecutable) {
+            fileBitMask = fileBitMask | 4;
+        }
+        if (isHidden) {
+            fileBitMask = fileBitMask | 8;
+        }
+        if (fileAttributes.isDirectory()) {
+            fileBitMask = fileBitMask | 16;
+        }
+        return fileBitMask;
+    }
+
+    /*
+     * @param   gid numeric group of a file
+     * @return  true if the application runs in that group
+     */
+    private static boolean isCurrentGroup(long gid) {
+        for (int i = 1; i < CURRENT_USER_IDS.length; i++) {
+            if (CURRENT_USER_IDS[i] == gid) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /*
      * Checks given bitmask for read flag
      * @param   file property bitMask
@@ -191,6 +383,18 @@ public class Utility {
         return ((bitMask & 16) == 16 ? true : false);
     }
 
+    /*
+     * Checks whether a path lies under a directory
+     * @param   filePath->absolute path     directoryPath->absolute path of the directory
+     * @return  true if filePath is a descendant of directoryPath
+     */
+    public static boolean isInDirectory(String filePath, String directoryPath) {
+        if (!filePath.startsWith(directoryPath) || filePath.length() == directoryPath.length()) {
+            return false;
+        }
+        return (directoryPath.endsWith(PropertyPage.FILE_SEPARATOR) || filePath.startsWith(PropertyPage.FILE_SEPARATOR, directoryPath.length()));
+    }
+
     /*
      * Finds the FileName from the given absolute filePath
      * @param   absolute file path
@@ -264,17 +468,25 @@ public class Utility {
                         || fileName.endsWith(PropertyPage.RAW_FILE_EXTENSION)
                         || fileName.endsWith(PropertyPage.SYMBOLS_FILE_EXTENSION)
                         || fileName.endsWith(PropertyPage.INDEX_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.DIRECTORY_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.PREVIOUS_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.DELTA_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.CHECKPOINT_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.COLUMNAR_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.TRIGRAM_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.BITMAP_FILE_EXTENSION)
                         || fileName.endsWith(PropertyPage.CONFIG_FILE_EXTENSION)) {
                     allFiles[i].delete();
                 }
-            } else if (cleanType == 2) {  //cleans all cache files except compressed and configuration
-                if (fileName.endsWith(PropertyPage.SYMBOLS_FILE_EXTENSION)
-                        || fileName.endsWith(PropertyPage.RAW_FILE_EXTENSION)
-                        || fileName.endsWith(PropertyPage.INDEX_FILE_EXTENSION)) {
+            } else if (cleanType == 2) {  //cleans search results and temporary files, extracted caches are reused while their compressed file is unchanged
+                if (fileName.endsWith(PropertyPage.PREVIOUS_FILE_EXTENSION)
+                        || fileName.endsWith(PropertyPage.INDEX_FILE_EXTENSION)
+                        || fileName.startsWith(PropertyPage.SEARCH_RAW_FILE + PropertyPage.FILE_EXTENSION_SEPARATOR)
+                        || fileName.startsWith(PropertyPage.SEARCH_SYMBOL_FILE + PropertyPage.FILE_EXTENSION_SEPARATOR)) {
                     allFiles[i].delete();
                 }
-            } else if (cleanType == 3 && cacheName != null) { //cleans all cache files begining with cacheName
-                if (fileName.startsWith(cacheName)) {
+            } else if (cleanType == 3 && cacheName != null) { //cleans all cache files named cacheName
+                if (fileName.startsWith(cacheName + PropertyPage.FILE_EXTENSION_SEPARATOR)) {
                     allFiles[i].delete();
                 }
             }
@@ -282,28 +494,6 @@ public class Utility {
         absolutePath = null;
     }
 
-    /*
-     * Finds index of the search raw file for the given line number
-     * @param   line number
-     * @return  index number
-     */
-    public static long getSearchResultIndex(int lineNumber) {
-        try {
-            BufferedReader rawFileIndexBufferedReader = null;
-            rawFileIndexBufferedReader = new BufferedReader(new FileReader(new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE_INDEX + PropertyPage.INDEX_FILE_EXTENSION)));
-            String indexLine;
-            while ((indexLine = rawFileIndexBufferedReader.readLine()) != null) {
-                String tokens[] = indexLine.split("=");
-                if (tokens[0].equals(Integer.toString(lineNumber))) {
-                    return Long.valueOf(tokens[1]);
-                }
-            }
-        } catch (Exception iOException) {
-            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
-        }
-        return 0L;
-    }
-
     /*
      * Checks whether available memory is more than 1% of max memory
      * @return  true if more than 1% memory is available
@@ -0,0 +1,117 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+package net.quickfind.find;
+
+/*
+ * LongHashSet.java
+ * Set of non negative long values held in an open addressing table, without boxing the values
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+final class LongHashSet {
+
+    /*
+     * Values stored as value + 1, 0 marks an empty slot
+     */
+    private long[] slots;
+    /*
+     * Number of values
+     */
+    private int size;
+
+    /*
+     * Constructs the LongHashSet with the expected number of values
+     * @param   expectedSize number of values held without growing
+     */
+    LongHashSet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        slots = new long[capacity];
+    }
+
+    /*
+     * @param   value non negative value
+     * @return  true if the value was not in the set
+     */
+    boolean add(long value) {
+        if ((size + 1) * 2 > slots.length) {
+            grow();
+        }
+        if (insert(slots, value + 1)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Puts a stored value into the first free slot of its probe sequence
+     * @return  true if the value was not in the table
+     */
+    private static boolean insert(long[] table, long storedValue) {
+        int mask = table.length - 1;
+        int slot = hash(storedValue) & mask;
+        while (table[slot] != 0) {
+            if (table[slot] == storedValue) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = storedValue;
+        return true;
+    }
+
+    /*
+     * Doubles the table when it is half full
+     */
+    private void grow() {
+        long[] grownSlots = new long[slots.length * 2];
+        for (long storedValue : slots) {
+            if (storedValue != 0) {
+                insert(grownSlots, storedValue);
+            }
+        }
+        slots = grownSlots;
+    }
+
+    /*
+     * Mixes the bits of the value, consecutive values spread over the table
+     */
+    private static int hash(long value) {
+        long mixedValue = value * 0x9E3779B97F4A7C15L;
+        return (int) (mixedValue ^ (mixedValue >>> 32));
+    }
+}
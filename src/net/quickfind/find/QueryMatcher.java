@@ -0,0 +1,522 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.find;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/*
+ * QueryMatcher.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+final class QueryMatcher {
+
+    /*
+     * Query types, a wildcard query is classified by the position of its '*'
+     */
+    private static final int ANY = 0;
+    private static final int EXACT = 1;
+    private static final int PREFIX = 2;
+    private static final int SUFFIX = 3;
+    private static final int SUBSTRING = 4;
+    private static final int SEGMENTS = 5;
+    private static final int GLOB = 6;
+    private static final int REGEX = 7;
+    /*
+     * Tokens of a wildcard query
+     */
+    private static final byte LITERAL = 0;
+    private static final byte ONE = 1;         // '.' matches exactly one character
+    private static final byte OPTIONAL = 2;    // '?' matches zero or one character
+    private static final byte SEQUENCE = 3;    // '*' matches any number of characters
+    /*
+     * Characters which are passed to the regular expression by wildcard queries
+     */
+    private static final String REGEX_CHARACTERS = "\\^$|+";
+    /*
+     * Size of the skip tables, characters are hashed by their low byte
+     */
+    private static final int SKIP_TABLE_SIZE = 256;
+    /*
+     * Type of the query
+     */
+    private final int queryType;
+    /*
+     * Lower case literals of the segments between '*', ANY_CHARACTER where the segment has '.'
+     */
+    private final char[][] segments;
+    /*
+     * Per segment, true where the segment matches any character
+     */
+    private final boolean[][] anyCharacters;
+    /*
+     * Per segment, shift of the search window by the last character of the window
+     */
+    private final int[][] skipTables;
+    /*
+     * Query starts with '*', query ends with '*'
+     */
+    private final boolean isLeadingSequence;
+    private final boolean isTrailingSequence;
+    /*
+     * Tokens and lower case literals of a glob query
+     */
+    private final byte[] globTokens;
+    private final char[] globCharacters;
+    /*
+     * Reached states of the glob automaton, reused for every name
+     */
+    private boolean[] states;
+    private boolean[] nextStates;
+    /*
+     * Matcher of a regular expression query, reset for every name
+     */
+    private final Matcher matcher;
+
+    /*
+     * Constructs the QueryMatcher of a regular expression query
+     * @param   pattern compiled regular expression
+     */
+    private QueryMatcher(Pattern pattern) {
+        queryType = REGEX;
+        matcher = pattern.matcher("");
+        segments = null;
+        anyCharacters = null;
+        skipTables = null;
+        isLeadingSequence = false;
+        isTrailingSequence = false;
+        globTokens = null;
+        globCharacters = null;
+    }
+
+    /*
+     * Constructs the QueryMatcher of a glob query
+     * @param   tokens->tokens of the query   characters->lower case literals of the tokens
+     */
+    private QueryMatcher(byte[] tokens, char[] characters) {
+        queryType = GLOB;
+        globTokens = tokens;
+        globCharacters = characters;
+        states = new boolean[tokens.length + 1];
+        nextStates = new boolean[tokens.length + 1];
+        matcher = null;
+        segments = null;
+        anyCharacters = null;
+        skipTables = null;
+        isLeadingSequence = false;
+        isTrailingSequence = false;
+    }
+
+    /*
+     * Constructs the QueryMatcher of a query whose segments are separated by '*'
+     * @param   aQueryType->type of the query   aSegments->literals of the segments   anAnyCharacters->'.' positions of the segments
+     *          leadingSequence->query starts with '*'   trailingSequence->query ends with '*'
+     */
+    private QueryMatcher(int aQueryType, char[][] aSegments, boolean[][] anAnyCharacters, boolean leadingSequence, boolean trailingSequence) {
+        queryType = aQueryType;
+        segments = aSegments;
+        anyCharacters = anAnyCharacters;
+        isLeadingSequence = leadingSequence;
+        isTrailingSequence = trailingSequence;
+        skipTables = new int[segments.length][];
+        for (int segment = 0; segment < segments.length; segment++) {
+            skipTables[segment] = createSkipTable(segments[segment], anyCharacters[segment]);
+        }
+        matcher = null;
+        globTokens = null;
+        globCharacters = null;
+    }
+
+    /*
+     * Compiles the search content into the matcher of its query type
+     * A wildcard query is matched case insensitively: '*' is any sequence, '?' is an optional character and '.' is any character,
+     * a query without '*' is searched anywhere in the name. Only a query enclosed in "" or holding regular expression
+     * characters other than these is matched by a regular expression.
+     * @param   searchContent is the search pattern
+     * @return  matcher of the search content
+     */
+    static QueryMatcher compile(String searchContent) throws PatternSyntaxException {
+        if (searchContent.startsWith("\"") && searchContent.endsWith("\"") && searchContent.length() > 1) {
+            //removing "" quotes, considering given string as pure regEx pattern
+            return new QueryMatcher(Pattern.compile(searchContent.replaceAll("\"", "")));
+        }
+        for (int i = 0; i < searchContent.length(); i++) {
+            if (REGEX_CHARACTERS.indexOf(searchContent.charAt(i)) >= 0) {
+                return new QueryMatcher(Pattern.compile(convertAsWildCard(searchContent).toLowerCase(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+            }
+        }
+        boolean isSubstring = searchContent.indexOf('*') == -1;
+        byte[] tokens = new byte[searchContent.length() + 2];
+        char[] characters = new char[tokens.length];
+        int tokenCount = 0;
+        boolean hasOptional = false;
+        if (isSubstring) {
+            tokens[tokenCount++] = SEQUENCE;
+        }
+        for (int i = 0; i < searchContent.length(); i++) {
+            char character = searchContent.charAt(i);
+            if (character == '*') {
+                if (tokenCount == 0 || tokens[tokenCount - 1] != SEQUENCE) {
+                    tokens[tokenCount++] = SEQUENCE;
+                }
+            } else if (character == '?') {
+                hasOptional = true;
+                tokens[tokenCount++] = OPTIONAL;
+            } else if (character == '.') {
+                tokens[tokenCount++] = ONE;
+            } else {
+                characters[tokenCount] = Character.toLowerCase(character);
+                tokens[tokenCount++] = LITERAL;
+            }
+        }
+        if (isSubstring && tokens[tokenCount - 1] != SEQUENCE) {
+            tokens[tokenCount++] = SEQUENCE;
+        }
+        if (hasOptional) {
+            return new QueryMatcher(Arrays.copyOf(tokens, tokenCount), Arrays.copyOf(characters, tokenCount));
+        }
+        return compileSegments(tokens, characters, tokenCount);
+    }
+
+    /*
+     * Splits the tokens of a query without '?' at its '*' and classifies the query by them
+     * @param   tokens->tokens of the query   characters->lower case literals of the tokens   tokenCount->number of tokens
+     * @return  matcher of the segments
+     */
+    private static QueryMatcher compileSegments(byte[] tokens, char[] characters, int tokenCount) {
+        int segmentCount = 0;
+        for (int i = 0; i < tokenCount; i++) {
+            if (tokens[i] != SEQUENCE && (i == 0 || tokens[i - 1] == SEQUENCE)) {
+                segmentCount++;
+            }
+        }
+        char[][] segments = new char[segmentCount][];
+        boolean[][] anyCharacters = new boolean[segmentCount][];
+        int segment = 0;
+        for (int i = 0; i < tokenCount;) {
+            if (tokens[i] == SEQUENCE) {
+                i++;
+                continue;
+            }
+            int segmentEnd = i;
+            while (segmentEnd < tokenCount && tokens[segmentEnd] != SEQUENCE) {
+                segmentEnd++;
+            }
+            segments[segment] = Arrays.copyOfRange(characters, i, segmentEnd);
+            anyCharacters[segment] = new boolean[segmentEnd - i];
+            for (int j = i; j < segmentEnd; j++) {
+                anyCharacters[segment][j - i] = tokens[j] == ONE;
+            }
+            segment++;
+            i = segmentEnd;
+        }
+        boolean isLeadingSequence = tokenCount > 0 && tokens[0] == SEQUENCE;
+        boolean isTrailingSequence = tokenCount > 0 && tokens[tokenCount - 1] == SEQUENCE;
+        int queryType;
+        if (segmentCount == 0) {
+            queryType = isLeadingSequence ? ANY : EXACT;
+        } else if (segmentCount > 1) {
+            queryType = SEGMENTS;
+        } else if (isLeadingSequence && isTrailingSequence) {
+            queryType = SUBSTRING;
+        } else if (isLeadingSequence) {
+            queryType = SUFFIX;     // extension queries like *.txt, '.' still matches any character
+        } else if (isTrailingSequence) {
+            queryType = PREFIX;
+        } else {
+            queryType = EXACT;
+        }
+        if (segmentCount == 0) {
+            segments = new char[][]{new char[0]};
+            anyCharacters = new boolean[][]{new boolean[0]};
+        }
+        return new QueryMatcher(queryType, segments, anyCharacters, isLeadingSequence, isTrailingSequence);
+    }
+
+    /*
+     * Builds the Horspool skip table of a segment, characters beyond the last '.' of the segment are skipped
+     * @param   segment->lower case literals   anyCharacter->'.' positions of the segment
+     * @return  shift of the search window by the low byte of its last character
+     */
+    private static int[] createSkipTable(char[] segment, boolean[] anyCharacter) {
+        int[] skipTable = new int[SKIP_TABLE_SIZE];
+        int defaultShift = segment.length;
+        for (int i = 0; i < segment.length - 1; i++) {
+            if (anyCharacter[i]) {
+                defaultShift = segment.length - 1 - i;
+            }
+        }
+        Arrays.fill(skipTable, Math.max(defaultShift, 1));
+        for (int i = 0; i < segment.length - 1; i++) {
+            if (!anyCharacter[i]) {
+                int index = segment[i] & (SKIP_TABLE_SIZE - 1);
+                skipTable[index] = Math.max(Math.min(skipTable[index], segment.length - 1 - i), 1);
+            }
+        }
+        return skipTable;
+    }
+
+    /*
+     * Builds wildcard pattern from search string
+     * @param   stringToSearch is the search pattern
+     * @return  searchString in WildCard format
+     */
+    private static String convertAsWildCard(String stringToSearch) {
+        stringToSearch = stringToSearch.replace("(", "\\(").replace(")", "\\)");
+        stringToSearch = stringToSearch.replace("[", "\\[").replace("]", "\\]");
+        stringToSearch = stringToSearch.replace("{", "\\{").replace("}", "\\}");
+        StringBuffer searchString = new StringBuffer(stringToSearch);
+        for (int i = 0; i < searchString.length(); i++) {
+            if (searchString.charAt(i) == '.') {
+                searchString.replace(i, i + 1, "(.)");
+                i = i + 2;
+            }
+            if (searchString.charAt(i) == '*') {
+                searchString.replace(i, i + 1, ".*");
+                i = i + 1;
+            }
+            if (searchString.charAt(i) == '?') {
+                searchString.replace(i, i + 1, ".?");
+                i = i + 1;
+            }
+        }
+        if (stringToSearch.indexOf('*') == -1) {
+            searchString.insert(0, ".*");
+            searchString.append(".*");
+        }
+        return searchString.toString();
+    }
+
+    /*
+     * Creates a matcher of the same query for another thread
+     * @return  this if the matcher holds no state, a new matcher otherwise
+     */
+    QueryMatcher duplicate() {
+        if (queryType == REGEX) {
+            return new QueryMatcher(matcher.pattern());
+        }
+        if (queryType == GLOB) {
+            return new QueryMatcher(globTokens, globCharacters);
+        }
+        return this;
+    }
+
+    /*
+     * Finds the runs of literal characters every matching name holds, used to look up an index before matching
+     * @return  lower case literals, or null if the query requires none
+     */
+    String[] getRequiredLiterals() {
+        ArrayList<String> literals = new ArrayList<String>();
+        if (queryType == GLOB) {
+            addLiteralRuns(globCharacters, globTokens, literals);
+        } else if (queryType != REGEX && queryType != ANY) {
+            for (int segment = 0; segment < segments.length; segment++) {
+                byte[] tokens = new byte[segments[segment].length];
+                for (int i = 0; i < tokens.length; i++) {
+                    tokens[i] = anyCharacters[segment][i] ? ONE : LITERAL;
+                }
+                addLiteralRuns(segments[segment], tokens, literals);
+            }
+        }
+        return (literals.isEmpty() ? null : literals.toArray(new String[literals.size()]));
+    }
+
+    /*
+     * Adds the runs of consecutive LITERAL tokens
+     * @param   characters->lower case literals of the tokens   tokens->tokens of the query     literals->receives the runs
+     */
+    private static void addLiteralRuns(char[] characters, byte[] tokens, ArrayList<String> literals) {
+        int runStart = 0;
+        for (int i = 0; i <= tokens.length; i++) {
+            if (i == tokens.length || tokens[i] != LITERAL) {
+                if (i > runStart) {
+                    literals.add(new String(characters, runStart, i - runStart));
+                }
+                runStart = i + 1;
+            }
+        }
+    }
+
+    /*
+     * Matches the whole of a name with the query
+     * @param   text->holds the name   start->start of the name   end->end of the name
+     * @return  true if the name matches
+     */
+    boolean matches(CharSequence text, int start, int end) {
+        switch (queryType) {
+            case ANY:
+                return true;
+            case EXACT:
+                return end - start == segments[0].length && matchesAt(0, text, start);
+            case PREFIX:
+                return end - start >= segments[0].length && matchesAt(0, text, start);
+            case SUFFIX:
+                return end - start >= segments[0].length && matchesAt(0, text, end - segments[0].length);
+            case SUBSTRING:
+                return indexOf(0, text, start, end) >= 0;
+            case SEGMENTS:
+                return matchesSegments(text, start, end);
+            case GLOB:
+                return matchesGlob(text, start, end);
+            default:
+                return matcher.reset(text).region(start, end).matches();
+        }
+    }
+
+    /*
+     * Matches the segments in order, each one at its first occurrence after the previous one
+     * @param   text->holds the name   start->start of the name   end->end of the name
+     * @return  true if the name matches
+     */
+    private boolean matchesSegments(CharSequence text, int start, int end) {
+        int position = start;
+        int limit = end;
+        int firstSegment = 0;
+        int lastSegment = segments.length - 1;
+        if (!isLeadingSequence) {
+            if (end - start < segments[0].length || !matchesAt(0, text, start)) {
+                return false;
+            }
+            position += segments[0].length;
+            firstSegment++;
+        }
+        if (!isTrailingSequence) {
+            limit = end - segments[lastSegment].length;
+            if (limit < position || !matchesAt(lastSegment, text, limit)) {
+                return false;
+            }
+            lastSegment--;
+        }
+        for (int segment = firstSegment; segment <= lastSegment; segment++) {
+            int index = indexOf(segment, text, position, limit);
+            if (index < 0) {
+                return false;
+            }
+            position = index + segments[segment].length;
+        }
+        return true;
+    }
+
+    /*
+     * Runs the glob automaton over the name, a state is the number of tokens matched
+     * @param   text->holds the name   start->start of the name   end->end of the name
+     * @return  true if the name matches
+     */
+    private boolean matchesGlob(CharSequence text, int start, int end) {
+        int tokenCount = globTokens.length;
+        Arrays.fill(states, false);
+        states[0] = true;
+        closeStates(states);
+        for (int position = start; position < end; position++) {
+            char character = Character.toLowerCase(text.charAt(position));
+            boolean isReached = false;
+            Arrays.fill(nextStates, false);
+            for (int state = 0; state < tokenCount; state++) {
+                if (!states[state]) {
+                    continue;
+                }
+                switch (globTokens[state]) {
+                    case LITERAL:
+                        if (globCharacters[state] == character) {
+                            nextStates[state + 1] = true;
+                            isReached = true;
+                        }
+                        break;
+                    case SEQUENCE:
+                        nextStates[state] = true;
+                        isReached = true;
+                        break;
+                    default:
+                        nextStates[state + 1] = true;
+                        isReached = true;
+                }
+            }
+            if (!isReached) {
+                return false;
+            }
+            closeStates(nextStates);
+            boolean[] reachedStates = states;
+            states = nextStates;
+            nextStates = reachedStates;
+        }
+        return states[tokenCount];
+    }
+
+    /*
+     * Adds the states reached by skipping '*' and '?' without a character
+     * @param   reachedStates states of the automaton
+     */
+    private void closeStates(boolean[] reachedStates) {
+        for (int state = 0; state < globTokens.length; state++) {
+            if (reachedStates[state] && (globTokens[state] == SEQUENCE || globTokens[state] == OPTIONAL)) {
+                reachedStates[state + 1] = true;
+            }
+        }
+    }
+
+    /*
+     * @param   segment->index of the segment   text->holds the name   position->start of the comparison
+     * @return  true if the segment matches the text at the position
+     */
+    private boolean matchesAt(int segment, CharSequence text, int position) {
+        char[] literals = segments[segment];
+        boolean[] anyCharacter = anyCharacters[segment];
+        for (int i = literals.length - 1; i >= 0; i--) {
+            if (!anyCharacter[i] && literals[i] != Character.toLowerCase(text.charAt(position + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Finds the first occurrence of the segment with the Horspool search
+     * @param   segment->index of the segment   text->holds the name   start->start of the search   end->end of the search
+     * @return  start of the occurrence or -1
+     */
+    private int indexOf(int segment, CharSequence text, int start, int end) {
+        int length = segments[segment].length;
+        int[] skipTable = skipTables[segment];
+        for (int position = start; position <= end - length;) {
+            if (matchesAt(segment, text, position)) {
+                return position;
+            }
+            position += length == 0 ? 1 : skipTable[Character.toLowerCase(text.charAt(position + length - 1)) & (SKIP_TABLE_SIZE - 1)];
+        }
+        return -1;
+    }
+}
@@ -34,56 +34,90 @@
 package net.quickfind.find;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import net.quickfind.cache.BitmapIndex;
+import net.quickfind.cache.ColumnarCache;
+import net.quickfind.cache.CompressedCache;
+import net.quickfind.cache.DeltaLog;
+import net.quickfind.cache.ResidentIndex;
+import net.quickfind.cache.SymbolIndex;
+import net.quickfind.cache.TrigramIndex;
 import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
 
 /*
  * QuickSearch.java
  * @author  Copyright (C) 2010 Vasantkumar Mulage
  */
-public class QuickSearch extends Thread {
+public class QuickSearch implements Runnable {
 
     /*
-     * Thread lock to hold current thread
+     * Matcher of the compiled search pattern
      */
-    private final Object QUICK_SEARCH_THREAD_LOCK = new Object();
+    private QueryMatcher queryMatcher;
     /*
-     * Search pattern
+     * Structured terms of the query or null, checked before the name is matched
      */
-    private String searchPattern;
+    private RecordFilter recordFilter;
     /*
-     * Common raw data writter
+     * First and last directory id under the directory the search is restricted to, null if not restricted
      */
-    private RawDataWriter rawDataWriter;
+    private long[] scopeDirectoryIds;
     /*
-     * Regular expression flag
+     * Ids of the directories matching the directory part of a path query, one bit per id, null if the query is not a path
      */
-    private boolean isRegEx = false;
+    private long[] matchedDirectoryIds;
     /*
-     * Symbols file writter
+     * Symbols of the directories created after the scan which match the directory part of a path query
      */
-    private BufferedWriter symbolWriter = null;
+    private HashSet<String> matchedDeltaSymbols;
     /*
-     * Contains directory symbol(belonging to cache formatted path) of the found filenames
+     * Symbol prefix of the directories of the cache, null if the cache has no directory symbols
      */
-    private ArrayList<String> directorySymbolList;
+    private String symbolPrefix;
     /*
-     * Duplicate remover of rawPathList
+     * Symbol prefix of the cache as kept by the cache collection, used for the extracted files
      */
-    private HashSet<String> directorySymbolListHashSet;
+    private final String cacheIndex;
+    /*
+     * Result buffer of the cache
+     */
+    private ResultBuffer resultBuffer;
+    /*
+     * Ids of the parent directories of the found records, each directory is resolved once per search
+     */
+    private LongHashSet foundDirectoryIds;
+    /*
+     * Ids of the found directories which are not resolved yet
+     */
+    private long[] pendingDirectoryIds;
+    private int pendingDirectoryCount;
+    /*
+     * Found directory symbols which are not ids of the cache, and those which are not resolved yet
+     */
+    private HashSet<String> foundDirectorySymbols;
+    private ArrayList<String> pendingDirectorySymbols;
+    /*
+     * Rows of the first page written since their directories were last resolved, and the time of that resolution
+     */
+    private int unstreamedRowCount;
+    private long lastStreamTime;
     /*
      * Root name/path of the cache
      */
@@ -93,9 +127,33 @@ public class QuickSearch extends Thread {
      */
     private Search search;
     /*
-     * Search result flag
+     * Changes of the cache found by the cache watcher after the scan, null if there are none
+     */
+    private DeltaLog deltaLog;
+    /*
+     * Compressed file searched when the cache is not extracted, null otherwise
+     */
+    private CompressedCache compressedCache;
+    /*
+     * Index of the cache kept in memory, searched instead of the files of the cache if it is set
+     */
+    private ResidentIndex residentIndex;
+    /*
+     * Blocks searched ahead of the one whose matches are written
+     */
+    private static final int READ_AHEAD_BLOCKS = 2 * Runtime.getRuntime().availableProcessors();
+    /*
+     * Bytes of the raw file submitted to the chunk search pool at a time, split into chunks by the pool
+     */
+    private static final int RAW_SEGMENT_SIZE = 4 * 1024 * 1024;
+    /*
+     * Rows of the first page streamed together, each resolution reads the symbols of the cache
+     */
+    private static final int STREAMED_ROWS_BATCH = 64;
+    /*
+     * Longest time in milliseconds a row of the first page waits for the batch while rows keep being found
      */
-    private boolean isItemFound = false;
+    private static final long STREAM_INTERVAL = 100L;
     /*
      * Exception logger
      */
@@ -103,76 +161,58 @@ public class QuickSearch extends Thread {
 
 
     /*
-     * Constructs the QuickSearch with CacheRoot,RawDataWriter,Search
-     * @param   aCacheRoot->root directory of the cache     aRawDataWriter->common raw data writter   aSearch->search
+     * Constructs the QuickSearch with CacheRoot,CacheIndex,QueryMatcher,RecordFilter,ResultBuffer,Search
+     * @param   aCacheRoot->root directory of the cache     aCacheIndex->symbol prefix of the cache or null
+     *          aQueryMatcher->compiled search pattern      aRecordFilter->terms of the query or null
+     *          aResultBuffer->result buffer of the cache   aSearch->search
      */
-    public QuickSearch(String aCacheRoot, RawDataWriter aRawDataWriter, Search aSearch) {
+    public QuickSearch(String aCacheRoot, String aCacheIndex, QueryMatcher aQueryMatcher, RecordFilter aRecordFilter, ResultBuffer aResultBuffer, Search aSearch) {
         cacheRoot = aCacheRoot;
-        rawDataWriter = aRawDataWriter;
+        cacheIndex = (aCacheIndex == null || aCacheIndex.isEmpty() ? null : aCacheIndex);
+        queryMatcher = aQueryMatcher;
+        recordFilter = aRecordFilter;
+        resultBuffer = aResultBuffer;
         search = aSearch;
-        directorySymbolList = new ArrayList<String>(10000);
-        directorySymbolListHashSet = new HashSet<String>(10000);
-        try {
-            symbolWriter = new BufferedWriter(new FileWriter((new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_SYMBOL_FILE + PropertyPage.SYMBOLS_FILE_EXTENSION)), true));
-        } catch (IOException iOException) {
-            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
-        }
+        foundDirectoryIds = new LongHashSet(1024);
+        pendingDirectoryIds = new long[1024];
+        foundDirectorySymbols = new HashSet<String>();
+        pendingDirectorySymbols = new ArrayList<String>();
     }
 
     /*
-     * Checks whether the searchContent is regular expression.
-     * @param   searchContent is the search pattern
-     * @return  true if searchContent enclosed in ""
+     * Searches the blocks of the compressed file instead of the extracted files
+     * @param   compressed file of the cache or null
      */
-    private boolean isRegEx(String searchContent) {
-        if (searchContent.startsWith("\"") && searchContent.endsWith("\"") && searchContent.length() > 1) {
-            isRegEx = true;
-            return true;
-        }
-        return false;
+    protected synchronized void setCompressedCache(CompressedCache aCompressedCache) {
+        compressedCache = aCompressedCache;
     }
 
     /*
-     * Start the search thread
-     * @param   searchContent is the search pattern
-     * @return  true if item found
+     * Searches the index kept in memory instead of the files of the cache
+     * @param   index of the cache kept in memory or null
      */
-    protected boolean findNow(final String searchContent) {
-        if (isRegEx(searchContent)) {
-            try {
-                /*
-                 * removing "" quotes, considering given string as pure regEx pattern
-                 */
-                searchPattern = searchContent.replaceAll("\"", "");
-                Pattern.compile(searchPattern);
-            } catch (PatternSyntaxException patternSyntaxException) {
-                LOGGER.log(Level.SEVERE, "Invalid pattern", patternSyntaxException);
-                patternSyntaxException.notifyAll();
-                return isItemFound;
-            }
-        } else {
-            searchPattern = convertAsWildCard(searchContent);
-        }
+    protected synchronized void setResidentIndex(ResidentIndex aResidentIndex) {
+        residentIndex = aResidentIndex;
+    }
 
-        //current thread THREAD_LOCK
-        synchronized (this.QUICK_SEARCH_THREAD_LOCK) {
-            try {
-                this.start();
-                this.QUICK_SEARCH_THREAD_LOCK.wait();
-            } catch (InterruptedException interruptedEx) {
-                LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
-            }
-        }
-        return isItemFound;
+    /*
+     * @return  true if the query restricts the directories, which are looked up in the symbol file of the cache
+     */
+    protected boolean isDirectoryRestricted() {
+        return (recordFilter != null && (recordFilter.getScopePath() != null || recordFilter.getDirectoryMatcher() != null));
     }
 
     /*
-     * Releases the QUICK_SEARCH_THREAD_LOCK
+     * Writes the results buffered so far to the search result, later results are written to it directly
+     * The symbols of the first page are resolved at once if the published results fill it
      */
-    private void signal() {
-        synchronized (this.QUICK_SEARCH_THREAD_LOCK) {
-            this.QUICK_SEARCH_THREAD_LOCK.notify();
+    protected synchronized void publishResults() throws IOException {
+        resultBuffer.publish();
+        if (PropertyPage.isFirstPush() && PropertyPage.getSearchedFilesCount() > PropertyPage.getSearchResultLimit()) {
+            resolveSymbols();
+            resultBuffer.flush();
         }
+        search.sendProgress();
     }
 
     /*
@@ -183,93 +223,200 @@ public class QuickSearch extends Thread {
         if (cacheRoot != null) {
             iterateCache();
         }
-        signal();//release the QUICK_SEARCH_THREAD_LOCK
     }
 
     /*
-     * Builds wildcard pattern from search string
-     * @param   stringToSearch is the search pattern
-     * @return  searchString in WildCard format
+     * Searches for pattern match
+     * @param   possible data to be matched
+     * @return  true if pattern matches
      */
-    private String convertAsWildCard(String stringToSearch) {
-        stringToSearch = stringToSearch.replace("(", "\\(").replace(")", "\\)");
-        stringToSearch = stringToSearch.replace("[", "\\[").replace("]", "\\]");
-        stringToSearch = stringToSearch.replace("{", "\\{").replace("}", "\\}");
-        StringBuffer searchString = new StringBuffer(stringToSearch);
-        for (int i = 0; i < searchString.length(); i++) {
-            if (searchString.charAt(i) == '.') {
-                searchString.replace(i, i + 1, "(.)");
-                i = i + 2;
+    private boolean findForMatch(final CharSequence sourceData) {
+        return queryMatcher.matches(sourceData, 0, sourceData.length());
+    }
+
+    /*
+     * Writes the absolute path of the directories found since the last resolution to the search result symbol file
+     * Extracted caches are read at the offsets of the symbol index, compressed caches from the blocks holding the ids
+     */
+    private synchronized void resolveSymbols() {
+        if (pendingDirectoryCount == 0 && pendingDirectorySymbols.isEmpty()) {
+            return;     //nothing found since the last resolution, the cache may not be opened yet
+        }
+        Arrays.sort(pendingDirectoryIds, 0, pendingDirectoryCount);    //ids are read in the order of the symbol file
+        try {
+            String[] symbolValues = (compressedCache != null ? readCompressedSymbols() : readSymbolValues());
+            for (int i = 0; i < pendingDirectoryCount; i++) {
+                if (symbolValues[i] != null) {
+                    resultBuffer.writeSymbol(symbolValues[i]);
+                } else {
+                    writeDeltaSymbol(symbolPrefix + pendingDirectoryIds[i]);
+                }
             }
-            if (searchString.charAt(i) == '*') {
-                searchString.replace(i, i + 1, ".*");
-                i = i + 1;
+            for (String directorySymbol : pendingDirectorySymbols) {
+                writeDeltaSymbol(directorySymbol);
             }
-            if (searchString.charAt(i) == '?') {
-                searchString.replace(i, i + 1, ".?");
-                i = i + 1;
+            pendingDirectoryCount = 0;
+            pendingDirectorySymbols.clear();
+            resultBuffer.flush();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+    }
+
+    /*
+     * Directories created after the scan are not part of the symbol file, their paths are kept by the delta
+     * @param   directorySymbol symbol of a found directory
+     */
+    private void writeDeltaSymbol(String directorySymbol) throws IOException {
+        String directoryPath = (deltaLog == null ? null : deltaLog.getDirectoryPath(directorySymbol));
+        if (directoryPath != null) {
+            resultBuffer.writeSymbol(directorySymbol + PropertyPage.FILE_SEPARATOR + directoryPath);
+        }
+    }
+
+    /*
+     * Reads the pending directory ids from the extracted symbol file
+     * @return  symbol/absolutePath line of each pending id, null where the id is not part of the symbol file
+     */
+    private String[] readSymbolValues() throws IOException {
+        SymbolIndex symbolIndex = SymbolIndex.open(String.valueOf(cacheRoot.hashCode()));
+        if (symbolIndex == null) {
+            return new String[pendingDirectoryCount];
+        }
+        return symbolIndex.readSymbolValues(pendingDirectoryIds, pendingDirectoryCount);
+    }
+
+    /*
+     * Reads the pending directory ids from the blocks of the compressed symbol file which hold them
+     * Line numbers of the symbol file are the seed values of the symbols, so the footer leads to the blocks directly
+     * @return  symbol/absolutePath line of each pending id, null where the id is not part of the symbol file
+     */
+    private String[] readCompressedSymbols() throws IOException {
+        String symbolEntryName = cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION;
+        String[] resolvedValues = new String[pendingDirectoryCount];
+        boolean[] isBlockNeeded = new boolean[compressedCache.getBlockCount(symbolEntryName)];
+        for (int i = 0; i < pendingDirectoryCount; i++) {
+            int block = compressedCache.findBlock(symbolEntryName, pendingDirectoryIds[i]);
+            if (block >= 0) {
+                isBlockNeeded[block] = true;
             }
         }
-        if (stringToSearch.indexOf('*') == -1) {
-            searchString.insert(0, ".*");
-            searchString.append(".*");
+        for (int block = 0; block < isBlockNeeded.length; block++) {
+            if (!isBlockNeeded[block]) {
+                continue;
+            }
+            String symbolValues = new String(compressedCache.readBlock(symbolEntryName, block));
+            for (int lineStart = 0; lineStart < symbolValues.length();) {
+                int lineEnd = RawChunkSearch.getLineEnd(symbolValues, lineStart);
+                int separatorIndex = symbolValues.indexOf(PropertyPage.FILE_SEPARATOR, lineStart);
+                if (separatorIndex > lineStart && separatorIndex < lineEnd) {
+                    int pending = Arrays.binarySearch(pendingDirectoryIds, 0, pendingDirectoryCount, parseDirectoryId(symbolValues.substring(lineStart, separatorIndex)));
+                    if (pending >= 0) {
+                        resolvedValues[pending] = symbolValues.substring(lineStart, lineEnd);
+                    }
+                }
+                lineStart = RawChunkSearch.getNextLineStart(symbolValues, lineEnd);
+            }
         }
-        return searchString.toString();
+        return resolvedValues;
     }
 
     /*
-     * Searches for pattern match
-     * @param   possible data to be matched
-     * @return  true if pattern matches
+     * Keeps the parent directory of a found record until it is resolved, directories found before are skipped
+     * @param   directorySymbol symbol of the parent directory
      */
-    private boolean findForMatch(final String sourceData) {
-        Pattern pattern;
-        Matcher matcher;
-        try {
-            if (isRegEx) {
-                pattern = Pattern.compile(searchPattern);
-                matcher = pattern.matcher(sourceData);
-            } else {
-                pattern = Pattern.compile(searchPattern.toLowerCase());
-                matcher = pattern.matcher(sourceData.toLowerCase());
+    private void addFoundDirectory(String directorySymbol) {
+        long directoryId = parseDirectoryId(directorySymbol);
+        if (directoryId >= 0) {
+            if (foundDirectoryIds.add(directoryId)) {
+                if (pendingDirectoryCount == pendingDirectoryIds.length) {
+                    pendingDirectoryIds = Arrays.copyOf(pendingDirectoryIds, pendingDirectoryCount * 2);
+                }
+                pendingDirectoryIds[pendingDirectoryCount++] = directoryId;
             }
-            if (matcher.matches()) {
-                PropertyPage.incrementSearchedFilesCount();
-                return true;
+        } else if (foundDirectorySymbols.add(directorySymbol)) {
+            pendingDirectorySymbols.add(directorySymbol);
+        }
+    }
+
+    /*
+     * @param   directorySymbol symbol of a directory
+     * @return  id of the directory in the cache, -1 if the symbol is not of the cache
+     */
+    private long parseDirectoryId(String directorySymbol) {
+        if (symbolPrefix == null || !directorySymbol.startsWith(symbolPrefix) || directorySymbol.length() == symbolPrefix.length()
+                || directorySymbol.length() - symbolPrefix.length() > 18) {
+            return -1L;
+        }
+        long directoryId = 0L;
+        for (int i = symbolPrefix.length(); i < directorySymbol.length(); i++) {
+            char digit = directorySymbol.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1L;
             }
-        } catch (PatternSyntaxException patternSyntaxException) {
-            LOGGER.log(Level.SEVERE, "Invalid pattern", patternSyntaxException);
+            directoryId = directoryId * 10 + (digit - '0');
+        }
+        return directoryId;
+    }
+
+    /*
+     * Finds the symbol prefix of the cache, which is needed to keep the found directories by their ids
+     * Compressed files and indexes carry the prefix they are written with, extracted files use the one of the cache collection
+     */
+    private void findSymbolPrefix() {
+        if (compressedCache != null) {
+            symbolPrefix = compressedCache.getCacheIndex();
+        } else if (residentIndex != null) {
+            symbolPrefix = residentIndex.getCacheIndex();
+        } else {
+            symbolPrefix = cacheIndex;
         }
-        return false;
     }
 
     /*
-     * Writes the absolute path of the directory symbols to file
+     * Iterates through cache file to search pattern
      */
-    private void resolveSymbols() {
-        Collections.sort(directorySymbolList);  //sorting to enable binary search
-        BufferedReader symbolsReader = null;
+    private void iterateCache() {
         try {
-            symbolsReader = new BufferedReader(new FileReader((new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION))));
-            String symbolValue;
-            while ((symbolValue = symbolsReader.readLine()) != null) {
-                String key = symbolValue.substring(0, symbolValue.indexOf(PropertyPage.FILE_SEPARATOR));
-                /*
-                 * Writes rawpath for the matched directorySymbol into search result symbol file
-                 */
-                if (Collections.binarySearch(directorySymbolList, key) != -1) {
-                    symbolWriter.write(symbolValue);
-                    symbolWriter.newLine();
+            if (compressedCache == null && !(new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION).exists())) {
+                return;
+            }
+            deltaLog = new DeltaLog(String.valueOf(cacheRoot.hashCode()));
+            if (deltaLog.isEmpty()) {
+                deltaLog = null;
+            }
+            findSymbolPrefix();
+            if (isDirectoryRestricted()) {
+                matchDirectories();
+            }
+            if (residentIndex != null) {
+                iterateResidentIndex();
+            } else if (compressedCache != null) {
+                iterateCompressedCache();
+            } else {
+                ColumnarCache columnarCache = ColumnarCache.open(String.valueOf(cacheRoot.hashCode()));
+                if (columnarCache != null) {
+                    try {
+                        iterateColumnarCache(columnarCache);
+                    } finally {
+                        columnarCache.close();
+                    }
+                } else {
+                    iterateRawFile(new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION));
+                }
+            }
+            if (deltaLog != null) {
+                Iterator<String> addedRecords = deltaLog.getAddedRecords();
+                while (addedRecords.hasNext() && !PropertyPage.getCacheIteratorStopper()) {
+                    searchRawPath(addedRecords.next());
                 }
             }
-            directorySymbolList.clear();
-            symbolWriter.flush();
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
         } finally {
+            resolveSymbols();   //directories of the last batch of rows
             try {
-                symbolsReader.close();
-                symbolsReader = null;
+                resultBuffer.flush();
             } catch (IOException iOException) {
                 LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
             }
@@ -277,72 +424,424 @@ public class QuickSearch extends Thread {
     }
 
     /*
-     * Iterates through cache file to search pattern
+     * Iterates through the columns of the cache to search pattern
+     * Raw paths are built only for matched records and for records of the directories changed by the delta
+     * Only the candidates of the trigram and bitmap indexes are decoded if the indexes restrict the records
+     * Only the records under the directory of an in: term are read, they are contiguous in depth first order
+     * @param   columnarCache positioned before the first record
      */
-    private void iterateCache() {
-        BufferedReader bufferedReader = null;
+    private void iterateColumnarCache(ColumnarCache columnarCache) throws IOException {
+        long[] changedParentIds = getChangedParentIds(columnarCache.getCacheIndex());
+        int[] scopeRecords = findScopeRecords(columnarCache, columnarCache.getRecordCount());
+        int[] candidateRecords = findCandidateRecords(columnarCache.getRecordCount(), scopeRecords[0], scopeRecords[1]);
+        int candidate = 0;
+        while (candidateRecords == null ? (columnarCache.next() && columnarCache.getRecordIndex() < scopeRecords[1])
+                : (candidate < candidateRecords.length && columnarCache.moveTo(candidateRecords[candidate++]))) {
+            if (!isParentAccepted(columnarCache.getParentId())) {
+                continue;
+            }
+            if (changedParentIds.length > 0 && Arrays.binarySearch(changedParentIds, columnarCache.getParentId()) >= 0
+                    && deltaLog.isChanged(columnarCache.getRawPath())) {
+                continue;   //replaced or deleted after the scan
+            }
+            if ((recordFilter == null || recordFilter.matches(columnarCache))
+                    && findForMatch(columnarCache.getName())) {
+                writeSearchResult(columnarCache.getRawPath());
+            }
+            if (PropertyPage.getCacheIteratorStopper()) {
+                break;
+            }
+        }
+    }
+
+    /*
+     * Iterates through the index kept in memory to search pattern
+     * Names are matched in place in the names arena, raw paths are built only for matched records and for records of the directories changed by the delta
+     * Only the candidates of the trigram and bitmap indexes are matched if the indexes restrict the records
+     */
+    private void iterateResidentIndex() throws IOException {
+        long[] changedParentIds = getChangedParentIds(residentIndex.getCacheIndex());
+        CharSequence names = residentIndex.getNames();
+        int[] scopeRecords;
+        ColumnarCache columnarCache = (recordFilter != null && recordFilter.getScopePath() != null ? ColumnarCache.open(String.valueOf(cacheRoot.hashCode())) : null);
         try {
-            if (!(new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION).exists())) {
-                return;
+            scopeRecords = findScopeRecords(columnarCache, residentIndex.getRecordCount());   //subtrees are kept by the columnar cache only
+        } finally {
+            if (columnarCache != null) {
+                columnarCache.close();
+            }
+        }
+        int[] candidateRecords = findCandidateRecords(residentIndex.getRecordCount(), scopeRecords[0], scopeRecords[1]);
+        int searchedCount = (candidateRecords == null ? scopeRecords[1] - scopeRecords[0] : candidateRecords.length);
+        for (int i = 0; i < searchedCount; i++) {
+            int record = (candidateRecords == null ? scopeRecords[0] + i : candidateRecords[i]);
+            if (!isParentAccepted(residentIndex.getParentId(record))) {
+                continue;
+            }
+            if (changedParentIds.length > 0 && Arrays.binarySearch(changedParentIds, residentIndex.getParentId(record)) >= 0
+                    && deltaLog.isChanged(residentIndex.getRawPath(record))) {
+                continue;   //replaced or deleted after the scan
+            }
+            if ((recordFilter == null || recordFilter.matches(residentIndex, record))
+                    && queryMatcher.matches(names, residentIndex.getNameStart(record), residentIndex.getNameEnd(record))) {
+                writeSearchResult(residentIndex.getRawPath(record));
+            }
+            if (PropertyPage.getCacheIteratorStopper()) {
+                break;
             }
-            bufferedReader = new BufferedReader(new FileReader((new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION))));
-            while (bufferedReader.ready()) {
-                //reads cache formatted raw path
-                String rawPath = bufferedReader.readLine();
-                String fileName = getFileName(rawPath);
-                if (rawPath == null || fileName == null) {
+        }
+    }
+
+    /*
+     * Looks up the literals of the query in the trigram index and the filter of the query in the bitmap index of the cache
+     * Bitmap selections of more than a quarter of the searched records are not used alone, reading every record in order is faster then
+     * @param   recordCount->number of records of the columnar cache being searched
+     *          firstRecord->first searched record      endRecord->index after the last searched record
+     * @return  ascending ids of the searched records which may match, or null if every searched record must be matched
+     */
+    private int[] findCandidateRecords(int recordCount, int firstRecord, int endRecord) {
+        int[] candidateRecords = null;
+        String[] literals = queryMatcher.getRequiredLiterals();
+        if (literals != null) {
+            TrigramIndex trigramIndex = TrigramIndex.open(String.valueOf(cacheRoot.hashCode()));
+            if (trigramIndex != null && trigramIndex.getRecordCount() == recordCount) {
+                candidateRecords = trigramIndex.findCandidates(literals);
+            }
+        }
+        if (candidateRecords != null && (firstRecord > 0 || endRecord < recordCount)) {
+            int rangeStart = Arrays.binarySearch(candidateRecords, firstRecord);
+            int rangeEnd = Arrays.binarySearch(candidateRecords, endRecord);
+            candidateRecords = Arrays.copyOfRange(candidateRecords, (rangeStart < 0 ? -rangeStart - 1 : rangeStart), (rangeEnd < 0 ? -rangeEnd - 1 : rangeEnd));
+        }
+        if (recordFilter == null) {
+            return candidateRecords;
+        }
+        BitmapIndex bitmapIndex = BitmapIndex.open(String.valueOf(cacheRoot.hashCode()));
+        if (bitmapIndex == null || bitmapIndex.getRecordCount() != recordCount) {
+            return candidateRecords;
+        }
+        long[] selectedRecords = recordFilter.selectRecords(bitmapIndex);
+        if (selectedRecords == null) {
+            return candidateRecords;
+        }
+        if (candidateRecords != null) {
+            int count = 0;
+            for (int candidateRecord : candidateRecords) {
+                if ((selectedRecords[candidateRecord >>> 6] & (1L << candidateRecord)) != 0) {
+                    candidateRecords[count++] = candidateRecord;
+                }
+            }
+            return Arrays.copyOf(candidateRecords, count);
+        }
+        int selectedCount = 0;
+        for (int wordIndex = firstRecord >>> 6; wordIndex < selectedRecords.length && (wordIndex << 6) < endRecord; wordIndex++) {
+            selectedCount += Long.bitCount(selectedRecords[wordIndex]);
+        }
+        if (selectedCount > (endRecord - firstRecord) / 4) {
+            return null;
+        }
+        candidateRecords = new int[selectedCount];
+        int count = 0;
+        for (int wordIndex = firstRecord >>> 6; wordIndex < selectedRecords.length && (wordIndex << 6) < endRecord; wordIndex++) {
+            for (long word = selectedRecords[wordIndex]; word != 0; word &= word - 1) {
+                int record = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                if (record >= endRecord) {
+                    break;  //past the searched records, or bits of negated bitmaps past the last record
+                }
+                if (record >= firstRecord) {
+                    candidateRecords[count++] = record;
+                }
+            }
+        }
+        return Arrays.copyOf(candidateRecords, count);
+    }
+
+    /*
+     * Reads the symbol file once to find the directories the query restricts the records to
+     * Directory ids are given in depth first order, so the directory of an in: term is followed by the directories under it with consecutive ids
+     * The directory part of a path query is matched once per directory, records are then checked by the id of their parent
+     */
+    private void matchDirectories() throws IOException {
+        String scopePath = recordFilter.getScopePath();
+        QueryMatcher directoryMatcher = recordFilter.getDirectoryMatcher();
+        if (scopePath != null) {
+            scopeDirectoryIds = new long[]{0L, -1L};    //nothing of the cache is under the directory unless it is found
+        }
+        if (directoryMatcher != null) {
+            matchedDirectoryIds = new long[64];
+            matchedDeltaSymbols = new HashSet<String>();
+        }
+        BufferedReader symbolsReader = new BufferedReader(new FileReader(new File(PropertyPage.getCacheDirectory() + cacheRoot.hashCode() + PropertyPage.SYMBOLS_FILE_EXTENSION)));
+        try {
+            String symbolValue;
+            boolean isScopeFound = false;
+            boolean isScopeEnded = (scopePath == null);
+            while ((symbolValue = symbolsReader.readLine()) != null && !(isScopeEnded && directoryMatcher == null)) {
+                int separatorIndex = symbolValue.indexOf(PropertyPage.FILE_SEPARATOR);
+                if (separatorIndex <= 0) {
                     continue;
                 }
-                if (findForMatch(fileName)) {
-                    isItemFound = true;
-                    search.sendProgress();  //Updates progress to user
-                    rawDataWriter.writeToFile(rawPath);     //writes rawpath to search result raw file
-                    directorySymbolList.add(rawPath.substring(0, rawPath.indexOf(PropertyPage.FILE_SEPARATOR)));
-                    if (PropertyPage.isFirstPush()) {
-                        if (PropertyPage.getSearchedFilesCount() > PropertyPage.getSearchResultLimit()) {
-                            removeDuplicates();     // removes duplicate symbols
-                            resolveSymbols();       // writes absolute path of the symbols to file
-                            rawDataWriter.flushRawDataWriter();
-                            symbolWriter.flush();
+                long directoryId = parseDirectoryId(symbolValue.substring(0, separatorIndex));
+                if (directoryId < 0) {
+                    continue;   //not a symbol of this cache
+                }
+                String directoryPath = symbolValue.substring(separatorIndex + 1);
+                if (!isScopeEnded) {
+                    boolean isInScope = directoryPath.equals(scopePath) || Utility.isInDirectory(directoryPath, scopePath);
+                    if (isInScope) {
+                        if (!isScopeFound) {
+                            scopeDirectoryIds[0] = directoryId;
                         }
+                        scopeDirectoryIds[1] = directoryId;
+                        isScopeFound = true;
+                    } else {
+                        isScopeEnded = isScopeFound;    //end of the directories under the scope
                     }
                 }
-                if ((directorySymbolList.size() % 5000) == 0) {
-                    removeDuplicates();
+                if (directoryMatcher != null && findForDirectoryMatch(directoryMatcher, directoryPath)) {
+                    if ((directoryId >>> 6) >= matchedDirectoryIds.length) {
+                        matchedDirectoryIds = Arrays.copyOf(matchedDirectoryIds, Math.max(matchedDirectoryIds.length * 2, (int) (directoryId >>> 6) + 1));
+                    }
+                    matchedDirectoryIds[(int) (directoryId >>> 6)] |= 1L << directoryId;
+                }
+            }
+        } catch (NumberFormatException numberFormatException) {
+            LOGGER.log(Level.SEVERE, "Invalid directory symbol", numberFormatException);
+        } finally {
+            symbolsReader.close();
+        }
+        if (directoryMatcher != null && deltaLog != null) {
+            for (Map.Entry<String, String> directorySymbol : deltaLog.getDirectorySymbols().entrySet()) {
+                if (findForDirectoryMatch(directoryMatcher, directorySymbol.getValue())) {
+                    matchedDeltaSymbols.add(directorySymbol.getKey());
+                }
+            }
+        }
+    }
+
+    /*
+     * Matches the directory part of a path query, the separators of the path are matched by '/'
+     * @param   directoryMatcher->compiled directory part   directoryPath->absolute path of the directory
+     * @return  true if the directory matches
+     */
+    private boolean findForDirectoryMatch(QueryMatcher directoryMatcher, String directoryPath) {
+        if (PropertyPage.FILE_SEPARATOR.charAt(0) != '/') {
+            directoryPath = directoryPath.replace(PropertyPage.FILE_SEPARATOR.charAt(0), '/');
+        }
+        return directoryMatcher.matches(directoryPath, 0, directoryPath.length());
+    }
+
+    /*
+     * Finds the records under the directory of the in: term from the subtree ranges of the columnar cache
+     * @param   columnarCache->columnar cache of the cache, moved before the first of the records, or null     recordCount->number of records
+     * @return  first record and index after the last record to be searched
+     */
+    private int[] findScopeRecords(ColumnarCache columnarCache, int recordCount) {
+        if (scopeDirectoryIds == null) {
+            return new int[]{0, recordCount};
+        }
+        if (scopeDirectoryIds[1] < scopeDirectoryIds[0]) {
+            return new int[]{0, 0};
+        }
+        if (columnarCache == null || columnarCache.getRecordCount() != recordCount || !columnarCache.moveToSubtree(scopeDirectoryIds[0])) {
+            return new int[]{0, recordCount};  //every record is checked by isInScope
+        }
+        return new int[]{columnarCache.getRecordIndex() + 1, columnarCache.getSubtreeEnd(scopeDirectoryIds[0])};
+    }
+
+    /*
+     * @param   parentId id of the parent directory of a scanned record
+     * @return  true if the record is under the directory of the in: term and its directory matches the path query
+     */
+    private boolean isParentAccepted(long parentId) {
+        if (scopeDirectoryIds != null && (parentId < scopeDirectoryIds[0] || parentId > scopeDirectoryIds[1])) {
+            return false;
+        }
+        return (matchedDirectoryIds == null || ((parentId >>> 6) < matchedDirectoryIds.length && (matchedDirectoryIds[(int) (parentId >>> 6)] & (1L << parentId)) != 0));
+    }
+
+    /*
+     * Checks a raw record against the terms of the query and the directories the query restricts the records to
+     * @param   rawPath cache formatted path
+     * @return  true if the record holds the terms
+     */
+    private boolean matchesTerms(String rawPath) {
+        if (recordFilter == null) {
+            return true;
+        }
+        if (!recordFilter.matchesRawPath(rawPath)) {
+            return false;
+        }
+        if (scopeDirectoryIds == null && matchedDirectoryIds == null) {
+            return true;
+        }
+        if (symbolPrefix == null) {
+            return false;
+        }
+        String parentSymbol = rawPath.substring(0, rawPath.indexOf(PropertyPage.FILE_SEPARATOR));
+        String parentPath = (deltaLog == null ? null : deltaLog.getDirectoryPath(parentSymbol));
+        if (parentPath != null) {   //created after the scan
+            String scopePath = recordFilter.getScopePath();
+            return ((scopePath == null || parentPath.equals(scopePath) || Utility.isInDirectory(parentPath, scopePath))
+                    && (matchedDeltaSymbols == null || matchedDeltaSymbols.contains(parentSymbol)));
+        }
+        long parentId = parseDirectoryId(parentSymbol);
+        return (parentId >= 0 && isParentAccepted(parentId));
+    }
+
+    /*
+     * Iterates through the raw file to search pattern
+     * The file is split into segments of whole lines which are searched by fork/join tasks, their matches are written in the order of the file
+     * @param   rawFile raw file of the cache
+     */
+    private void iterateRawFile(File rawFile) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(rawFile, "r");
+        FileChannel rawFileChannel = randomAccessFile.getChannel();
+        long rawFileLength = rawFileChannel.size();
+        LinkedList<Future<ArrayList<String>>> pendingSegments = new LinkedList<Future<ArrayList<String>>>();
+        try {
+            long segmentStart = 0;
+            while ((segmentStart < rawFileLength || !pendingSegments.isEmpty()) && !PropertyPage.getCacheIteratorStopper()) {
+                while (segmentStart < rawFileLength && pendingSegments.size() < READ_AHEAD_BLOCKS) {
+                    long segmentEnd = RawChunkSearch.findLineStart(rawFileChannel, Math.min(segmentStart + RAW_SEGMENT_SIZE, rawFileLength), rawFileLength);
+                    pendingSegments.add(RawChunkSearch.getChunkSearchPool().submit(new RawChunkSearch(rawFileChannel, segmentStart, segmentEnd, queryMatcher, deltaLog)));
+                    segmentStart = segmentEnd;
+                }
+                for (String rawPath : pendingSegments.removeFirst().get()) {
+                    if (matchesTerms(rawPath)) {
+                        writeSearchResult(rawPath);
+                    }
                 }
-                if (directorySymbolList.size() > 9999) {
-                    resolveSymbols();
+            }
+        } catch (InterruptedException interruptedException) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedException);
+        } catch (ExecutionException executionException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", executionException.getCause());
+        } finally {
+            for (Future<ArrayList<String>> pendingSegment : pendingSegments) {
+                pendingSegment.cancel(false);
+            }
+            randomAccessFile.close();
+        }
+    }
+
+    /*
+     * Iterates through the blocks of the compressed raw file to search pattern
+     * Blocks are decompressed and matched in parallel, their matches are written in the order of the blocks
+     */
+    private void iterateCompressedCache() throws IOException {
+        String rawEntryName = cacheRoot.hashCode() + PropertyPage.RAW_FILE_EXTENSION;
+        int blockCount = compressedCache.getBlockCount(rawEntryName);
+        LinkedList<Future<ArrayList<String>>> pendingBlocks = new LinkedList<Future<ArrayList<String>>>();
+        try {
+            for (int block = 0; (block < blockCount || !pendingBlocks.isEmpty()) && !PropertyPage.getCacheIteratorStopper();) {
+                while (block < blockCount && pendingBlocks.size() < READ_AHEAD_BLOCKS) {
+                    pendingBlocks.add(CompressedCache.getBlockPool().submit(createBlockSearch(rawEntryName, block++)));
                 }
-                if (PropertyPage.getCacheIteratorStopper()) {
-                    break;
+                for (String rawPath : pendingBlocks.removeFirst().get()) {
+                    if (matchesTerms(rawPath)) {
+                        writeSearchResult(rawPath);
+                    }
                 }
             }
-            removeDuplicates();
-            resolveSymbols();
-        } catch (IOException iOException) {
-            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } catch (InterruptedException interruptedException) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedException);
+        } catch (ExecutionException executionException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", executionException.getCause());
         } finally {
-            try {
-                if (bufferedReader != null) {
-                    bufferedReader.close();
+            for (Future<ArrayList<String>> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(false);
+            }
+        }
+    }
+
+    /*
+     * Creates the search of one block of the compressed raw file, which runs on the block pool
+     * Each block search matches with its own matcher, restricted to the name of each line
+     * @param   entryName->name of the raw file in the compressed file    block->index of the block
+     * @return  search returning the matched raw paths of the block in order
+     */
+    private Callable<ArrayList<String>> createBlockSearch(final String entryName, final int block) {
+        return new Callable<ArrayList<String>>() {
+
+            @Override
+            public ArrayList<String> call() throws IOException {
+                ArrayList<String> matchedRawPaths = new ArrayList<String>();
+                String rawPaths = new String(compressedCache.readBlock(entryName, block));    //raw file is written in the default charset
+                RawChunkSearch.searchLines(rawPaths, queryMatcher.duplicate(), deltaLog, matchedRawPaths);
+                return matchedRawPaths;
+            }
+        };
+    }
+
+    /*
+     * Finds the ids of the directories whose records are changed by the delta
+     * @param   cacheIndex symbol prefix of the cache
+     * @return  sorted directory ids, empty if there is no delta
+     */
+    private long[] getChangedParentIds(String cacheIndex) {
+        if (deltaLog == null) {
+            return new long[0];
+        }
+        HashSet<String> changedParentSymbols = deltaLog.getChangedParentSymbols();
+        long[] changedParentIds = new long[changedParentSymbols.size()];
+        int count = 0;
+        for (String changedParentSymbol : changedParentSymbols) {
+            if (changedParentSymbol.startsWith(cacheIndex)) {
+                try {
+                    changedParentIds[count] = Long.parseLong(changedParentSymbol.substring(cacheIndex.length()));
+                    count++;
+                } catch (NumberFormatException numberFormatException) {
+                    LOGGER.log(Level.SEVERE, "Invalid directory symbol", numberFormatException);
                 }
-                symbolWriter.flush();
-                symbolWriter.close();
-            } catch (IOException iOException) {
-                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
             }
         }
+        changedParentIds = Arrays.copyOf(changedParentIds, count);
+        Arrays.sort(changedParentIds);
+        return changedParentIds;
     }
 
     /*
-     * Removes all the duplicate symbols using HashSet
-     * Removing duplicate symbols reduces the resolveSymbols() processing time
+     * Matches the file name of the raw path and writes it to the search result
+     * @param   rawPath cache formatted path
+     */
+    private void searchRawPath(String rawPath) throws IOException {
+        String fileName = getFileName(rawPath);
+        if (fileName == null) {
+            return;
+        }
+        if (findForMatch(fileName) && matchesTerms(rawPath)) {
+            writeSearchResult(rawPath);
+        }
+    }
+
+    /*
+     * Writes the matched raw path to the search result
+     * @param   rawPath cache formatted path
      */
-    private void removeDuplicates() {
-        directorySymbolListHashSet.addAll(directorySymbolList);
-        directorySymbolList.clear();
-        directorySymbolList.addAll(directorySymbolListHashSet);   //removing duplicates
-        directorySymbolListHashSet.clear();
+    private synchronized void writeSearchResult(String rawPath) throws IOException {
+        search.sendProgress();  //Updates progress to user
+        resultBuffer.writeRawPath(rawPath);     //writes rawpath to search result raw file or to the buffer of the cache
+        addFoundDirectory(rawPath.substring(0, rawPath.indexOf(PropertyPage.FILE_SEPARATOR)));
+        if (resultBuffer.isStreaming()) {
+            ++unstreamedRowCount;
+            long currentTime = System.currentTimeMillis();
+            if (unstreamedRowCount >= STREAMED_ROWS_BATCH || currentTime - lastStreamTime >= STREAM_INTERVAL) {
+                resolveSymbols();       // rows of the first page are streamed in batches once their directory is written
+                resultBuffer.flush();
+                unstreamedRowCount = 0;
+                lastStreamTime = currentTime;
+            }
+        }
+        if (PropertyPage.isFirstPush() && resultBuffer.isPublished()) {
+            if (PropertyPage.getSearchedFilesCount() > PropertyPage.getSearchResultLimit()) {
+                resolveSymbols();       // writes absolute path of the symbols to file
+                resultBuffer.flush();
+            }
+        }
+        if (pendingDirectoryCount + pendingDirectorySymbols.size() > 9999) {
+            resolveSymbols();
+        }
     }
 
     /*
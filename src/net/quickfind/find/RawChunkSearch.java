@@ -0,0 +1,223 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.find;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import net.quickfind.cache.DeltaLog;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * RawChunkSearch.java
+ * Searches a range of whole lines of a raw file, ranges larger than a chunk are split at a line end and searched in parallel
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+@SuppressWarnings("serial")
+class RawChunkSearch extends RecursiveTask<ArrayList<String>> {
+
+    /*
+     * Bytes of a range which is searched without splitting it further
+     */
+    private static final int CHUNK_SIZE = 512 * 1024;
+    /*
+     * Bytes read at a time while looking for a line end
+     */
+    private static final int LINE_END_BUFFER_SIZE = 4 * 1024;
+    /*
+     * Pool searching the chunks, created on first use
+     */
+    private static ForkJoinPool chunkSearchPool;
+    /*
+     * Opened raw file, read with positional reads only
+     */
+    private final FileChannel rawFileChannel;
+    /*
+     * Start of the range at a line start, end of the range after a line end or at the end of the file
+     */
+    private final long rangeStart;
+    private final long rangeEnd;
+    /*
+     * Matcher of the compiled search pattern, duplicated for every chunk
+     */
+    private final QueryMatcher queryMatcher;
+    /*
+     * Changes of the cache found by the cache watcher after the scan, null if there are none
+     */
+    private final DeltaLog deltaLog;
+
+    /*
+     * Constructs the RawChunkSearch of a range of the raw file
+     * @param   aRawFileChannel->opened raw file    aRangeStart->start of the range     aRangeEnd->end of the range
+     *          aQueryMatcher->compiled search pattern   aDeltaLog->changes of the cache or null
+     */
+    RawChunkSearch(FileChannel aRawFileChannel, long aRangeStart, long aRangeEnd, QueryMatcher aQueryMatcher, DeltaLog aDeltaLog) {
+        rawFileChannel = aRawFileChannel;
+        rangeStart = aRangeStart;
+        rangeEnd = aRangeEnd;
+        queryMatcher = aQueryMatcher;
+        deltaLog = aDeltaLog;
+    }
+
+    /*
+     * @return  pool searching the chunks of the raw files
+     */
+    static synchronized ForkJoinPool getChunkSearchPool() {
+        if (chunkSearchPool == null) {
+            chunkSearchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return chunkSearchPool;
+    }
+
+    /*
+     * Searches the range, the matches of the first half precede the ones of the second half
+     * @return  matched raw paths of the range in file order
+     */
+    @Override
+    protected ArrayList<String> compute() {
+        try {
+            if (rangeEnd - rangeStart > CHUNK_SIZE) {
+                long rangeMiddle = findLineStart(rawFileChannel, rangeStart + (rangeEnd - rangeStart) / 2, rangeEnd);
+                if (rangeMiddle < rangeEnd) {
+                    RawChunkSearch firstHalf = new RawChunkSearch(rawFileChannel, rangeStart, rangeMiddle, queryMatcher, deltaLog);
+                    firstHalf.fork();
+                    ArrayList<String> secondHalfMatches = new RawChunkSearch(rawFileChannel, rangeMiddle, rangeEnd, queryMatcher, deltaLog).invoke();
+                    ArrayList<String> matchedRawPaths = firstHalf.join();
+                    matchedRawPaths.addAll(secondHalfMatches);
+                    return matchedRawPaths;
+                }
+            }
+            return searchChunk();
+        } catch (IOException iOException) {
+            completeExceptionally(iOException);
+            return null;
+        }
+    }
+
+    /*
+     * Reads the range at once and matches the name of each line
+     * @return  matched raw paths of the range in file order
+     */
+    private ArrayList<String> searchChunk() throws IOException {
+        ArrayList<String> matchedRawPaths = new ArrayList<String>();
+        if (PropertyPage.getCacheIteratorStopper()) {
+            return matchedRawPaths;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate((int) (rangeEnd - rangeStart));
+        while (chunk.hasRemaining()) {
+            if (rawFileChannel.read(chunk, rangeStart + chunk.position()) < 0) {
+                break;  //raw file truncated meanwhile
+            }
+        }
+        searchLines(new String(chunk.array(), 0, chunk.position()), queryMatcher.duplicate(), deltaLog, matchedRawPaths);  //raw file is written in the default charset
+        return matchedRawPaths;
+    }
+
+    /*
+     * Matches the name of each line, lines replaced or deleted after the scan are skipped
+     * @param   rawPaths->whole lines of raw paths  lineMatcher->matcher owned by the caller
+     *          aDeltaLog->changes of the cache or null     matchedRawPaths->receives the matched raw paths in order
+     */
+    static void searchLines(String rawPaths, QueryMatcher lineMatcher, DeltaLog aDeltaLog, ArrayList<String> matchedRawPaths) {
+        for (int lineStart = 0; lineStart < rawPaths.length();) {
+            int lineEnd = getLineEnd(rawPaths, lineStart);
+            int nameStart = rawPaths.indexOf(PropertyPage.FILE_SEPARATOR, lineStart) + 1;
+            int nameEnd = rawPaths.indexOf(PropertyPage.FILE_SEPARATOR, nameStart);
+            if (nameStart > lineStart && nameEnd >= nameStart && nameEnd < lineEnd
+                    && lineMatcher.matches(rawPaths, nameStart, nameEnd)) {
+                String rawPath = rawPaths.substring(lineStart, lineEnd);
+                if (aDeltaLog == null || !aDeltaLog.isChanged(rawPath)) {
+                    matchedRawPaths.add(rawPath);
+                }
+            }
+            lineStart = getNextLineStart(rawPaths, lineEnd);
+        }
+    }
+
+    /*
+     * Finds the start of the first line beginning at or after a position
+     * @param   fileChannel->opened raw file    position->position within a line    limit->end of the search
+     * @return  position after the next line end, limit if there is none before it
+     */
+    static long findLineStart(FileChannel fileChannel, long position, long limit) throws IOException {
+        if (position <= 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(LINE_END_BUFFER_SIZE);
+        position--;     //a range starting right after a line end is already aligned
+        while (position < limit) {
+            buffer.clear();
+            int readCount = fileChannel.read(buffer, position);
+            if (readCount <= 0) {
+                break;
+            }
+            for (int i = 0; i < readCount; i++) {
+                if (buffer.get(i) == '\n') {
+                    return Math.min(position + i + 1, limit);
+                }
+            }
+            position += readCount;
+        }
+        return limit;
+    }
+
+    /*
+     * @param   lines->whole lines  lineStart->start of a line
+     * @return  end of the line without its line separator
+     */
+    static int getLineEnd(String lines, int lineStart) {
+        int lineEnd = lines.indexOf('\n', lineStart);
+        if (lineEnd < 0) {
+            lineEnd = lines.length();
+        }
+        if (lineEnd > lineStart && lines.charAt(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        return lineEnd;
+    }
+
+    /*
+     * @param   lines->whole lines  lineEnd->end of a line without its line separator
+     * @return  start of the next line
+     */
+    static int getNextLineStart(String lines, int lineEnd) {
+        if (lineEnd < lines.length() && lines.charAt(lineEnd) == '\r') {
+            lineEnd++;
+        }
+        return lineEnd + 1;
+    }
+}
@@ -53,15 +53,15 @@ public class RawDataWriter {
      */
     private BufferedWriter rawDataBufferedWriter = null;
     /*
-     * Index writter for rawdata file
+     * Pages of the search result, the offset of each page is kept as its raw paths are written
      */
-    private BufferedWriter rawFileIndexWriter = null;
+    private final SearchResultSet searchResultSet;
     /*
      * Lines counter
      */
     private long totalLinesWrote;
     /*
-     * File object to find file length which is used by index writter
+     * File object to find file length which is the offset of the next page
      */
     private File lengthFinder;
     /*
@@ -74,12 +74,12 @@ public class RawDataWriter {
      */
     public RawDataWriter() {
         totalLinesWrote = 0L;
+        searchResultSet = new SearchResultSet(PropertyPage.getSearchResultLimit());
         try {
             Utility.cacheCleaner(PropertyPage.SEARCH_RAW_FILE, 3);
             Utility.cacheCleaner(PropertyPage.SEARCH_RAW_FILE_INDEX, 3);
             Utility.cacheCleaner(PropertyPage.SEARCH_SYMBOL_FILE, 3);
             rawDataBufferedWriter = new BufferedWriter(new FileWriter(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE + PropertyPage.RAW_FILE_EXTENSION));
-            rawFileIndexWriter = new BufferedWriter(new FileWriter((new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE_INDEX + PropertyPage.INDEX_FILE_EXTENSION))));
             lengthFinder = new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE + PropertyPage.RAW_FILE_EXTENSION);
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
@@ -88,7 +88,7 @@ public class RawDataWriter {
 
     /*
      * Writes raw data into file
-     * Writes file index for totalLinesWrote in multiple of SEARCH_RESULT_SET_LIMIT
+     * Keeps the offset of the next page for totalLinesWrote in multiple of SEARCH_RESULT_SET_LIMIT
      * @param   rawData
      */
     protected void writeToFile(String rawData) {
@@ -99,8 +99,7 @@ public class RawDataWriter {
                 ++totalLinesWrote;
                 if ((totalLinesWrote % PropertyPage.getSearchResultLimit()) == 0) {
                     flushRawDataWriter();
-                    rawFileIndexWriter.write(totalLinesWrote + "=" + lengthFinder.length());
-                    rawFileIndexWriter.newLine();
+                    searchResultSet.addPageOffset(lengthFinder.length());
                 }
             } catch (IOException iOException) {
                 LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
@@ -124,16 +123,21 @@ public class RawDataWriter {
         }
     }
 
+    /*
+     * @return  pages of the search result
+     */
+    protected SearchResultSet getSearchResultSet() {
+        return searchResultSet;
+    }
+
     /*
      * Closes write buffers
      */
     protected void closeRawDataWriter() {
         try {
-            if (rawDataBufferedWriter != null && rawFileIndexWriter != null) {
+            if (rawDataBufferedWriter != null) {
                 rawDataBufferedWriter.flush();
                 rawDataBufferedWriter.close();
-                rawFileIndexWriter.flush();
-                rawFileIndexWriter.close();
             }
         } catch (IOException iOException) {
             LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
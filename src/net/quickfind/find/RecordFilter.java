@@ -0,0 +1,837 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.find;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.regex.PatternSyntaxException;
+import net.quickfind.cache.BitmapIndex;
+import net.quickfind.cache.ColumnarCache;
+import net.quickfind.cache.ResidentIndex;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * RecordFilter.java
+ * Structured terms of a query, compiled into a tree of predicates on the columns of the records
+ *      ext:pdf,doc             file extension is one of the list
+ *      attr:hidden,!dir        file properties read, write, exec, hidden, dir and file, '!' negates
+ *      size:>100MB             size compared with >, >=, <, <=, = or a range 1MB..1GB, units B, KB, MB, GB, TB
+ *      modified:<7d            age compared in s, m, h, d, w or y, or a date yyyy-MM-dd compared with the modified date
+ *      name:*cache*            name pattern, same as the terms without a prefix
+ *      in:/srv/data            only the records under the directory, a path with spaces is quoted
+ * A name pattern holding '/' is a path query, the part before the last '/' matches the directory path and the rest the name
+ * Terms hold, values separated by ',' hold any. Cheaper columns are checked first and the name is matched last
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+final class RecordFilter {
+
+    /*
+     * Prefixes of the terms
+     */
+    private static final String EXTENSION_TERM = "ext:";
+    private static final String ATTRIBUTE_TERM = "attr:";
+    private static final String SIZE_TERM = "size:";
+    private static final String MODIFIED_TERM = "modified:";
+    private static final String NAME_TERM = "name:";
+    private static final String SCOPE_TERM = "in:";
+    /*
+     * Names of the properties mask bits, "file" is the negation of "dir"
+     */
+    private static final String[] ATTRIBUTE_NAMES = {"read", "write", "exec", "hidden", "dir"};
+    /*
+     * Units of sizes and ages
+     */
+    private static final String SIZE_UNITS = "BKMGT";
+    private static final String AGE_UNITS = "smhdwy";
+    private static final long[] AGE_UNIT_MILLISECONDS = {1000L, 60 * 1000L, 60 * 60 * 1000L, 24 * 60 * 60 * 1000L, 7 * 24 * 60 * 60 * 1000L, 365 * 24 * 60 * 60 * 1000L};
+    /*
+     * Columns of a record, cheaper columns first
+     */
+    private static final int ATTRIBUTES_COLUMN = 0;
+    private static final int SIZE_COLUMN = 1;
+    private static final int DATE_COLUMN = 2;
+    private static final int NAME_COLUMN = 3;
+    /*
+     * All the terms, null if the query has none
+     */
+    private final Predicate predicate;
+    /*
+     * Query without the terms
+     */
+    private final String namePattern;
+    /*
+     * Absolute path of the directory the search is restricted to, null if not restricted
+     */
+    private final String scopePath;
+    /*
+     * Matcher of the directory part of a path query, null if the query is not a path
+     */
+    private final QueryMatcher directoryMatcher;
+    /*
+     * Records handed to the predicates, reused for every record
+     */
+    private final ColumnarRecord columnarRecord = new ColumnarRecord();
+    private final ResidentRecord residentRecord = new ResidentRecord();
+    private final RawRecord rawRecord = new RawRecord();
+
+    /*
+     * Constructs the RecordFilter with its predicates
+     * @param   aPredicate->predicate of the terms or null    aNamePattern->query without the terms
+     *          aScopePath->directory the search is restricted to or null     aDirectoryMatcher->matcher of the directory part of a path query or null
+     */
+    private RecordFilter(Predicate aPredicate, String aNamePattern, String aScopePath, QueryMatcher aDirectoryMatcher) {
+        predicate = aPredicate;
+        namePattern = aNamePattern;
+        scopePath = aScopePath;
+        directoryMatcher = aDirectoryMatcher;
+    }
+
+    /*
+     * Creates a filter of the same query for another thread, the records and matchers of a filter are reused
+     * @return  copy of the filter
+     */
+    RecordFilter duplicate() {
+        return new RecordFilter(predicate, namePattern, scopePath, (directoryMatcher == null ? null : directoryMatcher.duplicate()));
+    }
+
+    /*
+     * Separates the structured terms from the query and compiles them
+     * A quoted query is a regular expression and has no terms
+     * @param   searchContent query
+     * @return  filter or null if the query has no term
+     * @throws  PatternSyntaxException if the value of a term is invalid
+     */
+    static RecordFilter parse(String searchContent) throws PatternSyntaxException {
+        if (searchContent.startsWith("\"") && searchContent.endsWith("\"") && searchContent.length() > 1) {
+            return null;
+        }
+        ArrayList<Predicate> predicates = new ArrayList<Predicate>();
+        boolean hasTerms = false;
+        String scopePath = null;
+        StringBuilder namePattern = new StringBuilder(searchContent.length());
+        for (String term : splitTerms(searchContent)) {
+            String lowerCaseTerm = term.toLowerCase(Locale.ENGLISH);
+            if (lowerCaseTerm.startsWith(EXTENSION_TERM)) {
+                predicates.add(parseExtensions(lowerCaseTerm.substring(EXTENSION_TERM.length())));
+            } else if (lowerCaseTerm.startsWith(ATTRIBUTE_TERM)) {
+                predicates.add(parseAttributes(term, lowerCaseTerm.substring(ATTRIBUTE_TERM.length())));
+            } else if (lowerCaseTerm.startsWith(SIZE_TERM)) {
+                predicates.add(parseRanges(term, lowerCaseTerm.substring(SIZE_TERM.length()), SIZE_COLUMN));
+            } else if (lowerCaseTerm.startsWith(MODIFIED_TERM)) {
+                predicates.add(parseRanges(term, lowerCaseTerm.substring(MODIFIED_TERM.length()), DATE_COLUMN));
+            } else if (lowerCaseTerm.startsWith(SCOPE_TERM)) {
+                scopePath = term.substring(SCOPE_TERM.length()).replace("\"", "");
+                while (scopePath.endsWith(PropertyPage.FILE_SEPARATOR) && scopePath.length() > 1 && !scopePath.endsWith(":" + PropertyPage.FILE_SEPARATOR)) {
+                    scopePath = scopePath.substring(0, scopePath.length() - 1);
+                }
+            } else if (lowerCaseTerm.startsWith(NAME_TERM)) {
+                hasTerms = true;
+                appendNamePattern(namePattern, term.substring(NAME_TERM.length()));
+            } else {
+                appendNamePattern(namePattern, term);
+            }
+        }
+        int directoryEnd = namePattern.lastIndexOf("/");
+        if (predicates.isEmpty() && !hasTerms && scopePath == null && directoryEnd < 0) {
+            return null;
+        }
+        return new RecordFilter((predicates.isEmpty() ? null : new AllPredicate(predicates.toArray(new Predicate[predicates.size()]))),
+                namePattern.substring(directoryEnd + 1), scopePath, (directoryEnd < 0 ? null : QueryMatcher.compile(namePattern.substring(0, directoryEnd))));
+    }
+
+    /*
+     * Splits the query at white space outside double quotes
+     * @param   searchContent query
+     * @return  terms of the query
+     */
+    private static ArrayList<String> splitTerms(String searchContent) {
+        ArrayList<String> terms = new ArrayList<String>();
+        StringBuilder term = new StringBuilder();
+        boolean isQuoted = false;
+        for (int i = 0; i < searchContent.length(); i++) {
+            char character = searchContent.charAt(i);
+            if (character == '"') {
+                isQuoted = !isQuoted;
+            }
+            if (Character.isWhitespace(character) && !isQuoted) {
+                if (term.length() > 0) {
+                    terms.add(term.toString());
+                    term.setLength(0);
+                }
+            } else {
+                term.append(character);
+            }
+        }
+        if (term.length() > 0) {
+            terms.add(term.toString());
+        }
+        return terms;
+    }
+
+    /*
+     * Adds a part of the name pattern, parts are separated by a space
+     */
+    private static void appendNamePattern(StringBuilder namePattern, String part) {
+        if (part.isEmpty()) {
+            return;
+        }
+        if (namePattern.length() > 0) {
+            namePattern.append(' ');
+        }
+        namePattern.append(part);
+    }
+
+    /*
+     * @param   values lower case extensions separated by ','
+     * @return  extension predicate
+     */
+    private static Predicate parseExtensions(String values) {
+        String[] extensionValues = values.split(",", -1);
+        char[][] extensions = new char[extensionValues.length][];
+        for (int i = 0; i < extensionValues.length; i++) {
+            String extension = extensionValues[i];
+            if (extension.startsWith(PropertyPage.FILE_EXTENSION_SEPARATOR)) {
+                extension = extension.substring(1);
+            }
+            extensions[i] = extension.toCharArray();
+        }
+        return new ExtensionPredicate(extensions);
+    }
+
+    /*
+     * @param   term->whole term    values->lower case property names separated by ','
+     * @return  attribute predicate
+     */
+    private static Predicate parseAttributes(String term, String values) throws PatternSyntaxException {
+        int requiredAttributes = 0;
+        int excludedAttributes = 0;
+        for (String attribute : values.split(",")) {
+            boolean isNegated = attribute.startsWith("!");
+            String attributeName = (isNegated ? attribute.substring(1) : attribute);
+            if (attributeName.equals("file")) {
+                isNegated = !isNegated;
+                attributeName = "dir";
+            }
+            int attributeBit = 0;
+            for (int bit = 0; bit < ATTRIBUTE_NAMES.length; bit++) {
+                if (ATTRIBUTE_NAMES[bit].equals(attributeName)) {
+                    attributeBit = 1 << bit;
+                }
+            }
+            if (attributeBit == 0) {
+                throw new PatternSyntaxException("Unknown file property", term, -1);
+            }
+            if (isNegated) {
+                excludedAttributes |= attributeBit;
+            } else {
+                requiredAttributes |= attributeBit;
+            }
+        }
+        return new AttributePredicate(requiredAttributes, excludedAttributes);
+    }
+
+    /*
+     * Compiles the comparisons or ranges of a size or modified term
+     * @param   term->whole term    values->lower case comparisons separated by ','     column->SIZE_COLUMN or DATE_COLUMN
+     * @return  range predicate or any of the range predicates
+     */
+    private static Predicate parseRanges(String term, String values, int column) throws PatternSyntaxException {
+        String[] rangeValues = values.split(",");
+        Predicate[] ranges = new Predicate[rangeValues.length];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rangeValues.length; i++) {
+            String value = rangeValues[i];
+            long[] bounds;
+            int rangeIndex = value.indexOf("..");
+            if (rangeIndex >= 0) {
+                long[] lowerValue = parseValue(term, value.substring(0, rangeIndex), column, now);
+                long[] upperValue = parseValue(term, value.substring(rangeIndex + 2), column, now);
+                bounds = new long[]{Math.min(lowerValue[0], upperValue[0]), Math.max(lowerValue[1], upperValue[1])};
+            } else {
+                int operatorLength = 0;
+                while (operatorLength < value.length() && "<>=".indexOf(value.charAt(operatorLength)) >= 0) {
+                    operatorLength++;
+                }
+                String operator = value.substring(0, operatorLength);
+                long[] parsedValue = parseValue(term, value.substring(operatorLength), column, now);
+                if (column == DATE_COLUMN && isAge(value.substring(operatorLength))) {
+                    operator = operator.replace('<', '#').replace('>', '<').replace('#', '>');  //an older age is an earlier date
+                }
+                if (operator.equals("") || operator.equals("=")) {
+                    bounds = parsedValue;
+                } else if (operator.equals(">")) {
+                    bounds = new long[]{parsedValue[1] + 1, Long.MAX_VALUE};
+                } else if (operator.equals(">=")) {
+                    bounds = new long[]{parsedValue[0], Long.MAX_VALUE};
+                } else if (operator.equals("<")) {
+                    bounds = new long[]{Long.MIN_VALUE, parsedValue[0] - 1};
+                } else if (operator.equals("<=")) {
+                    bounds = new long[]{Long.MIN_VALUE, parsedValue[1]};
+                } else {
+                    throw new PatternSyntaxException("Unknown comparison", term, -1);
+                }
+            }
+            ranges[i] = new RangePredicate(column, bounds[0], bounds[1]);
+        }
+        return (ranges.length == 1 ? ranges[0] : new AnyPredicate(ranges));
+    }
+
+    /*
+     * @param   value of a modified term
+     * @return  true if the value is an age rather than a date
+     */
+    private static boolean isAge(String value) {
+        return !value.isEmpty() && AGE_UNITS.indexOf(value.charAt(value.length() - 1)) >= 0 && value.indexOf('-') < 0;
+    }
+
+    /*
+     * Converts a size, an age or a date into the values of the column it stands for
+     * A date stands for the whole day and an age for an instant
+     * @param   term->whole term    value->lower case value     column->SIZE_COLUMN or DATE_COLUMN     now->current time
+     * @return  lowest and highest value of the column
+     */
+    private static long[] parseValue(String term, String value, int column, long now) throws PatternSyntaxException {
+        try {
+            if (column == SIZE_COLUMN) {
+                String unit = value.replaceAll("^[0-9.]+", "");
+                String number = value.substring(0, value.length() - unit.length());
+                int exponent = (unit.isEmpty() ? 0 : SIZE_UNITS.indexOf(Character.toUpperCase(unit.charAt(0))));
+                if (exponent < 0 || unit.length() > 2 || (unit.length() == 2 && unit.charAt(1) != 'b')) {
+                    throw new PatternSyntaxException("Unknown size unit", term, -1);
+                }
+                long size = Math.round(Double.parseDouble(number) * Math.pow(1024, exponent));
+                return new long[]{size, size};
+            }
+            if (isAge(value)) {
+                long age = Math.round(Double.parseDouble(value.substring(0, value.length() - 1)) * AGE_UNIT_MILLISECONDS[AGE_UNITS.indexOf(value.charAt(value.length() - 1))]);
+                return new long[]{now - age, now - age};
+            }
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            dateFormat.setLenient(false);
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(dateFormat.parse(value));
+            long dayStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            return new long[]{dayStart, calendar.getTimeInMillis() - 1};
+        } catch (NumberFormatException numberFormatException) {
+            throw new PatternSyntaxException("Invalid number", term, -1);
+        } catch (ParseException parseException) {
+            throw new PatternSyntaxException("Invalid date", term, -1);
+        }
+    }
+
+    /*
+     * @return  query without the terms, matches every name if empty
+     */
+    String getNamePattern() {
+        return namePattern;
+    }
+
+    /*
+     * @return  matcher of the directory part of a path query, null if the query is not a path
+     */
+    QueryMatcher getDirectoryMatcher() {
+        return directoryMatcher;
+    }
+
+    /*
+     * @return  absolute path of the directory the search is restricted to, null if not restricted
+     */
+    String getScopePath() {
+        return scopePath;
+    }
+
+    /*
+     * Checks the current record of the columnar cache, its name is decoded only if a term needs it
+     * @param   columnarCache positioned at a record
+     * @return  true if the record holds the terms
+     */
+    boolean matches(ColumnarCache columnarCache) {
+        if (predicate == null) {
+            return true;
+        }
+        columnarRecord.columnarCache = columnarCache;
+        return predicate.matches(columnarRecord);
+    }
+
+    /*
+     * Checks a record of the index kept in memory
+     * @param   residentIndex->index of the cache   record->index of the record
+     * @return  true if the record holds the terms
+     */
+    boolean matches(ResidentIndex residentIndex, int record) {
+        if (predicate == null) {
+            return true;
+        }
+        residentRecord.residentIndex = residentIndex;
+        residentRecord.record = record;
+        return predicate.matches(residentRecord);
+    }
+
+    /*
+     * Checks a record of the raw file, its fields are parsed only if a term needs them
+     * @param   rawPath cache formatted path
+     * @return  true if the record holds the terms
+     */
+    boolean matchesRawPath(String rawPath) {
+        if (predicate == null) {
+            return true;
+        }
+        if (!rawRecord.set(rawPath)) {
+            return false;
+        }
+        return predicate.matches(rawRecord);
+    }
+
+    /*
+     * Combines the bitmaps of the cache which select the records that may hold the extension and attribute terms
+     * @param   bitmapIndex bitmap index of the cache
+     * @return  words of the selected records, null if the terms can not be looked up in the bitmaps
+     */
+    long[] selectRecords(BitmapIndex bitmapIndex) {
+        if (predicate == null) {
+            return null;
+        }
+        long[] selectedRecords = null;
+        for (Predicate term : ((AllPredicate) predicate).predicates) {
+            long[] termRecords = term.selectRecords(bitmapIndex);
+            if (termRecords == null) {
+                continue;
+            }
+            if (selectedRecords == null) {
+                selectedRecords = termRecords;
+                continue;
+            }
+            for (int word = 0; word < selectedRecords.length; word++) {
+                selectedRecords[word] &= termRecords[word];
+            }
+        }
+        return selectedRecords;
+    }
+
+    /*
+     * Columns of a record as seen by the predicates
+     */
+    private static abstract class Record {
+
+        abstract int getAttributes();
+
+        abstract long getSize();
+
+        abstract long getLastModifiedDate();
+
+        /*
+         * @return  text holding the name between getNameStart and getNameEnd
+         */
+        abstract CharSequence getNameText();
+
+        abstract int getNameStart();
+
+        abstract int getNameEnd();
+    }
+
+    /*
+     * Current record of a columnar cache
+     */
+    private static final class ColumnarRecord extends Record {
+
+        private ColumnarCache columnarCache;
+
+        @Override
+        int getAttributes() {
+            return columnarCache.getAttributes();
+        }
+
+        @Override
+        long getSize() {
+            return columnarCache.getSize();
+        }
+
+        @Override
+        long getLastModifiedDate() {
+            return columnarCache.getLastModifiedDate();
+        }
+
+        @Override
+        CharSequence getNameText() {
+            return columnarCache.getName();
+        }
+
+        @Override
+        int getNameStart() {
+            return 0;
+        }
+
+        @Override
+        int getNameEnd() {
+            return columnarCache.getName().length();
+        }
+    }
+
+    /*
+     * Record of an index kept in memory
+     */
+    private static final class ResidentRecord extends Record {
+
+        private ResidentIndex residentIndex;
+        private int record;
+
+        @Override
+        int getAttributes() {
+            return residentIndex.getAttributes(record);
+        }
+
+        @Override
+        long getSize() {
+            return residentIndex.getSize(record);
+        }
+
+        @Override
+        long getLastModifiedDate() {
+            return residentIndex.getLastModifiedDate(record);
+        }
+
+        @Override
+        CharSequence getNameText() {
+            return residentIndex.getNames();
+        }
+
+        @Override
+        int getNameStart() {
+            return residentIndex.getNameStart(record);
+        }
+
+        @Override
+        int getNameEnd() {
+            return residentIndex.getNameEnd(record);
+        }
+    }
+
+    /*
+     * Record of the raw file, fields are parsed when they are asked for
+     */
+    private static final class RawRecord extends Record {
+
+        private String rawPath;
+        private int nameIndex;
+        private int sizeIndex;
+        private int dateIndex;
+        private int maskIndex;
+
+        /*
+         * @param   aRawPath cache formatted path
+         * @return  false if the record is incomplete
+         */
+        private boolean set(String aRawPath) {
+            rawPath = aRawPath;
+            nameIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR);
+            maskIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR);
+            dateIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR, maskIndex - 1);
+            sizeIndex = rawPath.lastIndexOf(PropertyPage.FILE_SEPARATOR, dateIndex - 1);
+            return (nameIndex >= 0 && sizeIndex > nameIndex);
+        }
+
+        @Override
+        int getAttributes() {
+            try {
+                return Integer.parseInt(rawPath.substring(maskIndex + 1));
+            } catch (NumberFormatException numberFormatException) {
+                return 0;
+            }
+        }
+
+        @Override
+        long getSize() {
+            try {
+                return Utility.parseFileSize(rawPath.substring(sizeIndex + 1, dateIndex));
+            } catch (NumberFormatException numberFormatException) {
+                return -1;
+            }
+        }
+
+        @Override
+        long getLastModifiedDate() {
+            try {
+                return Long.parseLong(rawPath.substring(dateIndex + 1, maskIndex));
+            } catch (NumberFormatException numberFormatException) {
+                return -1;
+            }
+        }
+
+        @Override
+        CharSequence getNameText() {
+            return rawPath;
+        }
+
+        @Override
+        int getNameStart() {
+            return nameIndex + 1;
+        }
+
+        @Override
+        int getNameEnd() {
+            return sizeIndex;
+        }
+    }
+
+    /*
+     * Node of the predicate tree
+     */
+    private static abstract class Predicate {
+
+        /*
+         * @return  most expensive column the predicate reads
+         */
+        abstract int getColumn();
+
+        abstract boolean matches(Record record);
+
+        /*
+         * @param   bitmapIndex bitmap index of the cache
+         * @return  words of the records which may hold the predicate, null if the predicate has no bitmap
+         */
+        long[] selectRecords(BitmapIndex bitmapIndex) {
+            return null;
+        }
+    }
+
+    /*
+     * Holds if all its predicates hold, cheaper predicates are checked first
+     */
+    private static final class AllPredicate extends Predicate {
+
+        private final Predicate[] predicates;
+
+        private AllPredicate(Predicate[] aPredicates) {
+            predicates = aPredicates;
+            Arrays.sort(predicates, new Comparator<Predicate>() {
+
+                @Override
+                public int compare(Predicate predicate, Predicate otherPredicate) {
+                    return predicate.getColumn() - otherPredicate.getColumn();
+                }
+            });
+        }
+
+        @Override
+        int getColumn() {
+            return predicates[predicates.length - 1].getColumn();
+        }
+
+        @Override
+        boolean matches(Record record) {
+            for (Predicate predicate : predicates) {
+                if (!predicate.matches(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /*
+     * Holds if any of its predicates holds
+     */
+    private static final class AnyPredicate extends Predicate {
+
+        private final Predicate[] predicates;
+
+        private AnyPredicate(Predicate[] aPredicates) {
+            predicates = aPredicates;
+        }
+
+        @Override
+        int getColumn() {
+            int column = ATTRIBUTES_COLUMN;
+            for (Predicate predicate : predicates) {
+                column = Math.max(column, predicate.getColumn());
+            }
+            return column;
+        }
+
+        @Override
+        boolean matches(Record record) {
+            for (Predicate predicate : predicates) {
+                if (predicate.matches(record)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /*
+     * Holds if the record has all required and none of the excluded properties mask bits
+     */
+    private static final class AttributePredicate extends Predicate {
+
+        private final int requiredAttributes;
+        private final int excludedAttributes;
+
+        private AttributePredicate(int aRequiredAttributes, int anExcludedAttributes) {
+            requiredAttributes = aRequiredAttributes;
+            excludedAttributes = anExcludedAttributes;
+        }
+
+        @Override
+        int getColumn() {
+            return ATTRIBUTES_COLUMN;
+        }
+
+        @Override
+        boolean matches(Record record) {
+            int propertiesMask = record.getAttributes();
+            return ((propertiesMask & requiredAttributes) == requiredAttributes && (propertiesMask & excludedAttributes) == 0);
+        }
+
+        @Override
+        long[] selectRecords(BitmapIndex bitmapIndex) {
+            long[] selectedRecords = null;
+            for (int bit = 0; bit < BitmapIndex.ATTRIBUTE_BITS; bit++) {
+                int attributeBit = 1 << bit;
+                if (((requiredAttributes | excludedAttributes) & attributeBit) == 0) {
+                    continue;
+                }
+                long[] attributeRecords = bitmapIndex.getAttributeRecords(attributeBit);
+                boolean isExcluded = (excludedAttributes & attributeBit) != 0;
+                if (selectedRecords == null) {
+                    selectedRecords = new long[attributeRecords.length];
+                    Arrays.fill(selectedRecords, -1L);
+                }
+                for (int word = 0; word < selectedRecords.length; word++) {
+                    selectedRecords[word] &= (isExcluded ? ~attributeRecords[word] : attributeRecords[word]);
+                }
+            }
+            return selectedRecords;
+        }
+    }
+
+    /*
+     * Holds if the size or the modified date of the record lies in the range
+     */
+    private static final class RangePredicate extends Predicate {
+
+        private final int column;
+        private final long lowest;
+        private final long highest;
+
+        private RangePredicate(int aColumn, long aLowest, long aHighest) {
+            column = aColumn;
+            lowest = aLowest;
+            highest = aHighest;
+        }
+
+        @Override
+        int getColumn() {
+            return column;
+        }
+
+        @Override
+        boolean matches(Record record) {
+            long value = (column == SIZE_COLUMN ? record.getSize() : record.getLastModifiedDate());
+            return (value >= lowest && value <= highest);
+        }
+    }
+
+    /*
+     * Holds if the extension of the name is one of the list, "" stands for names without an extension
+     */
+    private static final class ExtensionPredicate extends Predicate {
+
+        private final char[][] extensions;
+
+        private ExtensionPredicate(char[][] anExtensions) {
+            extensions = anExtensions;
+        }
+
+        @Override
+        int getColumn() {
+            return NAME_COLUMN;
+        }
+
+        @Override
+        boolean matches(Record record) {
+            CharSequence text = record.getNameText();
+            int start = record.getNameStart();
+            int end = record.getNameEnd();
+            int extensionStart = end;
+            for (int i = end - 1; i >= start; i--) {
+                char character = text.charAt(i);
+                if (character == PropertyPage.FILE_EXTENSION_SEPARATOR.charAt(0)) {
+                    extensionStart = i + 1;
+                    break;
+                }
+                if (character == PropertyPage.FILE_SEPARATOR.charAt(0)) {
+                    break;
+                }
+            }
+            for (char[] extension : extensions) {
+                if (extension.length == end - extensionStart && regionMatches(text, extensionStart, extension)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /*
+         * Compares a region of the text with a lower case extension, ignoring case
+         */
+        private static boolean regionMatches(CharSequence text, int start, char[] extension) {
+            for (int i = 0; i < extension.length; i++) {
+                if (Character.toLowerCase(text.charAt(start + i)) != extension[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        long[] selectRecords(BitmapIndex bitmapIndex) {
+            long[] selectedRecords = bitmapIndex.getExtensionRecords(new String(extensions[0]));
+            for (int i = 1; i < extensions.length; i++) {
+                long[] extensionRecords = bitmapIndex.getExtensionRecords(new String(extensions[i]));
+                for (int word = 0; word < selectedRecords.length; word++) {
+                    selectedRecords[word] |= extensionRecords[word];
+                }
+            }
+            return selectedRecords;
+        }
+    }
+}
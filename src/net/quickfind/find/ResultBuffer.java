@@ -0,0 +1,241 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package net.quickfind.find;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * ResultBuffer.java
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+class ResultBuffer {
+
+    /*
+     * Common raw data writter
+     */
+    private final RawDataWriter rawDataWriter;
+    /*
+     * Raw paths and symbols found before the buffer is published
+     */
+    private final File bufferedRawFile;
+    private final File bufferedSymbolFile;
+    /*
+     * Raw path writter of the buffered raw file, null once the buffer is published
+     */
+    private BufferedWriter bufferedRawWriter;
+    /*
+     * Symbols writter of the buffered symbol file, of the search result symbol file once the buffer is published
+     */
+    private BufferedWriter symbolWriter;
+    /*
+     * Search streaming the rows of the first page
+     */
+    private final Search search;
+    /*
+     * Raw paths of the first page written to the search result, streamed once their directories are written
+     */
+    private final ArrayList<String> streamedRawPaths;
+    /*
+     * Map to hold directory symbol and absolute path, kept while rows of the first page are written
+     */
+    private final HashMap<String, String> streamedDirectoryPaths;
+
+    /*
+     * Constructs the ResultBuffer of one cache of the search
+     * @param   aRawDataWriter->common raw data writter     bufferIndex->position of the cache in the search
+     *          aSearch->search streaming the rows of the first page
+     */
+    ResultBuffer(RawDataWriter aRawDataWriter, int bufferIndex, Search aSearch) throws IOException {
+        rawDataWriter = aRawDataWriter;
+        search = aSearch;
+        streamedRawPaths = new ArrayList<String>();
+        streamedDirectoryPaths = new HashMap<String, String>();
+        String bufferName = PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE + PropertyPage.FILE_EXTENSION_SEPARATOR + bufferIndex;
+        bufferedRawFile = new File(bufferName + PropertyPage.RAW_FILE_EXTENSION);
+        bufferedSymbolFile = new File(bufferName + PropertyPage.SYMBOLS_FILE_EXTENSION);
+        bufferedRawWriter = new BufferedWriter(new FileWriter(bufferedRawFile));
+        symbolWriter = new BufferedWriter(new FileWriter(bufferedSymbolFile));
+    }
+
+    /*
+     * Writes the matched raw path, it is counted as a found file once it reaches the search result
+     * @param   rawPath cache formatted path
+     */
+    synchronized void writeRawPath(String rawPath) throws IOException {
+        if (bufferedRawWriter == null) {
+            PropertyPage.incrementSearchedFilesCount();
+            rawDataWriter.writeToFile(rawPath);
+            if (PropertyPage.getSearchedFilesCount() <= PropertyPage.getSearchResultLimit()) {
+                streamedRawPaths.add(rawPath);
+            }
+        } else {
+            bufferedRawWriter.write(rawPath);
+            bufferedRawWriter.newLine();
+        }
+    }
+
+    /*
+     * Writes the absolute path of a directory symbol
+     * @param   symbolValue symbol/absolutePath
+     */
+    synchronized void writeSymbol(String symbolValue) throws IOException {
+        symbolWriter.write(symbolValue);
+        symbolWriter.newLine();
+        if (isStreaming()) {
+            int separatorIndex = symbolValue.indexOf(PropertyPage.FILE_SEPARATOR);
+            if (separatorIndex > 0) {
+                streamedDirectoryPaths.put(symbolValue.substring(0, separatorIndex), symbolValue.substring(separatorIndex + 1));
+            }
+        }
+    }
+
+    /*
+     * Directories are kept while rows of the first page wait for them or may still be written
+     * A directory is written once per search, so it is kept for the later rows of the first page too
+     * @return  true if the buffer streams rows of the first page
+     */
+    synchronized boolean isStreaming() {
+        return bufferedRawWriter == null && (!streamedRawPaths.isEmpty() || PropertyPage.getSearchedFilesCount() <= PropertyPage.getSearchResultLimit());
+    }
+
+    /*
+     * Publishes the streamed rows whose directories are written, in the order of the search result
+     * A row which can not be resolved is published as null, so the rows keep their position in the search result
+     * @param   isLast true if the rows whose directory is not written are given up
+     */
+    private void streamRows(boolean isLast) {
+        ArrayList<SearchResultSet.Row> resultRows = new ArrayList<SearchResultSet.Row>();
+        int streamedCount = 0;
+        for (String rawPath : streamedRawPaths) {
+            String directoryPath = streamedDirectoryPaths.get(rawPath.substring(0, rawPath.indexOf(PropertyPage.FILE_SEPARATOR)));
+            if (directoryPath == null && !isLast) {
+                break;
+            }
+            resultRows.add(SearchResultSet.Row.parse(rawPath, directoryPath));
+            streamedCount++;
+        }
+        streamedRawPaths.subList(0, streamedCount).clear();
+        if (!resultRows.isEmpty()) {
+            search.publishRows(resultRows);
+        }
+        if (!isStreaming()) {
+            streamedDirectoryPaths.clear();
+        }
+    }
+
+    /*
+     * Flushes the raw paths and symbols written so far
+     */
+    synchronized void flush() throws IOException {
+        if (bufferedRawWriter == null) {
+            rawDataWriter.flushRawDataWriter();
+        } else {
+            bufferedRawWriter.flush();
+        }
+        symbolWriter.flush();
+        if (!streamedRawPaths.isEmpty()) {
+            streamRows(false);
+        }
+    }
+
+    /*
+     * @return  true if the raw paths are written to the search result
+     */
+    synchronized boolean isPublished() {
+        return bufferedRawWriter == null;
+    }
+
+    /*
+     * Appends the buffered raw paths and symbols to the search result, later ones are written to it directly
+     * Buffers are published one after another in the order of the caches, so the result is the one of a sequential search
+     */
+    synchronized void publish() throws IOException {
+        if (bufferedRawWriter == null) {
+            return;
+        }
+        bufferedRawWriter.close();
+        bufferedRawWriter = null;
+        symbolWriter.close();
+        symbolWriter = new BufferedWriter(new FileWriter((new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_SYMBOL_FILE + PropertyPage.SYMBOLS_FILE_EXTENSION)), true));
+        BufferedReader bufferedReader = null;
+        try {
+            bufferedReader = new BufferedReader(new FileReader(bufferedRawFile));
+            String rawPath;
+            while ((rawPath = bufferedReader.readLine()) != null) {
+                writeRawPath(rawPath);
+            }
+            bufferedReader.close();
+            bufferedReader = new BufferedReader(new FileReader(bufferedSymbolFile));
+            String symbolValue;
+            while ((symbolValue = bufferedReader.readLine()) != null) {
+                writeSymbol(symbolValue);
+            }
+            if (!streamedRawPaths.isEmpty()) {
+                streamRows(false);
+            }
+        } finally {
+            if (bufferedReader != null) {
+                bufferedReader.close();
+            }
+            bufferedRawFile.delete();
+            bufferedSymbolFile.delete();
+        }
+    }
+
+    /*
+     * Closes the writters and deletes the buffered files
+     */
+    synchronized void close() throws IOException {
+        if (!streamedRawPaths.isEmpty()) {
+            streamRows(true);   //the next cache streams after this one
+        }
+        try {
+            if (bufferedRawWriter != null) {
+                bufferedRawWriter.close();
+            }
+            symbolWriter.close();
+        } finally {
+            bufferedRawFile.delete();
+            bufferedSymbolFile.delete();
+        }
+    }
+}
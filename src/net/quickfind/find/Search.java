@@ -33,11 +33,20 @@
 
 package net.quickfind.find;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
+import java.util.regex.PatternSyntaxException;
 import java.util.logging.Logger;
 import javax.swing.SwingWorker;
 import net.quickfind.cache.Cache;
+import net.quickfind.cache.CompressedCache;
+import net.quickfind.cache.ResidentIndex;
 import net.quickfind.core.CacheElement;
 import net.quickfind.cache.CachePage;
 
@@ -45,7 +54,7 @@ import net.quickfind.cache.CachePage;
  * Search.java
  * @author  Copyright (C) 2010 Vasantkumar Mulage
  */
-public class Search extends SwingWorker<Void, Void> implements CacheElement {
+public class Search extends SwingWorker<Void, SearchResultSet.Row> implements CacheElement {
 
     /*
      * Root directories list
@@ -55,10 +64,6 @@ public class Search extends SwingWorker<Void, Void> implements CacheElement {
      * List of cache elements
      */
     private ArrayList<Cache> cachedCacheList;
-    /*
-     * Quick search object
-     */
-    private QuickSearch quickSearch;
     /*
      * Common raw data writter
      */
@@ -71,6 +76,10 @@ public class Search extends SwingWorker<Void, Void> implements CacheElement {
      * Cachepage to handle cache related data
      */
     private CachePage cachePage;
+    /*
+     * Caches searched at the same time
+     */
+    private static final int SEARCH_THREADS = Runtime.getRuntime().availableProcessors();
     /*
      * Exception logger
      */
@@ -90,20 +99,79 @@ public class Search extends SwingWorker<Void, Void> implements CacheElement {
 
     /*
      * Looks for the pattern match across the caches
+     * Caches are searched concurrently into their own result buffers, which are published in the order of the caches
      */
     @Override
     public Void doInBackground() {
+        ArrayList<String> searchedCacheNames = new ArrayList<String>();
+        ArrayList<String> searchedCacheIndexes = new ArrayList<String>();
         for (int i = 0; i < searchCacheList.size(); i++) {
             for (int j = 0; j < cachedCacheList.size(); j++) {
                 if (((Cache) cachedCacheList.get(j)).getCacheName().equals(searchCacheList.get(i).toString())) {
-                    try {
-                        quickSearch = new QuickSearch(cachePage.getIncludedCachePath(searchCacheList.get(i).toString()), rawDataWriter, this);
-                        quickSearch.findNow(searchPattern);
-                        quickSearch.join();     //Waits for quickSearch thread
-                        quickSearch = null;
-                    } catch (InterruptedException interruptedEx) {
-                        LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
+                    searchedCacheNames.add(searchCacheList.get(i).toString());
+                    searchedCacheIndexes.add(cachedCacheList.get(j).getLocalCacheIndex());
+                    cachePage.prepareRawData(searchCacheList.get(i).toString());    //extracted in the background while the other caches are searched
+                }
+            }
+        }
+        QueryMatcher queryMatcher = null;
+        RecordFilter recordFilter = null;
+        try {
+            recordFilter = RecordFilter.parse(searchPattern);
+            queryMatcher = QueryMatcher.compile(recordFilter == null ? searchPattern : recordFilter.getNamePattern());
+        } catch (PatternSyntaxException patternSyntaxException) {
+            LOGGER.log(Level.SEVERE, "Invalid pattern", patternSyntaxException);
+            searchedCacheNames.clear();
+        }
+        ArrayList<QuickSearch> quickSearches = new ArrayList<QuickSearch>(searchedCacheNames.size());
+        ArrayList<ResultBuffer> resultBuffers = new ArrayList<ResultBuffer>(searchedCacheNames.size());
+        ArrayList<Future<?>> cacheSearches = new ArrayList<Future<?>>(searchedCacheNames.size());
+        ExecutorService searchPool = null;
+        try {
+            if (!searchedCacheNames.isEmpty()) {
+                searchPool = Executors.newFixedThreadPool(Math.min(SEARCH_THREADS, searchedCacheNames.size()), new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "QuickSearch");
+                        thread.setDaemon(true);
+                        return thread;
                     }
+                });
+            }
+            for (int i = 0; i < searchedCacheNames.size(); i++) {
+                resultBuffers.add(new ResultBuffer(rawDataWriter, i, this));
+                quickSearches.add(new QuickSearch(cachePage.getIncludedCachePath(searchedCacheNames.get(i)), searchedCacheIndexes.get(i), queryMatcher.duplicate(), (recordFilter == null ? null : recordFilter.duplicate()), resultBuffers.get(i), this));
+                if (i == 0) {
+                    quickSearches.get(i).publishResults();  //the first cache writes to the search result directly
+                }
+                cacheSearches.add(searchPool.submit(createCacheSearch(searchedCacheNames.get(i), quickSearches.get(i))));
+            }
+            for (int i = 0; i < cacheSearches.size(); i++) {
+                try {
+                    cacheSearches.get(i).get();     //Waits for quickSearch
+                } catch (ExecutionException executionException) {
+                    LOGGER.log(Level.SEVERE, "Search failed", executionException.getCause());
+                }
+                resultBuffers.get(i).close();
+                if (i + 1 < cacheSearches.size()) {
+                    quickSearches.get(i + 1).publishResults();
+                }
+            }
+        } catch (InterruptedException interruptedEx) {
+            LOGGER.log(Level.SEVERE, "Current Thread interrupted", interruptedEx);
+            Thread.currentThread().interrupt();
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        } finally {
+            if (searchPool != null) {
+                searchPool.shutdown();
+            }
+            for (ResultBuffer resultBuffer : resultBuffers) {
+                try {
+                    resultBuffer.close();
+                } catch (IOException iOException) {
+                    LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
                 }
             }
         }
@@ -117,6 +185,60 @@ public class Search extends SwingWorker<Void, Void> implements CacheElement {
         return null;
     }
 
+    /*
+     * Creates the search of one cache, which runs on the search pool
+     * A cache kept in memory is searched in memory
+     * Otherwise the compressed file is searched if the cache is not extracted yet, or its extraction is awaited
+     * A search restricting the directories awaits the extraction, the directories are looked up in the symbol file
+     * @param   cacheName->encoded name of the cache   cacheSearch->quick search of the cache
+     * @return  search of the cache
+     */
+    private Runnable createCacheSearch(final String cacheName, final QuickSearch cacheSearch) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                ResidentIndex residentIndex = cachePage.getResidentIndex(cacheName);
+                if (residentIndex != null) {
+                    cacheSearch.setResidentIndex(residentIndex);    //searched in memory
+                    cacheSearch.run();
+                    return;
+                }
+                CompressedCache compressedCache = null;
+                if (!cachePage.isRawDataCurrent(cacheName) && !cacheSearch.isDirectoryRestricted()) {
+                    compressedCache = CompressedCache.open(cacheName);  //searched without waiting for the extraction
+                }
+                try {
+                    if (compressedCache == null) {
+                        cachePage.awaitRawData(cacheName);
+                    }
+                    cacheSearch.setCompressedCache(compressedCache);
+                    cacheSearch.run();
+                } finally {
+                    if (compressedCache != null) {
+                        compressedCache.close();
+                    }
+                }
+            }
+        };
+    }
+
+    /*
+     * @return  pages of the search result, filled while the search runs
+     */
+    public SearchResultSet getSearchResultSet() {
+        return rawDataWriter.getSearchResultSet();
+    }
+
+    /*
+     * Streams rows of the first page of the search result to process(), which appends them to the result table
+     * Rows published close together reach process() in one batch
+     * @param   resultRows found files in the order of the search result, null where a row can not be resolved
+     */
+    protected void publishRows(ArrayList<SearchResultSet.Row> resultRows) {
+        publish(resultRows.toArray(new SearchResultSet.Row[resultRows.size()]));
+    }
+
     /*
      * Updates progress to user
      */
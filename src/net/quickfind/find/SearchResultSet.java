@@ -0,0 +1,380 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+package net.quickfind.find;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+import net.quickfind.config.PropertyPage;
+
+/*
+ * SearchResultSet.java
+ * Pages of the search result, any page is read with one seek into the search result raw file
+ * Offsets of the pages are kept as the raw paths are written, offsets of the directory symbols are indexed
+ * as the symbol file grows, so only the directories of a page are read
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+public class SearchResultSet {
+
+    /*
+     * Bytes read from the symbol file at a time
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /*
+     * Raw paths per page
+     */
+    private final int pageSize;
+    /*
+     * Offset of the first raw path of each known page in the search result raw file
+     */
+    private long[] pageOffsets;
+    private int pageCount;
+    /*
+     * Map to hold directory symbol and the offset of its line in the search result symbol file
+     */
+    private final HashMap<String, Long> symbolOffsets;
+    /*
+     * Bytes of the search result symbol file indexed so far
+     */
+    private long indexedSymbolLength;
+
+    /*
+     * Constructs the SearchResultSet of a new search
+     * @param   aPageSize raw paths per page
+     */
+    SearchResultSet(int aPageSize) {
+        pageSize = aPageSize;
+        pageOffsets = new long[16];
+        pageCount = 1;  //the first page starts with the file
+        symbolOffsets = new HashMap<String, Long>();
+    }
+
+    /*
+     * Keeps the offset of the next page, called once the raw paths of a page are written and flushed
+     * @param   pageOffset length of the search result raw file
+     */
+    synchronized void addPageOffset(long pageOffset) {
+        if (pageCount == pageOffsets.length) {
+            pageOffsets = Arrays.copyOf(pageOffsets, pageCount * 2);
+        }
+        pageOffsets[pageCount++] = pageOffset;
+    }
+
+    /*
+     * @param   page index of the page
+     * @return  offset of the first raw path of the page, -1 if the page is not written yet
+     */
+    public synchronized long getPageOffset(int page) {
+        return (page >= 0 && page < pageCount ? pageOffsets[page] : -1L);
+    }
+
+    /*
+     * @return  raw paths per page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /*
+     * Reads the raw paths of a page and the absolute paths of their directories
+     * @param   page index of the page
+     * @return  page of the search result, empty if the page is not written yet
+     */
+    public synchronized Page readPage(int page) throws IOException {
+        ArrayList<String> rawPaths = new ArrayList<String>(pageSize);
+        long pageOffset = getPageOffset(page);
+        if (pageOffset < 0) {
+            return new Page(rawPaths, new HashMap<String, String>());
+        }
+        RandomAccessFile rawDataReader = new RandomAccessFile(new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE + PropertyPage.RAW_FILE_EXTENSION), "r");
+        try {
+            FileChannel rawFileChannel = rawDataReader.getChannel();
+            rawFileChannel.position(pageOffset);
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(Channels.newInputStream(rawFileChannel)));    //raw file is written in the default charset
+            String rawPath;
+            while (rawPaths.size() < pageSize && (rawPath = bufferedReader.readLine()) != null) {
+                rawPaths.add(rawPath);
+            }
+        } finally {
+            rawDataReader.close();
+        }
+        return new Page(rawPaths, readDirectoryPaths(rawPaths));
+    }
+
+    /*
+     * Reads the absolute paths of the directories of the raw paths at the offsets of their symbols
+     * @param   rawPaths raw paths of a page
+     * @return  map to hold directory symbol and absolute path
+     */
+    private HashMap<String, String> readDirectoryPaths(ArrayList<String> rawPaths) throws IOException {
+        HashMap<String, String> directoryPaths = new HashMap<String, String>();
+        for (String rawPath : rawPaths) {
+            int separatorIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR);
+            if (separatorIndex > 0) {
+                directoryPaths.put(rawPath.substring(0, separatorIndex), null);
+            }
+        }
+        if (directoryPaths.isEmpty()) {
+            return directoryPaths;
+        }
+        File symbolFile = new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_SYMBOL_FILE + PropertyPage.SYMBOLS_FILE_EXTENSION);
+        if (!symbolFile.exists()) {
+            return directoryPaths;
+        }
+        RandomAccessFile symbolReader = new RandomAccessFile(symbolFile, "r");
+        try {
+            FileChannel symbolFileChannel = symbolReader.getChannel();
+            if (!symbolOffsets.keySet().containsAll(directoryPaths.keySet())) {
+                indexSymbols(symbolFileChannel);
+            }
+            ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+            for (String directorySymbol : directoryPaths.keySet()) {
+                Long symbolOffset = symbolOffsets.get(directorySymbol);
+                if (symbolOffset == null) {
+                    continue;
+                }
+                String symbolValue;
+                while ((symbolValue = readLine(symbolFileChannel, symbolOffset, readBuffer)) == null && readBuffer.capacity() < indexedSymbolLength) {
+                    readBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                }
+                if (symbolValue != null) {
+                    directoryPaths.put(directorySymbol, symbolValue.substring(symbolValue.indexOf(PropertyPage.FILE_SEPARATOR) + 1));
+                }
+            }
+        } finally {
+            symbolReader.close();
+        }
+        return directoryPaths;
+    }
+
+    /*
+     * Keeps the offsets of the symbols written to the symbol file since it was indexed last, only whole lines are indexed
+     * @param   symbolFileChannel channel of the search result symbol file
+     */
+    private void indexSymbols(FileChannel symbolFileChannel) throws IOException {
+        long symbolFileLength = symbolFileChannel.size();
+        ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte separator = (byte) PropertyPage.FILE_SEPARATOR.charAt(0);
+        byte[] symbolBytes = new byte[32];
+        int symbolLength = 0;
+        boolean isSymbolRead = false;
+        long lineStart = indexedSymbolLength;
+        long bufferStart = indexedSymbolLength;
+        while (bufferStart < symbolFileLength) {
+            readBuffer.clear();
+            int readCount = symbolFileChannel.read(readBuffer, bufferStart);
+            if (readCount <= 0) {
+                break;
+            }
+            byte[] bytes = readBuffer.array();
+            for (int i = 0; i < readCount; i++) {
+                if (bytes[i] == '\n') {
+                    if (isSymbolRead && symbolLength > 0) {
+                        symbolOffsets.put(new String(symbolBytes, 0, symbolLength), lineStart);
+                    }
+                    lineStart = bufferStart + i + 1;
+                    symbolLength = 0;
+                    isSymbolRead = false;
+                } else if (!isSymbolRead) {
+                    if (bytes[i] == separator) {
+                        isSymbolRead = true;
+                    } else {
+                        if (symbolLength == symbolBytes.length) {
+                            symbolBytes = Arrays.copyOf(symbolBytes, symbolLength * 2);
+                        }
+                        symbolBytes[symbolLength++] = bytes[i];
+                    }
+                }
+            }
+            bufferStart += readCount;
+        }
+        indexedSymbolLength = lineStart;
+    }
+
+    /*
+     * Reads the line at the offset
+     * @param   symbolFileChannel->channel of the symbol file   lineStart->offset of the line   readBuffer->buffer to read the line into
+     * @return  line without its line break, null if it does not fit the buffer
+     */
+    private static String readLine(FileChannel symbolFileChannel, long lineStart, ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        int readCount = Math.max(0, symbolFileChannel.read(readBuffer, lineStart));
+        byte[] bytes = readBuffer.array();
+        for (int i = 0; i < readCount; i++) {
+            if (bytes[i] == '\n') {
+                return new String(bytes, 0, (i > 0 && bytes[i - 1] == '\r' ? i - 1 : i));    //symbol file is written in the default charset
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Raw paths of one page of the search result with the absolute paths of their directories
+     */
+    public static class Page {
+
+        /*
+         * Raw paths in the order of the search result
+         */
+        private final ArrayList<String> rawPaths;
+        /*
+         * Map to hold directory symbol and absolute path, null value denotes unresolved directory
+         */
+        private final HashMap<String, String> directoryPaths;
+
+        /*
+         * Constructs the Page with its raw paths and directories
+         */
+        private Page(ArrayList<String> aRawPaths, HashMap<String, String> aDirectoryPaths) {
+            rawPaths = aRawPaths;
+            directoryPaths = aDirectoryPaths;
+        }
+
+        /*
+         * @return  raw paths of the page
+         */
+        public ArrayList<String> getRawPaths() {
+            return rawPaths;
+        }
+
+        /*
+         * @param   directorySymbol symbol of a directory of the page
+         * @return  absolute path of the directory, null if it is not resolved
+         */
+        public String getDirectoryPath(String directorySymbol) {
+            return directoryPaths.get(directorySymbol);
+        }
+
+        /*
+         * @param   index position of the raw path in the page
+         * @return  row of the raw path, null if its directory is not resolved or it is incomplete
+         */
+        public Row getRow(int index) {
+            String rawPath = rawPaths.get(index);
+            int separatorIndex = rawPath.indexOf(PropertyPage.FILE_SEPARATOR);
+            return (separatorIndex > 0 ? Row.parse(rawPath, directoryPaths.get(rawPath.substring(0, separatorIndex))) : null);
+        }
+    }
+
+    /*
+     * Found file of the search result, a raw path joined with the absolute path of its directory
+     */
+    public static class Row {
+
+        /*
+         * Absolute path and name of the file
+         */
+        private final String filePath;
+        private final String fileName;
+        /*
+         * File size as written in the raw path, bytes or a legacy formatted size
+         */
+        private final String fileSize;
+        /*
+         * Properties mask of the file
+         */
+        private final int fileProperties;
+
+        /*
+         * Constructs the Row of a found file
+         */
+        private Row(String aFilePath, String aFileName, String aFileSize, int aFileProperties) {
+            filePath = aFilePath;
+            fileName = aFileName;
+            fileSize = aFileSize;
+            fileProperties = aFileProperties;
+        }
+
+        /*
+         * @param   rawPath->cache formatted path   directoryPath->absolute path of its directory or null
+         * @return  row of the found file, null if the directory is not resolved or the raw path is incomplete
+         */
+        static Row parse(String rawPath, String directoryPath) {
+            if (directoryPath == null) {
+                return null;
+            }
+            StringTokenizer stringTokenizer = new StringTokenizer(rawPath, PropertyPage.FILE_SEPARATOR);
+            if (stringTokenizer.countTokens() != 5) {
+                return null;
+            }
+            stringTokenizer.nextToken();
+            String fileName = stringTokenizer.nextToken();
+            String fileSize = stringTokenizer.nextToken();
+            stringTokenizer.nextToken();
+            try {
+                return new Row(directoryPath + PropertyPage.FILE_SEPARATOR + fileName, fileName, fileSize, Integer.parseInt(stringTokenizer.nextToken()));
+            } catch (NumberFormatException numberFormatException) {
+                return null;
+            }
+        }
+
+        /*
+         * @return  absolute path of the file
+         */
+        public String getFilePath() {
+            return filePath;
+        }
+
+        /*
+         * @return  name of the file
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        /*
+         * @return  file size as written in the raw path
+         */
+        public String getFileSize() {
+            return fileSize;
+        }
+
+        /*
+         * @return  properties mask of the file
+         */
+        public int getFileProperties() {
+            return fileProperties;
+        }
+    }
+}
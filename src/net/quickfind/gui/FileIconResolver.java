@@ -0,0 +1,244 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+
+package net.quickfind.gui;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.Icon;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileSystemView;
+import net.quickfind.config.PropertyPage;
+import net.quickfind.core.Utility;
+
+/*
+ * FileIconResolver.java
+ * Finds the icons of the found files away from the event dispatch thread
+ * A row is shown at once with a placeholder icon, its file is checked and its icon is looked up by a worker
+ * Icons are shared by the extension of the files, the last used extensions are kept
+ * Cells are kept by the path of their files, a row read again reuses its cell instead of looking its icon up again
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+final class FileIconResolver {
+
+    /*
+     * Workers looking up the icons, lookups on network paths mostly wait
+     */
+    private static final int RESOLVER_THREADS = 4;
+    /*
+     * Extensions whose icons are kept
+     */
+    private static final int CACHED_ICONS = 256;
+    /*
+     * Cells kept for the rows read again, a few pages of the result table
+     */
+    private static final int CACHED_CELLS = 1024;
+    /*
+     * Icon of the files which do not exist anymore
+     */
+    private final Icon deletedFileIcon;
+    /*
+     * Repaints the rows, run on the event dispatch thread
+     */
+    private final Runnable repaintTask;
+    /*
+     * Icons of the extensions, least recently used one is dropped first
+     */
+    private final Map<String, Icon> fileIconCache;
+    /*
+     * Cells of the files whose icons are resolved or queued, emptied when the rows are replaced
+     */
+    private final Map<String, IconAndText> iconAndTextCache;
+    /*
+     * Set while a repaint is waiting on the event dispatch thread, icons found meanwhile share it
+     */
+    private final AtomicBoolean isRepaintPending;
+    /*
+     * Pool of the workers, its queue is emptied when the rows are replaced
+     */
+    private final ThreadPoolExecutor resolverPool;
+
+    /*
+     * Constructs the FileIconResolver
+     * @param   aDeletedFileIcon->icon of the files which do not exist anymore     aRepaintTask->repaints the rows
+     */
+    FileIconResolver(Icon aDeletedFileIcon, Runnable aRepaintTask) {
+        deletedFileIcon = aDeletedFileIcon;
+        repaintTask = aRepaintTask;
+        fileIconCache = new LeastRecentlyUsedMap<String, Icon>(CACHED_ICONS);
+        iconAndTextCache = new LeastRecentlyUsedMap<String, IconAndText>(CACHED_CELLS);
+        isRepaintPending = new AtomicBoolean(false);
+        resolverPool = new ThreadPoolExecutor(RESOLVER_THREADS, RESOLVER_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FileIconWorker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /*
+     * Makes the Name cell of a found file, its icon is resolved in the background
+     * @param   filePath->absolute path of the file     fileName->name of the file     isDirectory->true for a directory
+     * @return  cell showing a placeholder icon until the icon is resolved, the cell made before if the file is shown again
+     */
+    IconAndText createIconAndText(final String filePath, String fileName, final boolean isDirectory) {
+        synchronized (iconAndTextCache) {
+            IconAndText iconAndText = iconAndTextCache.get(filePath);
+            if (iconAndText != null && iconAndText.getFileName().equals(fileName)) {
+                return iconAndText;
+            }
+        }
+        Icon placeholderIcon;
+        if (isDirectory) {
+            placeholderIcon = PropertyPage.directoryIcon;
+        } else {
+            placeholderIcon = getCachedIcon(Utility.getFileExtension(filePath));
+            if (placeholderIcon == null) {
+                placeholderIcon = PropertyPage.defaultFileIcon;
+            }
+        }
+        final IconAndText iconAndText = new IconAndText(placeholderIcon, fileName, filePath);
+        synchronized (iconAndTextCache) {
+            iconAndTextCache.put(filePath, iconAndText);
+        }
+        resolverPool.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                Icon icon = resolveIcon(filePath, isDirectory);
+                if (icon != iconAndText.getIcon()) {
+                    iconAndText.setIcon(icon);
+                    scheduleRepaint();
+                }
+            }
+        });
+        return iconAndText;
+    }
+
+    /*
+     * Drops the lookups not started yet and the cells made so far, their rows are not shown anymore
+     */
+    void cancelPending() {
+        resolverPool.getQueue().clear();
+        synchronized (iconAndTextCache) {
+            iconAndTextCache.clear();   //cells of dropped lookups would keep their placeholder icons
+        }
+    }
+
+    /*
+     * Finds the icon of a file, run by a worker
+     * @param   filePath->absolute path of the file     isDirectory->true for a directory
+     * @return  icon of the file, deletedFileIcon if it does not exist anymore
+     */
+    private Icon resolveIcon(String filePath, boolean isDirectory) {
+        File fileReference = new File(filePath);
+        if (!fileReference.exists()) {
+            return deletedFileIcon;
+        }
+        if (isDirectory) {
+            return PropertyPage.directoryIcon;
+        }
+        String fileext = Utility.getFileExtension(filePath);
+        Icon icon = getCachedIcon(fileext);
+        if (icon == null) {
+            icon = FileSystemView.getFileSystemView().getSystemIcon(fileReference);
+            if (icon == null) {
+                icon = PropertyPage.defaultFileIcon;
+            }
+            synchronized (fileIconCache) {
+                if (fileIconCache.containsKey(fileext)) {
+                    icon = fileIconCache.get(fileext);  //another worker was first, keep sharing one icon
+                } else {
+                    fileIconCache.put(fileext, icon);
+                }
+            }
+        }
+        return icon;
+    }
+
+    /*
+     * @param   fileext extension of a file, null if it has none
+     * @return  icon of the extension, null if it is not known yet
+     */
+    private Icon getCachedIcon(String fileext) {
+        synchronized (fileIconCache) {
+            return fileIconCache.get(fileext);
+        }
+    }
+
+    /*
+     * Repaints the rows once for all the icons resolved until the event dispatch thread gets to it
+     */
+    private void scheduleRepaint() {
+        if (isRepaintPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+
+                @Override
+                public void run() {
+                    isRepaintPending.set(false);
+                    repaintTask.run();
+                }
+            });
+        }
+    }
+
+    /*
+     * Map dropping its least recently used entry once it holds more than its capacity
+     */
+    @SuppressWarnings("serial")
+    private static final class LeastRecentlyUsedMap<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        LeastRecentlyUsedMap(int aCapacity) {
+            super(aCapacity, 0.75f, true);
+            capacity = aCapacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+
+package net.quickfind.gui;
+
+import javax.swing.Icon;
+
+/*
+ * IconAndText.java
+ * Merges Icon and Text, shown in the Name column of the result table
+ * @author  Copyright (C) 2010, 2013 Vasantkumar Mulage
+ */
+class IconAndText {
+
+    private String fileName;
+    private String filePath;
+    private volatile Icon fileIcon;
+    static final String startHtmlTag = "<html>";
+    static final String intermediateHtmlTag = "<br> <font color='#A0A0A0' >";
+    static final String endHtmlTag = "</font></html>";
+
+    public IconAndText(Icon _icon, String _fileName, String _filePath) {
+        fileIcon = _icon;
+        fileName = _fileName;
+        filePath = _filePath;
+    }
+
+    Icon getIcon() {
+        return fileIcon;
+    }
+
+    /*
+     * Replaces the placeholder icon once the icon of the file is resolved
+     */
+    void setIcon(Icon _icon) {
+        fileIcon = _icon;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    String getFilePath() {
+        return filePath;
+    }
+}
@@ -48,7 +48,9 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MenuItem;
+import java.awt.Point;
 import java.awt.PopupMenu;
+import java.awt.Rectangle;
 import java.awt.SystemTray;
 import java.awt.Toolkit;
 import java.awt.TrayIcon;
@@ -69,14 +71,10 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.StringTokenizer;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.AbstractButton;
@@ -104,7 +102,6 @@ import javax.swing.UIManager;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
-import javax.swing.filechooser.FileSystemView;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
@@ -117,10 +114,12 @@ import javax.swing.table.TableRowSorter;
 import net.quickfind.cache.Cache;
 import net.quickfind.config.PropertyPage;
 import net.quickfind.cache.CachePage;
+import net.quickfind.cache.CacheWatcher;
 import net.quickfind.cache.Scanner;
 import net.quickfind.config.Preference;
 import net.quickfind.core.Utility;
 import net.quickfind.find.Search;
+import net.quickfind.find.SearchResultSet;
 
 /*
  * QuickFind.java
@@ -148,6 +147,10 @@ public class QuickFind extends javax.swing.JFrame {
      * Index to find out currently displayed result set
      */
     private int topListIndex = 0;
+    /*
+     * Model of the result table, reading the rows of the current search as they are shown
+     */
+    private ResultTableModel resultTableModel;
     /*
      * Icon to represent deleted/inaccessible File/Directory
      */
@@ -161,21 +164,25 @@ public class QuickFind extends javax.swing.JFrame {
      */
     private CachePage cachedPages;
     /*
-     * Map to store icons and file extension as key
-     */
-    private HashMap<String, Icon> fileIconCache;
-    /*
-     * Map to store file extension and icon string as key
+     * Resolves the icons of the found files in the background
      */
-    private HashMap<String, String> fileIconStringCache;
+    private FileIconResolver fileIconResolver;
     /*
      * Caching flag
      */
     private boolean isCaching = false;
+    /*
+     * Keeps the caches fresh between scans, null while it is not running
+     */
+    private CacheWatcher cacheWatcher;
     /*
      * Default limit for displaying search resultset
      */
     private int RESULT_SET_LIMIT = PropertyPage.getSearchResultLimit();
+    /*
+     * Most paths copied at once, every copied row is read from the search result
+     */
+    private static final int COPIED_PATHS_LIMIT = 10000;
     //GUI Components Declaration
     private javax.swing.JMenu editMenu;
     private javax.swing.JMenu helpMenu;
@@ -204,6 +211,9 @@ public class QuickFind extends javax.swing.JFrame {
     private javax.swing.JButton deleteCacheButton;
     private javax.swing.JButton cacheManagerCacheButton;
     private javax.swing.JCheckBox cacheManagerDefaultCache;
+    private javax.swing.JCheckBox cacheManagerIncrementalScan;
+    private javax.swing.JCheckBox cacheManagerWatchCaches;
+    private javax.swing.JCheckBox cacheManagerTrigramIndex;
     private javax.swing.JComboBox searchComboBox;
     private javax.swing.JComboBox cacheComboBox;
     private javax.swing.JTable resultTable;
@@ -229,7 +239,7 @@ public class QuickFind extends javax.swing.JFrame {
     /*
      * Sorts table rows
      */
-    private TableRowSorter<DefaultTableModel> tableRowSorter;
+    private TableRowSorter<ResultTableModel> tableRowSorter;
     private TableRowSorter<DefaultTableModel> cacheColletiontableRowSorter;
     /*
      * Exception logger
@@ -246,8 +256,13 @@ public class QuickFind extends javax.swing.JFrame {
     public QuickFind(CachePage cachedPage) {
         isSearchDisabled = false;
         cachedPages = cachedPage;
-        fileIconCache = new HashMap<String, Icon>(100);
-        fileIconStringCache = new HashMap<String, String>(100);
+        fileIconResolver = new FileIconResolver(deletedFileIcon, new Runnable() {
+
+            @Override
+            public void run() {
+                resultTable.repaint();  //shows the icons resolved since the last repaint
+            }
+        });
         isItemFound = false;
         initComponents();
         setQuickFindTray();
@@ -515,9 +530,15 @@ public class QuickFind extends javax.swing.JFrame {
         qfTabbedPane.setCursor(new java.awt.Cursor(java.awt.Cursor.DEFAULT_CURSOR));
         qfTabbedPane.setVerifyInputWhenFocusTarget(false);
 
-        DefaultTableModel defaultTableModel = new DefaultTableModel();
+        resultTableModel = new ResultTableModel() {
+
+            @Override
+            protected Object[] createTableRow(SearchResultSet.Row resultRow) {
+                return new Object[]{fileIconResolver.createIconAndText(resultRow.getFilePath(), resultRow.getFileName(), Utility.isDirectory(resultRow.getFileProperties())), getReadableFileSize(resultRow)};
+            }
+        };
 
-        resultTable = new javax.swing.JTable(defaultTableModel) {
+        resultTable = new javax.swing.JTable(resultTableModel) {
 
             @Override
             public boolean isCellEditable(int rowIndex, int colIndex) {
@@ -530,7 +551,16 @@ public class QuickFind extends javax.swing.JFrame {
         resultTable.getTableHeader().setReorderingAllowed(false);
         resultTable.setSelectionBackground(Color.LIGHT_GRAY);
 
-        tableRowSorter = new TableRowSorter<DefaultTableModel>(defaultTableModel);
+        tableRowSorter = new TableRowSorter<ResultTableModel>(resultTableModel) {
+
+            /*
+             * Sorting reads every row, a result larger than a page is shown in the order of the search
+             */
+            @Override
+            public boolean isSortable(int column) {
+                return resultTableModel.getRowCount() <= RESULT_SET_LIMIT && super.isSortable(column);
+            }
+        };
         resultTable.setRowSorter(tableRowSorter);
 
         resultTable.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -574,10 +604,14 @@ public class QuickFind extends javax.swing.JFrame {
             }
         });
 
-        ((DefaultTableModel) resultTable.getModel()).addColumn("Name");
-        ((DefaultTableModel) resultTable.getModel()).addColumn("Size");
-
         resultTableScrollPane = new JScrollPane(resultTable);   //adding scrollbar to the resultTable
+        resultTableScrollPane.getViewport().addChangeListener(new ChangeListener() {
+
+            @Override
+            public void stateChanged(ChangeEvent evt) {
+                updateResultSetIndexLabel();
+            }
+        });
         Dimension tablePreferredSize = resultTableScrollPane.getPreferredSize();
         resultTableScrollPane.setPreferredSize(new Dimension(tablePreferredSize.width, tablePreferredSize.height));
 
@@ -947,6 +981,56 @@ public class QuickFind extends javax.swing.JFrame {
             }
         });
 
+        cacheManagerIncrementalScan = new javax.swing.JCheckBox();
+        cacheManagerIncrementalScan.setFont(PropertyPage.DEFAULT_BUTTON_FONT);
+        cacheManagerIncrementalScan.setToolTipText("Rescan only the directories changed since the last cache");
+        cacheManagerIncrementalScan.setText("Incremental");
+        cacheManagerIncrementalScan.setSelected(PropertyPage.isIncrementalScan());
+
+        /*
+         * Calls incremental scan action perfomed
+         */
+        cacheManagerIncrementalScan.addActionListener(new java.awt.event.ActionListener() {
+
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cacheManagerIncrementalScanActionPerformed(evt);
+            }
+        });
+
+        cacheManagerWatchCaches = new javax.swing.JCheckBox();
+        cacheManagerWatchCaches.setFont(PropertyPage.DEFAULT_BUTTON_FONT);
+        cacheManagerWatchCaches.setToolTipText("Keep the caches fresh by watching file system changes");
+        cacheManagerWatchCaches.setText("Watch");
+        cacheManagerWatchCaches.setSelected(PropertyPage.isWatchCaches());
+
+        /*
+         * Calls watch caches action perfomed
+         */
+        cacheManagerWatchCaches.addActionListener(new java.awt.event.ActionListener() {
+
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cacheManagerWatchCachesActionPerformed(evt);
+            }
+        });
+
+        cacheManagerTrigramIndex = new javax.swing.JCheckBox();
+        cacheManagerTrigramIndex.setFont(PropertyPage.DEFAULT_BUTTON_FONT);
+        cacheManagerTrigramIndex.setToolTipText("Index the names of the caches for faster substring searches");
+        cacheManagerTrigramIndex.setText("Trigrams");
+        cacheManagerTrigramIndex.setSelected(PropertyPage.isTrigramIndex());
+
+        /*
+         * Calls trigram index action perfomed
+         */
+        cacheManagerTrigramIndex.addActionListener(new java.awt.event.ActionListener() {
+
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cacheManagerTrigramIndexActionPerformed(evt);
+            }
+        });
 
         cacheManagerCacheEditSubPanel.add(newCacheButton);
         cacheManagerCacheEditSubPanel.add(editCacheButton);
@@ -957,6 +1041,9 @@ public class QuickFind extends javax.swing.JFrame {
         cacheManagerSubComponentsPanel.add(cacheManagerCacheSubPanel);
 
         cacheManagerDefaultsSubPanel.add(cacheManagerDefaultCache);
+        cacheManagerDefaultsSubPanel.add(cacheManagerIncrementalScan);
+        cacheManagerDefaultsSubPanel.add(cacheManagerWatchCaches);
+        cacheManagerDefaultsSubPanel.add(cacheManagerTrigramIndex);
         cacheManagerSubComponentsPanel.add(cacheManagerDefaultsSubPanel);
 
         cacheManagerPanel.add(cacheManagerSubComponentsPanel, BorderLayout.NORTH);
@@ -1299,6 +1386,48 @@ public class QuickFind extends javax.swing.JFrame {
         startCache(true);
     }
 
+    /*
+     * Enables or disables incremental scan of the existing caches
+     */
+    private void cacheManagerIncrementalScanActionPerformed(java.awt.event.ActionEvent evt) {
+        Preference.setIncrementalScan(cacheManagerIncrementalScan.isSelected());
+        PropertyPage.updateIncrementalScan();
+    }
+
+    /*
+     * Enables or disables the trigram index of the caches, built when a cache is scanned or loaded next
+     */
+    private void cacheManagerTrigramIndexActionPerformed(java.awt.event.ActionEvent evt) {
+        Preference.setTrigramIndex(cacheManagerTrigramIndex.isSelected());
+        PropertyPage.updateTrigramIndex();
+    }
+
+    /*
+     * Starts or stops watching the caches for file system changes
+     */
+    private void cacheManagerWatchCachesActionPerformed(java.awt.event.ActionEvent evt) {
+        Preference.setWatchCaches(cacheManagerWatchCaches.isSelected());
+        PropertyPage.updateWatchCaches();
+        if (PropertyPage.isWatchCaches()) {
+            if (!isCaching) {
+                startCacheWatcher();
+            }
+        } else if (cacheWatcher != null) {
+            cacheWatcher.stopWatching();
+            cacheWatcher = null;
+        }
+    }
+
+    /*
+     * Starts the cache watcher unless it is running already
+     */
+    private void startCacheWatcher() {
+        if (cacheWatcher == null && PropertyPage.isWatchCaches()) {
+            cacheWatcher = new CacheWatcher(cachedPages);
+            cacheWatcher.start();
+        }
+    }
+
     /*
      * Loads all root nodes from the system as default caches.
      */
@@ -1369,6 +1498,9 @@ public class QuickFind extends javax.swing.JFrame {
             editCacheButton.setEnabled(false);
             deleteCacheButton.setEnabled(false);
             cacheManagerDefaultCache.setEnabled(false);
+            cacheManagerIncrementalScan.setEnabled(false);
+            scannerInstance.setCacheWatcher(cacheWatcher);     //scanner stops the watcher before scanning
+            cacheWatcher = null;
             isSearchDisabled = true;
             isCaching = true;
             cacheButton.setText("Stop");
@@ -1379,9 +1511,11 @@ public class QuickFind extends javax.swing.JFrame {
                     scannerInstance.addCacheList(PropertyPage.CACHE_LIST);
 
                     /*
-                     * Cleans the cache directory before proceeding
+                     * Cleans the cache directory before proceeding, incremental and resumed scans reuse the previous files
                      */
-                    Utility.cacheCleaner(null, 1);
+                    if (!PropertyPage.isIncrementalScan() && !cachedPages.isScanResumable()) {
+                        Utility.cacheCleaner(null, 1);
+                    }
                 } else {
                     TableModel cacheCollectionTableModel = ((DefaultTableModel) cacheCollectionTable.getModel());
                     for (int i = 0; i < cacheCollectionTableModel.getRowCount(); i++) {
@@ -1395,9 +1529,11 @@ public class QuickFind extends javax.swing.JFrame {
                     scannerInstance.addCacheList(PropertyPage.CACHE_LIST);
 
                     /*
-                     * Cleans the cache directory before proceeding
+                     * Cleans the cache directory before proceeding, incremental and resumed scans reuse the previous files
                      */
-                    Utility.cacheCleaner(null, 1);
+                    if (!PropertyPage.isIncrementalScan() && !cachedPages.isScanResumable()) {
+                        Utility.cacheCleaner(null, 1);
+                    }
                 } else {
                     scannerInstance.addCache(PropertyPage.CACHE_LIST.get(cacheComboBox.getSelectedIndex() - 1).toString());
                 }
@@ -1420,6 +1556,7 @@ public class QuickFind extends javax.swing.JFrame {
                         editCacheButton.setEnabled(true);
                         deleteCacheButton.setEnabled(true);
                         cacheManagerDefaultCache.setEnabled(true);
+                        cacheManagerIncrementalScan.setEnabled(true);
                         isSearchDisabled = false;
                         isCaching = false;
                         cacheButton.setText("Cache");
@@ -1429,6 +1566,7 @@ public class QuickFind extends javax.swing.JFrame {
                         QFTrayIcon.displayMessage("QuickFind", "Caching Over!", TrayIcon.MessageType.INFO);
                         cachedPages.loadCacheCollection();
                         reLoadCacheCollectionTable();
+                        startCacheWatcher();
                     }
                 }
             });
@@ -1474,6 +1612,7 @@ public class QuickFind extends javax.swing.JFrame {
                         editCacheButton.setEnabled(true);
                         deleteCacheButton.setEnabled(true);
                         cacheManagerDefaultCache.setEnabled(true);
+                        cacheManagerIncrementalScan.setEnabled(true);
                         cacheButton.setText("Cache");
                         cacheManagerCacheButton.setText("Cache");
                     }
@@ -1552,6 +1691,7 @@ public class QuickFind extends javax.swing.JFrame {
         nextRowsButton.setEnabled(false);
         previousRowsButton.setEnabled(false);
         topListIndex = 0;  //new search so set back to zero
+        clearResultTable();     //rows of the new search are streamed into the table
         doScan();
     }
 
@@ -1560,7 +1700,15 @@ public class QuickFind extends javax.swing.JFrame {
      * Starts searching thread
      */
     private void doScan() {
-        Search search = new Search(searchTextField.getText(), cachedPages);
+        Search search = new Search(searchTextField.getText(), cachedPages) {
+
+            @Override
+            protected void process(List<SearchResultSet.Row> resultRows) {
+                appendStreamedRows(this, resultRows);
+            }
+        };
+        final SearchResultSet searchResultSet = search.getSearchResultSet();
+        resultTableModel.setSearchResultSet(searchResultSet);
         final long scanStartTime = System.currentTimeMillis();
         if (searchComboBox.getSelectedItem().toString().equals(PropertyPage.ALL_ROOTS)) {
             search.addCacheList(PropertyPage.CACHE_LIST);
@@ -1580,11 +1728,11 @@ public class QuickFind extends javax.swing.JFrame {
                     }
                     if (PropertyPage.isFirstPush()) {
                         if (PropertyPage.getSearchedFilesCount() > RESULT_SET_LIMIT) {
-                            PropertyPage.setFirstPush(false);
+                            PropertyPage.setFirstPush(false);   //the first page is streamed already
                             isItemFound = true;
-                            displayTopList();
                         }
                     }
+                    updateResultRowCount(searchResultSet);
                     return;
                 }
                 if ("DONE".equals(evt.getNewValue().toString())) {
@@ -1596,12 +1744,10 @@ public class QuickFind extends javax.swing.JFrame {
                     }
                     PropertyPage.setCacheIteratorStopper(false);    // Tries to stop cache iterator
                     isSearchScannerRunning = false;
-                    if (PropertyPage.isFirstPush()) {
-                        if (PropertyPage.getSearchedFilesCount() > 0) {
-                            isItemFound = true;
-                        }
-                        displayTopList();
+                    if (PropertyPage.isFirstPush() && PropertyPage.getSearchedFilesCount() > 0) {
+                        isItemFound = true;     //the rows are streamed already
                     }
+                    updateResultRowCount(searchResultSet);
                     setStatusMessage(PropertyPage.getSearchedFilesCount() + " Items found in " + Utility.getReadableElapsedIntervalInSeconds(System.currentTimeMillis() - scanStartTime) + " Secs");
                     if (((int) (PropertyPage.getSearchedFilesCount() / RESULT_SET_LIMIT) > topListIndex)) {
                         nextRowsButton.setEnabled(true);
@@ -1627,153 +1773,80 @@ public class QuickFind extends javax.swing.JFrame {
      * Removes all the elements from result table
      */
     private void clearResultTable() {
-        DefaultTableModel dtmodel = (DefaultTableModel) resultTable.getModel();
-        int tableRowCount = dtmodel.getRowCount();
-        for (int i = tableRowCount - 1; i >= 0; i--) {
-            dtmodel.removeRow(i);
+        tableRowSorter.setSortKeys(null);
+        resultTableModel.setSearchResultSet(null);
+        fileIconResolver.cancelPending();
+    }
+
+    /*
+     * Grows the result table to the found files, rows are read from the search result when they are shown
+     * @param   searchResultSet search result of the search reporting its progress
+     */
+    private void updateResultRowCount(SearchResultSet searchResultSet) {
+        if (resultTableModel.getSearchResultSet() != searchResultSet) {
+            return;     //progress of an older search
         }
-        if (fileIconCache.size() > 1000) {
-            fileIconCache.clear();      //free the Icon cache. let's build once again
-            fileIconStringCache.clear();//free the IconString cache. let's build once again
+        if (PropertyPage.getSearchedFilesCount() > RESULT_SET_LIMIT && tableRowSorter.getSortKeys() != null && !tableRowSorter.getSortKeys().isEmpty()) {
+            tableRowSorter.setSortKeys(null);   //a result larger than a page is shown in the order of the search
         }
-        dtmodel = null;
+        resultTableModel.setRowCount((int) Math.min(PropertyPage.getSearchedFilesCount(), Integer.MAX_VALUE));
     }
 
     /*
-     * Displays search result based on the resultSetLimit
+     * Scrolls the result table to the first row of the current set of rows
      */
-    private void displayTopList() {
-        int currentTopElements = topListIndex * RESULT_SET_LIMIT;
-        StringBuilder filePath = new StringBuilder(1024);
-        HashMap<String, String> hashMap = new HashMap<String, String>(RESULT_SET_LIMIT);
-        clearResultTable();
-        FileSystemView fileSystemView = FileSystemView.getFileSystemView();
-        Icon icon = null;
-
-        if (!isItemFound) {
+    private void scrollToTopList() {
+        int firstRow = topListIndex * RESULT_SET_LIMIT;
+        if (firstRow >= resultTable.getRowCount()) {
             return;
         }
+        Rectangle rowRectangle = resultTable.getCellRect(firstRow, 0, true);
+        rowRectangle.height = resultTableScrollPane.getViewport().getExtentSize().height;   //the row goes to the top of the view
+        resultTable.scrollRectToVisible(rowRectangle);
+    }
 
-        ArrayList<String> cacheLevelResultSet = new ArrayList<String>(RESULT_SET_LIMIT);
-        RandomAccessFile rawDataReader = null;
-        try {
-            rawDataReader = new RandomAccessFile(new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_RAW_FILE + PropertyPage.RAW_FILE_EXTENSION), "r");
-            String rawPath;
-            rawDataReader.seek(Utility.getSearchResultIndex(currentTopElements));
-            while ((rawPath = rawDataReader.readLine()) != null) {
-                ++currentTopElements;
-                cacheLevelResultSet.add(rawPath);
-                if (((topListIndex + 1) * RESULT_SET_LIMIT) <= currentTopElements) {
-                    break;
-                }
-            }
-        } catch (IOException iOException) {
-            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
-        } finally {
-            try {
-                if (rawDataReader != null) {
-                    rawDataReader.close();
-                }
-            } catch (IOException iOException) {
-                LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
-            }
-        }
-
-        int cacheLevelResultSetCount = cacheLevelResultSet.size();
-
-        for (int k = 0; k < cacheLevelResultSetCount; k++) {
-            String rawPath = cacheLevelResultSet.get(k).toString();
-            hashMap.put(rawPath.substring(0, rawPath.indexOf(PropertyPage.FILE_SEPARATOR)), null);
+    /*
+     * Shows the range of the rows visible in the result table
+     */
+    private void updateResultSetIndexLabel() {
+        Rectangle viewRectangle = resultTableScrollPane.getViewport().getViewRect();
+        int firstRow = resultTable.rowAtPoint(new Point(0, viewRectangle.y));
+        if (firstRow < 0) {
+            resultSetIndexLabel.setText("0-0");
+            return;
         }
-
-        BufferedReader symbolReader = null;
-        try {
-            symbolReader = new BufferedReader(new FileReader((new File(PropertyPage.getCacheDirectory() + PropertyPage.SEARCH_SYMBOL_FILE + PropertyPage.SYMBOLS_FILE_EXTENSION))));
-            while (symbolReader.ready()) {
-                String symbolLine = symbolReader.readLine();
-                String key = symbolLine.substring(0, symbolLine.indexOf(PropertyPage.FILE_SEPARATOR));
-                if (hashMap.containsKey(key)) {
-                    String value = symbolLine.substring(symbolLine.indexOf(PropertyPage.FILE_SEPARATOR) + 1, symbolLine.length());
-                    hashMap.put(key, value);
-                }
-            }
-            symbolReader.close();
-        } catch (IOException iOException) {
-            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        int lastRow = resultTable.rowAtPoint(new Point(0, viewRectangle.y + viewRectangle.height - 1));
+        if (lastRow < 0) {
+            lastRow = resultTable.getRowCount() - 1;
         }
+        resultSetIndexLabel.setText((firstRow + 1) + "-" + (lastRow + 1));
+    }
 
-        for (int j = 0; j < cacheLevelResultSetCount; j++) {
-            filePath.setLength(0);
-            String rawPath = (cacheLevelResultSet.get(j).toString());
-            StringTokenizer stringTokenizer = new StringTokenizer(rawPath, PropertyPage.FILE_SEPARATOR);
-
-            if (stringTokenizer.countTokens() == 5) {
-                String directoryKey = stringTokenizer.nextToken();
-                String fileName = stringTokenizer.nextToken();
-                String fileSize = stringTokenizer.nextToken();
-                String lastModifiedDate = stringTokenizer.nextToken();
-                int fileProperty = Integer.valueOf(stringTokenizer.nextToken());
-
-                filePath.append(hashMap.get(directoryKey).toString()).append(PropertyPage.FILE_SEPARATOR).append(fileName);
-                String readableFileSize = "";
-                if (fileSize != null && !fileSize.equals("0")) {
-                    readableFileSize = fileSize;
-                }
-
-                File fileReference = new File(filePath.toString());
-                if (fileReference.exists()) {
-                    if (Utility.isDirectory(fileProperty)) {
-                        icon = PropertyPage.directoryIcon;
-                    } else {
-                        String fileext = Utility.getFileExtension(filePath.toString());
-                        if (!fileIconCache.containsKey(fileext)) {
-                            Icon tmpIcon = fileSystemView.getSystemIcon(fileReference);
-                            if (tmpIcon == null) {
-                                tmpIcon = PropertyPage.defaultFileIcon;
-                            }
-                            if (fileIconStringCache.containsKey(tmpIcon.toString())) {
-                                fileext = fileIconStringCache.get(tmpIcon.toString());
-                            } else {
-                                fileIconCache.put(fileext, tmpIcon);
-                                fileIconStringCache.put(tmpIcon.toString(), fileext);
-                            }
-                            tmpIcon = null;
-                        }
-                        icon = (Icon) fileIconCache.get(fileext);
-                    }
-                }
-
-                if (icon == null) {
-                    icon = deletedFileIcon;
-                }
-
-                Object tableRow[] = new Object[2];
-                tableRow[0] = new IconAndText(icon, fileName, filePath.toString());
-                tableRow[1] = readableFileSize;
-
-                ((DefaultTableModel) resultTable.getModel()).addRow(tableRow);
-
-                tableRow[0] = null;
-                tableRow[1] = null;
-                readableFileSize = null;
-                icon = null;
-                fileReference = null;
-            }
+    /*
+     * Appends the rows streamed by the search to the result table
+     * @param   streamingSearch->search which found the rows     resultRows->found files in the order of the search result
+     */
+    private void appendStreamedRows(Search streamingSearch, List<SearchResultSet.Row> resultRows) {
+        if (streamingSearch.getSearchResultSet() != resultTableModel.getSearchResultSet()) {
+            return;     //rows of an older search
         }
+        isItemFound = true;
+        resultTableModel.appendStreamedRows(resultRows);
+    }
 
-        resultSetIndexLabel.setText(((((topListIndex + 1) * RESULT_SET_LIMIT) - RESULT_SET_LIMIT) + 1) + "-" + currentTopElements);
-        resultTableScrollPane.getVerticalScrollBar().setValue(resultTableScrollPane.getVerticalScrollBar().getMinimum());
-
-        if (cacheLevelResultSet != null) {
-            cacheLevelResultSet.clear();
-            cacheLevelResultSet = null;
+    /*
+     * @param   resultRow found file
+     * @return  formatted size of a file, empty for a directory
+     */
+    private String getReadableFileSize(SearchResultSet.Row resultRow) {
+        if (Utility.isDirectory(resultRow.getFileProperties())) {
+            return "";
         }
-
-        if (hashMap != null) {
-            hashMap.clear();
-            hashMap = null;
+        try {
+            return Utility.getFileSize(Utility.parseFileSize(resultRow.getFileSize()));
+        } catch (NumberFormatException numberFormatException) {
+            return resultRow.getFileSize();
         }
-        System.gc();  // reminding JVM to Garbage Collect
     }
 
     /*
@@ -1806,7 +1879,7 @@ public class QuickFind extends javax.swing.JFrame {
     private void nextRowsButtonActionPerformed(java.awt.event.ActionEvent evt) {
         ++topListIndex;
         if (((int) (PropertyPage.getSearchedFilesCount() / RESULT_SET_LIMIT) >= topListIndex)) {
-            displayTopList();
+            scrollToTopList();
         }
         if (((int) (PropertyPage.getSearchedFilesCount() / RESULT_SET_LIMIT) == topListIndex)) {
             nextRowsButton.setEnabled(false);
@@ -1819,7 +1892,7 @@ public class QuickFind extends javax.swing.JFrame {
      */
     private void previousRowsButtonActionPerformed(java.awt.event.ActionEvent evt) {
         --topListIndex;
-        displayTopList();
+        scrollToTopList();
         if (topListIndex == 0) {
             previousRowsButton.setEnabled(false);
             nextRowsButton.setEnabled(true);
@@ -1834,7 +1907,11 @@ public class QuickFind extends javax.swing.JFrame {
      */
     private void openLocationPopUpMenuItemActionPerformed(java.awt.event.ActionEvent evt) {
         try {
-            String selectedPath = ((IconAndText) resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(resultTable.getSelectedRow()), 0)).getFilePath();
+            String selectedPath = getSelectedFilePath(resultTable.getSelectedRow());
+            if (selectedPath == null) {
+                showRowNotLoadedMessage();
+                return;
+            }
             File selectedFile = new File(selectedPath);
             if (selectedFile.isDirectory()) {
                 openDirectory(selectedPath);
@@ -1857,7 +1934,11 @@ public class QuickFind extends javax.swing.JFrame {
      * Executes the selected File
      */
     private void openPopUpMenuItemActionPerformed(java.awt.event.ActionEvent evt) {
-        String selectedPath = ((IconAndText) resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(resultTable.getSelectedRow()), 0)).getFilePath();
+        String selectedPath = getSelectedFilePath(resultTable.getSelectedRow());
+        if (selectedPath == null) {
+            showRowNotLoadedMessage();
+            return;
+        }
         openFile(selectedPath);
     }
 
@@ -1866,7 +1947,11 @@ public class QuickFind extends javax.swing.JFrame {
      */
     private void renamePopUpMenuItemActionPerformed(java.awt.event.ActionEvent evt) {
         try {
-            String selectedPath = ((IconAndText) resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(resultTable.getSelectedRow()), 0)).getFilePath();
+            String selectedPath = getSelectedFilePath(resultTable.getSelectedRow());
+            if (selectedPath == null) {
+                showRowNotLoadedMessage();
+                return;
+            }
             String userInput = "";
             File selectedFile = new File(selectedPath);
             if (selectedFile.exists()) {
@@ -1908,8 +1993,11 @@ public class QuickFind extends javax.swing.JFrame {
      */
     private void mousePressedOnResultTable(java.awt.event.MouseEvent evt) {
         if (evt.getButton() == MouseEvent.BUTTON3) {
-            String selectedPath = getIconAndText(evt).getFilePath();
-            File selectedFile = new File(selectedPath);
+            IconAndText iconAndText = getIconAndText(evt);
+            if (iconAndText == null) {
+                return;     //a row not read yet has no cell
+            }
+            File selectedFile = new File(iconAndText.getFilePath());
             if (selectedFile.exists()) {
                 if (selectedFile.isDirectory()) {
                     openPopUpMenuItem.setEnabled(false);
@@ -1920,6 +2008,25 @@ public class QuickFind extends javax.swing.JFrame {
         }
     }
 
+    /*
+     * @param   viewRow index of a row of the result table as shown, -1 if no row is selected
+     * @return  path of the file of the row, null if the row is not read from the search result yet
+     */
+    private String getSelectedFilePath(int viewRow) {
+        if (viewRow < 0) {
+            return null;
+        }
+        Object cell = resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(viewRow), 0);
+        return (cell instanceof IconAndText ? ((IconAndText) cell).getFilePath() : null);
+    }
+
+    /*
+     * Tells that the selected row is still being read from the search result
+     */
+    private void showRowNotLoadedMessage() {
+        JOptionPane.showMessageDialog(this, "The selected item is not loaded yet, try again shortly", "Not Loaded", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     /*
      * Exctracts IconAndText object from the selected row
      */
@@ -1956,7 +2063,10 @@ public class QuickFind extends javax.swing.JFrame {
         if (evt.getClickCount() == 2 && !evt.isConsumed()) {
             evt.consume();
             try {
-                String selectedPath = ((IconAndText) resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(resultTable.getSelectedRow()), 0)).getFilePath();
+                String selectedPath = getSelectedFilePath(resultTable.getSelectedRow());
+                if (selectedPath == null) {
+                    return;     //the row is shown once it is read
+                }
                 File selectedFile = new File(selectedPath);
                 if (selectedFile.isDirectory()) {
                     openDirectory(selectedPath);
@@ -1984,19 +2094,33 @@ public class QuickFind extends javax.swing.JFrame {
 
     /*
      * Copies the selected File/Directory path to System Clipboard
+     * Only the first COPIED_PATHS_LIMIT selected rows are copied, rows not read yet are skipped
      */
     private void doCopyPath() {
         final int selectedRowsIndices[] = resultTable.getSelectedRows();
         StringBuffer filePath = new StringBuffer("");
         if (selectedRowsIndices.length >= 1) {
-            for (int i = 0; i < selectedRowsIndices.length; i++) {
+            int copiedCount = 0;
+            for (int i = 0; i < Math.min(selectedRowsIndices.length, COPIED_PATHS_LIMIT); i++) {
+                String selectedPath = getSelectedFilePath(selectedRowsIndices[i]);
+                if (selectedPath == null) {
+                    continue;
+                }
                 if (filePath.length() > 0) {
                     filePath.append("\n");
                 }
-                filePath.append(((IconAndText) resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(selectedRowsIndices[i]), 0)).getFilePath());
+                filePath.append(selectedPath);
+                copiedCount++;
+            }
+            if (copiedCount == 0) {
+                showRowNotLoadedMessage();
+                return;
             }
             Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(filePath.toString()), null);
             filePath = null;
+            if (copiedCount < selectedRowsIndices.length) {
+                JOptionPane.showMessageDialog(this, copiedCount + " of " + selectedRowsIndices.length + " selected paths are copied", "Copy Path", JOptionPane.INFORMATION_MESSAGE);
+            }
         } else {
             JOptionPane.showMessageDialog(this, "Nothing is selected to copy!", "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -2023,6 +2147,7 @@ public class QuickFind extends javax.swing.JFrame {
         }
 
         reLoadCacheCollectionTable();
+        startCacheWatcher();
 
         this.setIconImage(Toolkit.getDefaultToolkit().getImage(getClass().getResource(PropertyPage.IMAGES_PATH + PropertyPage.SYSTEM_ICON)));
         nextRowsButton.setEnabled(false);
@@ -2064,7 +2189,7 @@ public class QuickFind extends javax.swing.JFrame {
             @Override
             public void keyPressed(KeyEvent e) {
                 if (e.getKeyCode() == KeyEvent.VK_ENTER) {
-                    String selectedPath = ((IconAndText) resultTable.getModel().getValueAt(resultTable.convertRowIndexToModel(resultTable.getSelectedRow()), 0)).getFilePath();
+                    String selectedPath = getSelectedFilePath(resultTable.getSelectedRow());
                     if (selectedPath != null) {
                         File selectedFile = new File(selectedPath);
                         if (selectedFile.exists()) {
@@ -2128,6 +2253,9 @@ public class QuickFind extends javax.swing.JFrame {
                     cacheCollection[4] = cache.getExcludedPath();
                     cacheCollection[5] = cache.getTotalItemsScanned();
                     cacheCollection[6] = cache.getCacheFileSize();
+                    if (cachedPages.getResidentMemoryUsage(cache.getCacheName()) > 0) {
+                        cacheCollection[6] = cache.getCacheFileSize() + " (" + Utility.getFileSize(cachedPages.getResidentMemoryUsage(cache.getCacheName())) + " in memory)";
+                    }
                     cacheCollection[7] = cache.getTimeTakenToCache();
                     if (cache.getStartTimeStamp() == null || cache.getStartTimeStamp().isEmpty()) {
                         cacheCollection[8] = "NA";
@@ -2271,37 +2399,6 @@ public class QuickFind extends javax.swing.JFrame {
     }
 }
 
-/*
- * Merges Icon and Text
- */
-class IconAndText {
-
-    private String fileName;
-    private String filePath;
-    private Icon fileIcon;
-    static final String startHtmlTag = "<html>";
-    static final String intermediateHtmlTag = "<br> <font color='#A0A0A0' >";
-    static final String endHtmlTag = "</font></html>";
-
-    public IconAndText(Icon _icon, String _fileName, String _filePath) {
-        fileIcon = _icon;
-        fileName = _fileName;
-        filePath = _filePath;
-    }
-
-    Icon getIcon() {
-        return fileIcon;
-    }
-
-    String getFileName() {
-        return fileName;
-    }
-
-    String getFilePath() {
-        return filePath;
-    }
-}
-
 /*
  * Custom ImageRenderer to display Icon and Text into the Table Cell
  */
@@ -0,0 +1,245 @@
+/*
+    QuickFind (http://quickfind.sourceforge.net/)
+    Cross-platform Java application for searching files in your Computer.
+
+    Copyright (c) 2010, 2013 Vasantkumar Mulage
+
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without modification,
+    are permitted provided that the following conditions are met:
+
+        * Redistributions of source code must retain the above copyright notice,
+          this list of conditions and the following disclaimer.
+        * Redistributions in binary form must reproduce the above copyright notice,
+          this list of conditions and the following disclaimer in the documentation
+          and/or other materials provided with the distribution.
+        * Neither the name of the QuickFind nor the names of its contributors
+          may be used to endorse or promote products derived from this software without
+          specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+    "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+    LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+    A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+    CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+    EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+    PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+    PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+    LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+    NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+    SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+package net.quickfind.gui;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.table.AbstractTableModel;
+import net.quickfind.find.SearchResultSet;
+
+/*
+ * ResultTableModel.java
+ * Table model of the whole search result, rows are read from the search result only when the table asks for them
+ * Rows are read a page at a time and the last read pages are kept, the rows streamed by the search are kept as they arrive
+ * @author  Copyright (C) 2013 Vasantkumar Mulage
+ */
+@SuppressWarnings("serial")
+abstract class ResultTableModel extends AbstractTableModel {
+
+    /*
+     * Names of the columns
+     */
+    private static final String[] COLUMN_NAMES = {"Name", "Size"};
+    /*
+     * Pages of rows kept in memory besides the streamed rows
+     */
+    private static final int CACHED_PAGES = 4;
+    /*
+     * Search result the rows are read from, null if there is no search
+     */
+    private SearchResultSet searchResultSet;
+    /*
+     * Rows streamed by the search in the order of the search result, null where a row can not be resolved
+     */
+    private final ArrayList<Object[]> streamedRows;
+    /*
+     * Map to hold page index and its rows, in the order of access so the least recently used page is dropped
+     */
+    private final LinkedHashMap<Integer, CachedPage> cachedPages;
+    /*
+     * Number of rows of the search result
+     */
+    private int rowCount;
+    /*
+     * Exception logger
+     */
+    private final static Logger LOGGER = Logger.getLogger(ResultTableModel.class.getName());
+
+    /*
+     * Constructs the empty ResultTableModel
+     */
+    ResultTableModel() {
+        streamedRows = new ArrayList<Object[]>();
+        cachedPages = new LinkedHashMap<Integer, CachedPage>(CACHED_PAGES * 2, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedPage> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+    }
+
+    /*
+     * Creates the cells of a row
+     * @param   resultRow found file
+     * @return  value of each column
+     */
+    protected abstract Object[] createTableRow(SearchResultSet.Row resultRow);
+
+    /*
+     * Shows the result of a new search, the table is emptied
+     * @param   aSearchResultSet search result of the new search or null
+     */
+    void setSearchResultSet(SearchResultSet aSearchResultSet) {
+        searchResultSet = aSearchResultSet;
+        streamedRows.clear();
+        cachedPages.clear();
+        rowCount = 0;
+        fireTableDataChanged();
+    }
+
+    /*
+     * @return  search result the rows are read from, null if there is no search
+     */
+    SearchResultSet getSearchResultSet() {
+        return searchResultSet;
+    }
+
+    /*
+     * Appends the rows streamed by the search, they are the first rows of the search result
+     * @param   resultRows found files, null where a row can not be resolved
+     */
+    void appendStreamedRows(List<SearchResultSet.Row> resultRows) {
+        for (SearchResultSet.Row resultRow : resultRows) {
+            streamedRows.add(resultRow == null ? null : createTableRow(resultRow));
+        }
+        setRowCount(streamedRows.size());
+    }
+
+    /*
+     * Grows the table to the number of found files, the table is notified once for all new rows
+     * Kept pages which miss rows written since they were read, or hold rows whose directories were not resolved yet, are read again
+     * @param   foundCount number of rows written to the search result
+     */
+    void setRowCount(int foundCount) {
+        if (searchResultSet != null) {
+            int pageSize = searchResultSet.getPageSize();
+            ArrayList<Integer> stalePages = new ArrayList<Integer>();
+            for (Map.Entry<Integer, CachedPage> cachedPage : cachedPages.entrySet()) {
+                if (cachedPage.getValue().hasUnresolvedRows
+                        || cachedPage.getValue().rows.size() < Math.min(pageSize, Math.max(foundCount, rowCount) - cachedPage.getKey() * pageSize)) {
+                    stalePages.add(cachedPage.getKey());
+                }
+            }
+            for (int stalePage : stalePages) {
+                cachedPages.remove(stalePage);
+                if (stalePage * pageSize < rowCount) {
+                    fireTableRowsUpdated(stalePage * pageSize, Math.min((stalePage + 1) * pageSize, rowCount) - 1);
+                }
+            }
+        }
+        if (foundCount > rowCount) {
+            int firstRow = rowCount;
+            rowCount = foundCount;
+            fireTableRowsInserted(firstRow, rowCount - 1);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[] tableRow = getTableRow(row);
+        return (tableRow == null ? null : tableRow[column]);
+    }
+
+    /*
+     * Finds the cells of a row in the streamed rows or in the page holding it
+     * @param   row index of the row
+     * @return  cells of the row, null if it is not readable yet
+     */
+    private Object[] getTableRow(int row) {
+        if (row < streamedRows.size()) {
+            return streamedRows.get(row);
+        }
+        if (searchResultSet == null) {
+            return null;
+        }
+        int page = row / searchResultSet.getPageSize();
+        CachedPage cachedPage = cachedPages.get(page);
+        if (cachedPage == null) {
+            cachedPage = readPage(page);
+        }
+        int pageRow = row - page * searchResultSet.getPageSize();
+        return (pageRow < cachedPage.rows.size() ? cachedPage.rows.get(pageRow) : null);
+    }
+
+    /*
+     * Reads the rows of a page, a page the search has not written or resolved completely is read again as the table grows
+     * @param   page index of the page
+     * @return  rows of the page read so far
+     */
+    private CachedPage readPage(int page) {
+        CachedPage cachedPage = new CachedPage(searchResultSet.getPageSize());
+        try {
+            SearchResultSet.Page resultPage = searchResultSet.readPage(page);
+            for (int i = 0; i < resultPage.getRawPaths().size(); i++) {
+                SearchResultSet.Row resultRow = resultPage.getRow(i);
+                if (resultRow == null) {
+                    cachedPage.hasUnresolvedRows = true;    //its directory is written when the search resolves it
+                }
+                cachedPage.rows.add(resultRow == null ? null : createTableRow(resultRow));
+            }
+        } catch (IOException iOException) {
+            LOGGER.log(Level.SEVERE, "An IO error occured", iOException);
+        }
+        cachedPages.put(page, cachedPage);
+        return cachedPage;
+    }
+
+    /*
+     * Rows of a page read from the search result
+     */
+    private static final class CachedPage {
+
+        private final ArrayList<Object[]> rows;
+        /*
+         * Set if a row of the page could not be resolved when it was read
+         */
+        private boolean hasUnresolvedRows;
+
+        CachedPage(int pageSize) {
+            rows = new ArrayList<Object[]>(pageSize);
+        }
+    }
+}